@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2;
+
+/**
+ * A periodic check, scheduled by
+ * {@link PoolUtils#checkMinIdle(ObjectPool, int, long, java.util.concurrent.ScheduledExecutorService)}
+ * or one of its keyed variants, that keeps a minimum number of idle objects in
+ * a pool. In addition to cancelling the check, this interface reports how far
+ * behind its schedule the check is running, which indicates whether the
+ * executor running the checks has enough threads.
+ *
+ * @since 2.4.3
+ */
+public interface MinIdleCheck {
+
+    /**
+     * Stops any further runs of this check. A run that is already in progress
+     * is allowed to complete.
+     *
+     * @return <code>true</code> if this call cancelled the check,
+     *         <code>false</code> if it had already been cancelled
+     */
+    boolean cancel();
+
+    /**
+     * Has this check been cancelled, either by a call to {@link #cancel()} or
+     * because adding an object to the pool failed?
+     *
+     * @return <code>true</code> if the check will not run again
+     */
+    boolean isCancelled();
+
+    /**
+     * Get the number of times this check has run.
+     *
+     * @return the number of completed runs
+     */
+    long getRunCount();
+
+    /**
+     * Get how late, in milliseconds, the most recent run started compared to
+     * when it was scheduled to start.
+     *
+     * @return the lateness of the most recent run in ms
+     */
+    long getLastLatenessMillis();
+
+    /**
+     * Get the mean lateness, in milliseconds, of all runs of this check.
+     *
+     * @return the mean lateness in ms
+     */
+    long getMeanLatenessMillis();
+
+    /**
+     * Get the greatest lateness, in milliseconds, of any run of this check.
+     *
+     * @return the maximum lateness in ms
+     */
+    long getMaxLatenessMillis();
+}
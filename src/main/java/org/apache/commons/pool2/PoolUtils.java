@@ -16,18 +16,31 @@
  */
 package org.apache.commons.pool2;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+
 /**
  * This class consists exclusively of static methods that operate on or return
  * ObjectPool or KeyedObjectPool related interfaces.
@@ -202,6 +215,157 @@ public final class PoolUtils {
         return tasks;
     }
 
+    /**
+     * Periodically check the idle object count for the pool using the supplied
+     * executor rather than the single {@link Timer} thread shared by
+     * {@link #checkMinIdle(ObjectPool, int, long)}. Each run adds as many idle
+     * objects as are needed to reach <code>minIdle</code>. The first run is
+     * delayed by a random fraction of <code>period</code> so that checks
+     * registered together do not all run at the same moment. If there is an
+     * exception when calling {@link ObjectPool#addObject()} then no more checks
+     * will be performed for this pool; checks for other pools are unaffected.
+     * <p>
+     * Checks scheduled on the same executor run in parallel, up to the number
+     * of threads of the executor, so a slow {@link ObjectPool#addObject()} only
+     * delays the check for its own pool. The returned {@link MinIdleCheck}
+     * reports how far behind schedule the check is running.
+     * </p>
+     *
+     * @param pool
+     *            the pool to check periodically.
+     * @param minIdle
+     *            if the {@link ObjectPool#getNumIdle()} is less than this then
+     *            add idle objects.
+     * @param period
+     *            the frequency in milliseconds to check the number of idle
+     *            objects in a pool.
+     * @param executor
+     *            the executor that runs the checks.
+     * @param <T> the type of objects in the pool
+     * @return the {@link MinIdleCheck} that will periodically check the pools
+     *         idle object count.
+     * @throws IllegalArgumentException
+     *             when <code>pool</code> or <code>executor</code> is
+     *             <code>null</code> or when <code>minIdle</code> is negative or
+     *             when <code>period</code> is not positive
+     * @since 2.4.3
+     */
+    public static <T> MinIdleCheck checkMinIdle(final ObjectPool<T> pool,
+            final int minIdle, final long period,
+            final ScheduledExecutorService executor)
+            throws IllegalArgumentException {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null.");
+        }
+        if (minIdle < 0) {
+            throw new IllegalArgumentException("minIdle must be non-negative.");
+        }
+        final ScheduledMinIdleTask task =
+                new ObjectPoolScheduledMinIdleTask<T>(pool, minIdle);
+        task.schedule(executor, period);
+        return task;
+    }
+
+    /**
+     * Periodically check the idle object count for the key in the keyedPool
+     * using the supplied executor. Each run adds as many idle objects as are
+     * needed to reach <code>minIdle</code>. If there is an exception when
+     * calling {@link KeyedObjectPool#addObject(Object)} then no more checks for
+     * that key will be performed.
+     *
+     * @param keyedPool
+     *            the keyedPool to check periodically.
+     * @param key
+     *            the key to check the idle count of.
+     * @param minIdle
+     *            if the {@link KeyedObjectPool#getNumIdle(Object)} is less than
+     *            this then add idle objects.
+     * @param period
+     *            the frequency in milliseconds to check the number of idle
+     *            objects in a keyedPool.
+     * @param executor
+     *            the executor that runs the checks.
+     * @param <K> the type of the pool key
+     * @param <V> the type of pool entries
+     * @return the {@link MinIdleCheck} that will periodically check the pools
+     *         idle object count.
+     * @throws IllegalArgumentException
+     *             when <code>keyedPool</code>, <code>key</code> or
+     *             <code>executor</code> is <code>null</code> or when
+     *             <code>minIdle</code> is negative or when <code>period</code>
+     *             is not positive
+     * @see #checkMinIdle(ObjectPool, int, long, ScheduledExecutorService)
+     * @since 2.4.3
+     */
+    public static <K, V> MinIdleCheck checkMinIdle(
+            final KeyedObjectPool<K, V> keyedPool, final K key,
+            final int minIdle, final long period,
+            final ScheduledExecutorService executor)
+            throws IllegalArgumentException {
+        if (keyedPool == null) {
+            throw new IllegalArgumentException("keyedPool must not be null.");
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null.");
+        }
+        if (minIdle < 0) {
+            throw new IllegalArgumentException("minIdle must be non-negative.");
+        }
+        final ScheduledMinIdleTask task =
+                new KeyedObjectPoolScheduledMinIdleTask<K, V>(keyedPool, key, minIdle);
+        task.schedule(executor, period);
+        return task;
+    }
+
+    /**
+     * Periodically check the idle object count for each key in the
+     * <code>Collection</code> <code>keys</code> in the keyedPool using the
+     * supplied executor. Each key is checked by its own task, so the keys are
+     * replenished in parallel, up to the number of threads of the executor.
+     *
+     * @param keyedPool
+     *            the keyedPool to check periodically.
+     * @param keys
+     *            a collection of keys to check the idle object count.
+     * @param minIdle
+     *            if the {@link KeyedObjectPool#getNumIdle(Object)} is less than
+     *            this then add idle objects.
+     * @param period
+     *            the frequency in milliseconds to check the number of idle
+     *            objects in a keyedPool.
+     * @param executor
+     *            the executor that runs the checks.
+     * @param <K> the type of the pool key
+     * @param <V> the type of pool entries
+     * @return a {@link Map} of key and {@link MinIdleCheck} pairs that will
+     *         periodically check the pools idle object count.
+     * @throws IllegalArgumentException
+     *             when <code>keyedPool</code>, <code>keys</code>,
+     *             <code>executor</code> or any of the values in the collection
+     *             is <code>null</code> or when <code>minIdle</code> is negative
+     *             or when <code>period</code> is not positive
+     * @see #checkMinIdle(KeyedObjectPool, Object, int, long, ScheduledExecutorService)
+     * @since 2.4.3
+     */
+    public static <K, V> Map<K, MinIdleCheck> checkMinIdle(
+            final KeyedObjectPool<K, V> keyedPool, final Collection<K> keys,
+            final int minIdle, final long period,
+            final ScheduledExecutorService executor)
+            throws IllegalArgumentException {
+        if (keys == null) {
+            throw new IllegalArgumentException("keys must not be null.");
+        }
+        final Map<K, MinIdleCheck> tasks = new HashMap<K, MinIdleCheck>(keys.size());
+        final Iterator<K> iter = keys.iterator();
+        while (iter.hasNext()) {
+            final K key = iter.next();
+            final MinIdleCheck task =
+                    checkMinIdle(keyedPool, key, minIdle, period, executor);
+            tasks.put(key, task);
+        }
+        return tasks;
+    }
+
     /**
      * Call <code>addObject()</code> on <code>pool</code> <code>count</code>
      * number of times.
@@ -323,7 +487,38 @@ public final class PoolUtils {
          * .equals(pool.getClass().getName()) :
          * "CompositeObjectPools are already thread-safe";
          */
-        return new SynchronizedObjectPool<T>(pool);
+        return new SynchronizedObjectPool<T>(pool, 0);
+    }
+
+    /**
+     * Returns a synchronized (thread-safe) ObjectPool backed by the specified
+     * ObjectPool that, when the wrapped pool is exhausted, waits for an object
+     * to be returned instead of failing immediately.
+     * <p>
+     * The wrapped pool must signal exhaustion by throwing
+     * {@link NoSuchElementException} from <code>borrowObject()</code> rather
+     * than by blocking. The wait happens outside the lock protecting the
+     * wrapped pool so other threads can return, invalidate and add objects
+     * meanwhile.
+     * </p>
+     *
+     * @param pool
+     *            the ObjectPool to be "wrapped" in a synchronized ObjectPool.
+     * @param maxWaitMillis
+     *            the maximum time to wait for an object when the wrapped pool
+     *            is exhausted. Zero means do not wait, negative means wait
+     *            indefinitely.
+     * @param <T> the type of objects in the pool
+     * @return a synchronized view of the specified ObjectPool.
+     * @see #synchronizedPool(ObjectPool)
+     * @since 2.4.3
+     */
+    public static <T> ObjectPool<T> synchronizedPool(final ObjectPool<T> pool,
+            final long maxWaitMillis) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null.");
+        }
+        return new SynchronizedObjectPool<T>(pool, maxWaitMillis);
     }
 
     /**
@@ -356,7 +551,37 @@ public final class PoolUtils {
          * .equals(keyedPool.getClass().getName()) :
          * "CompositeKeyedObjectPools are already thread-safe";
          */
-        return new SynchronizedKeyedObjectPool<K, V>(keyedPool);
+        return new SynchronizedKeyedObjectPool<K, V>(keyedPool, 0);
+    }
+
+    /**
+     * Returns a synchronized (thread-safe) KeyedObjectPool backed by the
+     * specified KeyedObjectPool that, when the wrapped pool is exhausted,
+     * waits for an object to be returned instead of failing immediately.
+     * <p>
+     * The wrapped pool must signal exhaustion by throwing
+     * {@link NoSuchElementException} from <code>borrowObject(key)</code>
+     * rather than by blocking. The wait happens outside the lock protecting
+     * the wrapped pool so other threads can return, invalidate and add
+     * objects meanwhile.
+     * </p>
+     *
+     * @param keyedPool
+     *            the KeyedObjectPool to be "wrapped" in a synchronized
+     *            KeyedObjectPool.
+     * @param maxWaitMillis
+     *            the maximum time to wait for an object when the wrapped pool
+     *            is exhausted. Zero means do not wait, negative means wait
+     *            indefinitely.
+     * @param <K> the type of the pool key
+     * @param <V> the type of pool entries
+     * @return a synchronized view of the specified KeyedObjectPool.
+     * @see #synchronizedPool(KeyedObjectPool)
+     * @since 2.4.3
+     */
+    public static <K, V> KeyedObjectPool<K, V> synchronizedPool(
+            final KeyedObjectPool<K, V> keyedPool, final long maxWaitMillis) {
+        return new SynchronizedKeyedObjectPool<K, V>(keyedPool, maxWaitMillis);
     }
 
     /**
@@ -551,6 +776,88 @@ public final class PoolUtils {
         return new ErodingKeyedObjectPool<K, V>(keyedPool, factor);
     }
 
+    /**
+     * Returns a pool made of <code>shards</code> independent
+     * {@link GenericObjectPool}s that share the capacity described by
+     * <code>config</code>, so that concurrent borrowers do not all contend on
+     * the same idle object queue.
+     * <p>
+     * Each thread borrows from its own shard first and then tries the other
+     * shards, without waiting, before waiting for an object to be returned to
+     * any shard. Objects are always returned to the shard they were borrowed
+     * from. The <code>maxTotal</code>, <code>maxIdle</code> and
+     * <code>minIdle</code> limits of the configuration are divided between the
+     * shards; all other settings apply to each shard. A positive
+     * <code>maxIdle</code> smaller than the number of shards is raised to one
+     * per shard so that no shard destroys every object returned to it.
+     * </p>
+     *
+     * @param factory
+     *            the factory used to create the objects of every shard.
+     * @param config
+     *            the configuration for the pool as a whole.
+     * @param shards
+     *            the number of shards. It may not exceed a non-negative
+     *            <code>maxTotal</code>.
+     * @param <T> the type of objects in the pool
+     * @return a sharded pool.
+     * @throws IllegalArgumentException
+     *             when <code>factory</code> or <code>config</code> is
+     *             <code>null</code> or <code>shards</code> is not valid.
+     * @since 2.4.3
+     */
+    public static <T> ObjectPool<T> shardedPool(
+            final PooledObjectFactory<T> factory,
+            final GenericObjectPoolConfig config, final int shards) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory must not be null.");
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("config must not be null.");
+        }
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive.");
+        }
+        if (config.getMaxTotal() >= 0 && config.getMaxTotal() < shards) {
+            throw new IllegalArgumentException(
+                    "shards must not exceed maxTotal.");
+        }
+        return new ShardedObjectPool<T>(factory, config, shards);
+    }
+
+    /**
+     * Wait, releasing the associated lock, for a synchronized pool's condition
+     * to be signalled.
+     *
+     * @param condition
+     *            the condition to wait for
+     * @param maxWaitMillis
+     *            the configured maximum wait, zero to not wait and negative
+     *            to wait indefinitely
+     * @param deadline
+     *            the time at which a limited wait ends
+     * @return <code>false</code> if the caller should stop waiting
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting
+     */
+    private static boolean awaitObject(final Condition condition,
+            final long maxWaitMillis, final long deadline)
+            throws InterruptedException {
+        if (maxWaitMillis == 0) {
+            return false;
+        }
+        if (maxWaitMillis < 0) {
+            condition.await();
+            return true;
+        }
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return false;
+        }
+        condition.await(remaining, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
     /**
      * Get the <code>Timer</code> for checking keyedPool's idle count.
      *
@@ -706,6 +1013,297 @@ public final class PoolUtils {
         }
     }
 
+    /**
+     * Task, run at a fixed rate by a {@link ScheduledExecutorService}, that
+     * adds objects to a pool until the number of idle instances reaches the
+     * configured minIdle and records how late each run starts.
+     */
+    private abstract static class ScheduledMinIdleTask
+            implements Runnable, MinIdleCheck {
+
+        /** Minimum number of idle instances. Not the same as pool.getMinIdle(). */
+        protected final int minIdle;
+
+        /** Set once the task must not run again */
+        private volatile boolean cancelled = false;
+
+        /** Handle used to stop the executor running this task */
+        private volatile ScheduledFuture<?> future;
+
+        /** Time, from {@link System#nanoTime()}, of the first scheduled run */
+        private long firstRunNanos;
+
+        /** Interval between scheduled runs in ns */
+        private long periodNanos;
+
+        /*
+         * Run statistics. Runs of a fixed rate task never overlap so these
+         * only have one writer at a time.
+         */
+        private volatile long runCount = 0;
+        private volatile long lastLatenessMillis = 0;
+        private volatile long totalLatenessMillis = 0;
+        private volatile long maxLatenessMillis = 0;
+
+        /**
+         * Create a new task.
+         *
+         * @param minIdle
+         *            number of idle instances to maintain
+         */
+        ScheduledMinIdleTask(final int minIdle) {
+            this.minIdle = minIdle;
+        }
+
+        /**
+         * Schedule this task on the given executor, starting after a random
+         * fraction of the period so that tasks scheduled together are spread
+         * out.
+         *
+         * @param executor
+         *            the executor to run this task
+         * @param period
+         *            the interval between runs in ms
+         * @throws IllegalArgumentException
+         *             if the executor is null or the period is not positive
+         */
+        void schedule(final ScheduledExecutorService executor,
+                final long period) throws IllegalArgumentException {
+            if (executor == null) {
+                throw new IllegalArgumentException("executor must not be null.");
+            }
+            if (period <= 0) {
+                throw new IllegalArgumentException("period must be positive.");
+            }
+            final long initialDelay = (long) (Math.random() * period);
+            periodNanos = TimeUnit.MILLISECONDS.toNanos(period);
+            firstRunNanos = System.nanoTime() +
+                    TimeUnit.MILLISECONDS.toNanos(initialDelay);
+            future = executor.scheduleAtFixedRate(
+                    this, initialDelay, period, TimeUnit.MILLISECONDS);
+            if (cancelled) {
+                // A run failed before the future was known
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * Get the number of idle instances in the pool.
+         *
+         * @return the number of idle instances
+         */
+        abstract int getNumIdle();
+
+        /**
+         * Add an idle instance to the pool.
+         *
+         * @throws Exception if the pool fails to add an instance
+         */
+        abstract void addObject() throws Exception;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            final long scheduled = firstRunNanos + runCount * periodNanos;
+            final long lateness = Math.max(0, TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - scheduled));
+            lastLatenessMillis = lateness;
+            totalLatenessMillis += lateness;
+            if (lateness > maxLatenessMillis) {
+                maxLatenessMillis = lateness;
+            }
+            runCount++;
+
+            boolean success = false;
+            try {
+                // Bounded so a pool that cannot hold more idle instances does
+                // not keep this task busy
+                final int deficit = minIdle - getNumIdle();
+                for (int i = 0; i < deficit && !cancelled; i++) {
+                    addObject();
+                }
+                success = true;
+            } catch (final Exception e) {
+                // Cancelled below
+            } finally {
+                // detect other types of Throwable and cancel this task
+                if (!success) {
+                    cancel();
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean cancel() {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            final ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getRunCount() {
+            return runCount;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getLastLatenessMillis() {
+            return lastLatenessMillis;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getMeanLatenessMillis() {
+            final long runs = runCount;
+            if (runs == 0) {
+                return 0;
+            }
+            return totalLatenessMillis / runs;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getMaxLatenessMillis() {
+            return maxLatenessMillis;
+        }
+    }
+
+    /**
+     * Scheduled task that keeps a minimum number of idle instances in an
+     * object pool.
+     */
+    private static final class ObjectPoolScheduledMinIdleTask<T> extends
+            ScheduledMinIdleTask {
+
+        /** Object pool */
+        private final ObjectPool<T> pool;
+
+        /**
+         * Create a new ObjectPoolScheduledMinIdleTask for the given pool with
+         * the given minIdle setting.
+         *
+         * @param pool
+         *            object pool
+         * @param minIdle
+         *            number of idle instances to maintain
+         */
+        ObjectPoolScheduledMinIdleTask(final ObjectPool<T> pool,
+                final int minIdle) {
+            super(minIdle);
+            this.pool = pool;
+        }
+
+        @Override
+        int getNumIdle() {
+            return pool.getNumIdle();
+        }
+
+        @Override
+        void addObject() throws Exception {
+            pool.addObject();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("ObjectPoolScheduledMinIdleTask");
+            sb.append("{minIdle=").append(minIdle);
+            sb.append(", pool=").append(pool);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Scheduled task that keeps a minimum number of idle instances for one key
+     * of a keyed object pool.
+     */
+    private static final class KeyedObjectPoolScheduledMinIdleTask<K, V>
+            extends ScheduledMinIdleTask {
+
+        /** Key to ensure minIdle for */
+        private final K key;
+
+        /** Keyed object pool */
+        private final KeyedObjectPool<K, V> keyedPool;
+
+        /**
+         * Create a new KeyedObjectPoolScheduledMinIdleTask.
+         *
+         * @param keyedPool
+         *            keyed object pool
+         * @param key
+         *            key to ensure minimum number of idle instances
+         * @param minIdle
+         *            minimum number of idle instances
+         */
+        KeyedObjectPoolScheduledMinIdleTask(
+                final KeyedObjectPool<K, V> keyedPool, final K key,
+                final int minIdle) {
+            super(minIdle);
+            this.keyedPool = keyedPool;
+            this.key = key;
+        }
+
+        @Override
+        int getNumIdle() {
+            return keyedPool.getNumIdle(key);
+        }
+
+        @Override
+        void addObject() throws Exception {
+            keyedPool.addObject(key);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("KeyedObjectPoolScheduledMinIdleTask");
+            sb.append("{minIdle=").append(minIdle);
+            sb.append(", key=").append(key);
+            sb.append(", keyedPool=").append(keyedPool);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
     /**
      * A synchronized (thread-safe) ObjectPool backed by the specified
      * ObjectPool.
@@ -726,28 +1324,44 @@ public final class PoolUtils {
          */
         private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
 
+        /** Signalled when an object may have become available */
+        private final Condition objectReturned =
+                readWriteLock.writeLock().newCondition();
+
         /** the underlying object pool */
         private final ObjectPool<T> pool;
 
+        /** Maximum time to wait when the underlying pool is exhausted */
+        private final long maxWaitMillis;
+
         /**
          * Create a new SynchronizedObjectPool wrapping the given pool.
          *
          * @param pool
          *            the ObjectPool to be "wrapped" in a synchronized
          *            ObjectPool.
+         * @param maxWaitMillis
+         *            the maximum time to wait when the pool is exhausted, zero
+         *            to not wait and negative to wait indefinitely
          * @throws IllegalArgumentException
          *             if the pool is null
          */
-        SynchronizedObjectPool(final ObjectPool<T> pool)
-                throws IllegalArgumentException {
+        SynchronizedObjectPool(final ObjectPool<T> pool,
+                final long maxWaitMillis) throws IllegalArgumentException {
             if (pool == null) {
                 throw new IllegalArgumentException("pool must not be null.");
             }
             this.pool = pool;
+            this.maxWaitMillis = maxWaitMillis;
         }
 
         /**
          * {@inheritDoc}
+         * <p>
+         * If the underlying pool is exhausted and a maximum wait was
+         * configured, the lock is released while waiting for an object to be
+         * returned.
+         * </p>
          */
         @Override
         public T borrowObject() throws Exception, NoSuchElementException,
@@ -755,7 +1369,17 @@ public final class PoolUtils {
             final WriteLock writeLock = readWriteLock.writeLock();
             writeLock.lock();
             try {
-                return pool.borrowObject();
+                final long deadline = System.currentTimeMillis() + maxWaitMillis;
+                while (true) {
+                    try {
+                        return pool.borrowObject();
+                    } catch (final NoSuchElementException e) {
+                        if (!awaitObject(objectReturned, maxWaitMillis,
+                                deadline)) {
+                            throw e;
+                        }
+                    }
+                }
             } finally {
                 writeLock.unlock();
             }
@@ -770,6 +1394,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 pool.returnObject(obj);
+                objectReturned.signalAll();
             } catch (final Exception e) {
                 // swallowed as of Pool 2
             } finally {
@@ -786,6 +1411,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 pool.invalidateObject(obj);
+                objectReturned.signalAll();
             } catch (final Exception e) {
                 // swallowed as of Pool 2
             } finally {
@@ -803,6 +1429,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 pool.addObject();
+                objectReturned.signalAll();
             } finally {
                 writeLock.unlock();
             }
@@ -845,6 +1472,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 pool.clear();
+                objectReturned.signalAll();
             } finally {
                 writeLock.unlock();
             }
@@ -859,6 +1487,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 pool.close();
+                objectReturned.signalAll();
             } catch (final Exception e) {
                 // swallowed as of Pool 2
             } finally {
@@ -900,28 +1529,44 @@ public final class PoolUtils {
          */
         private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
 
+        /** Signalled when an object may have become available */
+        private final Condition objectReturned =
+                readWriteLock.writeLock().newCondition();
+
         /** Underlying object pool */
         private final KeyedObjectPool<K, V> keyedPool;
 
+        /** Maximum time to wait when the underlying pool is exhausted */
+        private final long maxWaitMillis;
+
         /**
          * Create a new SynchronizedKeyedObjectPool wrapping the given pool
          *
          * @param keyedPool
          *            KeyedObjectPool to wrap
+         * @param maxWaitMillis
+         *            the maximum time to wait when the pool is exhausted, zero
+         *            to not wait and negative to wait indefinitely
          * @throws IllegalArgumentException
          *             if keyedPool is null
          */
-        SynchronizedKeyedObjectPool(final KeyedObjectPool<K, V> keyedPool)
-                throws IllegalArgumentException {
+        SynchronizedKeyedObjectPool(final KeyedObjectPool<K, V> keyedPool,
+                final long maxWaitMillis) throws IllegalArgumentException {
             if (keyedPool == null) {
                 throw new IllegalArgumentException(
                         "keyedPool must not be null.");
             }
             this.keyedPool = keyedPool;
+            this.maxWaitMillis = maxWaitMillis;
         }
 
         /**
          * {@inheritDoc}
+         * <p>
+         * If the underlying pool is exhausted and a maximum wait was
+         * configured, the lock is released while waiting for an object to be
+         * returned.
+         * </p>
          */
         @Override
         public V borrowObject(final K key) throws Exception,
@@ -929,7 +1574,17 @@ public final class PoolUtils {
             final WriteLock writeLock = readWriteLock.writeLock();
             writeLock.lock();
             try {
-                return keyedPool.borrowObject(key);
+                final long deadline = System.currentTimeMillis() + maxWaitMillis;
+                while (true) {
+                    try {
+                        return keyedPool.borrowObject(key);
+                    } catch (final NoSuchElementException e) {
+                        if (!awaitObject(objectReturned, maxWaitMillis,
+                                deadline)) {
+                            throw e;
+                        }
+                    }
+                }
             } finally {
                 writeLock.unlock();
             }
@@ -944,6 +1599,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 keyedPool.returnObject(key, obj);
+                objectReturned.signalAll();
             } catch (final Exception e) {
                 // swallowed
             } finally {
@@ -960,6 +1616,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 keyedPool.invalidateObject(key, obj);
+                objectReturned.signalAll();
             } catch (final Exception e) {
                 // swallowed as of Pool 2
             } finally {
@@ -977,6 +1634,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 keyedPool.addObject(key);
+                objectReturned.signalAll();
             } finally {
                 writeLock.unlock();
             }
@@ -1047,6 +1705,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 keyedPool.clear();
+                objectReturned.signalAll();
             } finally {
                 writeLock.unlock();
             }
@@ -1062,6 +1721,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 keyedPool.clear(key);
+                objectReturned.signalAll();
             } finally {
                 writeLock.unlock();
             }
@@ -1076,6 +1736,7 @@ public final class PoolUtils {
             writeLock.lock();
             try {
                 keyedPool.close();
+                objectReturned.signalAll();
             } catch (final Exception e) {
                 // swallowed as of Pool 2
             } finally {
@@ -1333,13 +1994,20 @@ public final class PoolUtils {
      * timing also depends on numIdle. When this value is relatively high (close
      * to previously established high water mark), erosion occurs more
      * frequently.
+     * <p>
+     * The factor is thread-safe without locking. {@link #claimShrink(long)}
+     * elects a single thread to perform each erosion event.
+     * </p>
      */
     private static final class ErodingFactor {
         /** Determines frequency of "erosion" events */
         private final float factor;
 
-        /** Time of next shrink event */
-        private transient volatile long nextShrink;
+        /**
+         * Time of next shrink event, {@link Long#MAX_VALUE} while a thread is
+         * performing one
+         */
+        private final AtomicLong nextShrink;
 
         /** High water mark - largest numIdle encountered */
         private transient volatile int idleHighWaterMark;
@@ -1352,15 +2020,27 @@ public final class PoolUtils {
          */
         public ErodingFactor(final float factor) {
             this.factor = factor;
-            nextShrink = System.currentTimeMillis() + (long) (900000 * factor); // now
-                                                                                // +
-                                                                                // 15
-                                                                                // min
-                                                                                // *
-                                                                                // factor
+            // now + 15 min * factor
+            nextShrink = new AtomicLong(
+                    System.currentTimeMillis() + (long) (900000 * factor));
             idleHighWaterMark = 1;
         }
 
+        /**
+         * Claims the erosion event that is due, if any. Of the threads calling
+         * this method after the next shrink time has passed, exactly one
+         * succeeds. It must then call {@link #update(long, int)}.
+         *
+         * @param now
+         *            current time
+         * @return <code>true</code> if the caller should perform an erosion
+         *         event
+         */
+        public boolean claimShrink(final long now) {
+            final long next = nextShrink.get();
+            return next < now && nextShrink.compareAndSet(next, Long.MAX_VALUE);
+        }
+
         /**
          * Updates internal state using the supplied time and numIdle.
          *
@@ -1375,7 +2055,7 @@ public final class PoolUtils {
             final float maxInterval = 15f;
             final float minutes = maxInterval +
                     ((1f - maxInterval) / idleHighWaterMark) * idle;
-            nextShrink = now + (long) (minutes * 60000f * factor);
+            nextShrink.set(now + (long) (minutes * 60000f * factor));
         }
 
         /**
@@ -1384,7 +2064,7 @@ public final class PoolUtils {
          * @return next shrink time
          */
         public long getNextShrink() {
-            return nextShrink;
+            return nextShrink.get();
         }
 
         /**
@@ -1449,14 +2129,15 @@ public final class PoolUtils {
         public void returnObject(final T obj) {
             boolean discard = false;
             final long now = System.currentTimeMillis();
-            synchronized (pool) {
-                if (factor.getNextShrink() < now) { // XXX: Pool 3: move test
-                                                    // out of sync block
-                    final int numIdle = pool.getNumIdle();
+            if (factor.claimShrink(now)) {
+                int numIdle = 0;
+                try {
+                    numIdle = pool.getNumIdle();
                     if (numIdle > 0) {
                         discard = true;
                     }
-
+                } finally {
+                    // Always re-arm the factor, even if the pool failed
                     factor.update(now, numIdle);
                 }
             }
@@ -1615,13 +2296,15 @@ public final class PoolUtils {
             boolean discard = false;
             final long now = System.currentTimeMillis();
             final ErodingFactor factor = getErodingFactor(key);
-            synchronized (keyedPool) {
-                if (factor.getNextShrink() < now) {
-                    final int numIdle = getNumIdle(key);
+            if (factor.claimShrink(now)) {
+                int numIdle = 0;
+                try {
+                    numIdle = getNumIdle(key);
                     if (numIdle > 0) {
                         discard = true;
                     }
-
+                } finally {
+                    // Always re-arm the factor, even if the pool failed
                     factor.update(now, numIdle);
                 }
             }
@@ -1759,7 +2442,8 @@ public final class PoolUtils {
         private final float factor;
 
         /** Map of ErodingFactor instances keyed on pool keys */
-        private final Map<K, ErodingFactor> factors = Collections.synchronizedMap(new HashMap<K, ErodingFactor>());
+        private final ConcurrentMap<K, ErodingFactor> factors =
+                new ConcurrentHashMap<K, ErodingFactor>();
 
         /**
          * Create a new ErordingPerKeyKeyedObjectPool decorating the given keyed
@@ -1782,11 +2466,12 @@ public final class PoolUtils {
         @Override
         protected ErodingFactor getErodingFactor(final K key) {
             ErodingFactor eFactor = factors.get(key);
-            // this may result in two ErodingFactors being created for a key
-            // since they are small and cheap this is okay.
             if (eFactor == null) {
                 eFactor = new ErodingFactor(this.factor);
-                factors.put(key, eFactor);
+                final ErodingFactor existing = factors.putIfAbsent(key, eFactor);
+                if (existing != null) {
+                    eFactor = existing;
+                }
             }
             return eFactor;
         }
@@ -1800,4 +2485,349 @@ public final class PoolUtils {
                     ", keyedPool=" + getKeyedPool() + '}';
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * An ObjectPool that spreads its capacity over several independent
+     * {@link GenericObjectPool}s to reduce contention between borrowers.
+     */
+    private static final class ShardedObjectPool<T> implements ObjectPool<T> {
+
+        /** The shards */
+        private final List<GenericObjectPool<T>> shards;
+
+        /** The shard each borrowed object belongs to */
+        private final Map<IdentityWrapper<T>, GenericObjectPool<T>> owners =
+                new ConcurrentHashMap<IdentityWrapper<T>, GenericObjectPool<T>>();
+
+        /** Shard that the next added object is placed in */
+        private final AtomicInteger nextAdd = new AtomicInteger(0);
+
+        /** Maximum time to wait for a return when every shard is exhausted */
+        private final long maxWaitMillis;
+
+        /** Whether to wait at all when every shard is exhausted */
+        private final boolean blockWhenExhausted;
+
+        /** Lock that exhausted borrowers wait on for an object to be returned */
+        private final Object returnLock = new Object();
+
+        /** Number of borrowers waiting for a return */
+        private final AtomicInteger waiters = new AtomicInteger(0);
+
+        /** Incremented under returnLock for each return made while waiting */
+        private volatile long returnCount = 0;
+
+        /**
+         * Create the shards for a new ShardedObjectPool.
+         *
+         * @param factory
+         *            the factory used to create the objects of every shard.
+         * @param config
+         *            the configuration for the pool as a whole.
+         * @param shardCount
+         *            the number of shards.
+         */
+        ShardedObjectPool(final PooledObjectFactory<T> factory,
+                final GenericObjectPoolConfig config, final int shardCount) {
+            this.maxWaitMillis = config.getMaxWaitMillis();
+            this.blockWhenExhausted = config.getBlockWhenExhausted();
+            final List<GenericObjectPool<T>> list =
+                    new ArrayList<GenericObjectPool<T>>(shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                final GenericObjectPoolConfig shardConfig = config.clone();
+                shardConfig.setMaxTotal(
+                        divide(config.getMaxTotal(), shardCount, i, true));
+                shardConfig.setMaxIdle(
+                        divide(config.getMaxIdle(), shardCount, i, true));
+                shardConfig.setMinIdle(
+                        divide(config.getMinIdle(), shardCount, i, false));
+                list.add(new GenericObjectPool<T>(factory, shardConfig));
+            }
+            this.shards = Collections.unmodifiableList(list);
+        }
+
+        /**
+         * Returns the part of a limit that applies to one shard. Negative
+         * limits, meaning no limit, apply unchanged to every shard. If
+         * <code>atLeastOne</code> is set, a positive limit gives every shard a
+         * share of at least one.
+         */
+        private static int divide(final int limit, final int shardCount,
+                final int shard, final boolean atLeastOne) {
+            if (limit < 0) {
+                return limit;
+            }
+            final int part =
+                    limit / shardCount + (shard < limit % shardCount ? 1 : 0);
+            if (atLeastOne && limit > 0 && part == 0) {
+                return 1;
+            }
+            return part;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * The calling thread's own shard is tried first, then every other
+         * shard without waiting. If none has an object available the call
+         * waits for an object to be returned to or invalidated in any shard
+         * and tries again, until <code>maxWaitMillis</code> has passed.
+         * </p>
+         * <p>
+         * A shard that fails to create, activate or validate an object is
+         * skipped. The failure is only thrown if every shard failed.
+         * </p>
+         */
+        @Override
+        public T borrowObject() throws Exception, NoSuchElementException,
+                IllegalStateException {
+            final int shardCount = shards.size();
+            final int home = (int) (Thread.currentThread().getId() % shardCount);
+            final long deadline = System.currentTimeMillis() + maxWaitMillis;
+            boolean waiting = false;
+            try {
+                while (true) {
+                    final long observedReturns = returnCount;
+                    Exception failure = null;
+                    int failures = 0;
+                    for (int i = 0; i < shardCount; i++) {
+                        final GenericObjectPool<T> shard =
+                                shards.get((home + i) % shardCount);
+                        final T obj;
+                        try {
+                            obj = tryBorrow(shard);
+                        } catch (final Exception e) {
+                            if (failure == null) {
+                                failure = e;
+                            }
+                            failures++;
+                            continue;
+                        }
+                        if (obj != null) {
+                            owners.put(new IdentityWrapper<T>(obj), shard);
+                            return obj;
+                        }
+                    }
+                    if (failures == shardCount) {
+                        throw failure;
+                    }
+                    if (!blockWhenExhausted) {
+                        throw exhausted("Pool exhausted", failure);
+                    }
+                    if (!waiting) {
+                        // Register before re-checking the shards so that a
+                        // return made from now on wakes this thread
+                        waiters.incrementAndGet();
+                        waiting = true;
+                        continue;
+                    }
+                    synchronized (returnLock) {
+                        if (returnCount == observedReturns) {
+                            if (maxWaitMillis < 0) {
+                                returnLock.wait();
+                            } else {
+                                final long remaining =
+                                        deadline - System.currentTimeMillis();
+                                if (remaining <= 0) {
+                                    throw exhausted(
+                                            "Timeout waiting for idle object",
+                                            failure);
+                                }
+                                returnLock.wait(remaining);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (waiting) {
+                    waiters.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Create the exception thrown when no shard has an object available.
+         *
+         * @param message the exception message
+         * @param cause the failure of a shard during the last attempt, if any
+         */
+        private static NoSuchElementException exhausted(final String message,
+                final Exception cause) {
+            final NoSuchElementException nsee =
+                    new NoSuchElementException(message);
+            if (cause != null) {
+                nsee.initCause(cause);
+            }
+            return nsee;
+        }
+
+        /**
+         * Borrow an object from a shard if it can be done without waiting.
+         *
+         * @return the object or <code>null</code> if the shard is exhausted
+         * @throws Exception if the shard failed to provide an object
+         */
+        private T tryBorrow(final GenericObjectPool<T> shard) throws Exception {
+            final int maxTotal = shard.getMaxTotal();
+            if (shard.getNumIdle() == 0 && maxTotal >= 0 &&
+                    shard.getNumActive() >= maxTotal) {
+                return null;
+            }
+            try {
+                return shard.borrowObject(0);
+            } catch (final NoSuchElementException e) {
+                if (e.getCause() != null) {
+                    // Activation or validation of a new object failed
+                    throw e;
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Wake the borrowers, if any, waiting for an object to be returned.
+         */
+        private void signalReturn() {
+            if (waiters.get() > 0) {
+                synchronized (returnLock) {
+                    returnCount++;
+                    returnLock.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void returnObject(final T obj) throws Exception {
+            try {
+                getOwner(obj).returnObject(obj);
+            } finally {
+                signalReturn();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void invalidateObject(final T obj) throws Exception {
+            try {
+                getOwner(obj).invalidateObject(obj);
+            } finally {
+                signalReturn();
+            }
+        }
+
+        /**
+         * Stop tracking a borrowed object and return the shard it belongs to.
+         *
+         * @throws IllegalStateException if the object is not borrowed from
+         *         this pool
+         */
+        private GenericObjectPool<T> getOwner(final T obj) {
+            final GenericObjectPool<T> shard =
+                    owners.remove(new IdentityWrapper<T>(obj));
+            if (shard == null) {
+                throw new IllegalStateException(
+                        "Object not currently borrowed from this pool");
+            }
+            return shard;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Objects are added to each shard in turn.
+         * </p>
+         */
+        @Override
+        public void addObject() throws Exception, IllegalStateException,
+                UnsupportedOperationException {
+            final int shard = (nextAdd.getAndIncrement() & Integer.MAX_VALUE) %
+                    shards.size();
+            shards.get(shard).addObject();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getNumIdle() {
+            int numIdle = 0;
+            for (final GenericObjectPool<T> shard : shards) {
+                numIdle += shard.getNumIdle();
+            }
+            return numIdle;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int getNumActive() {
+            int numActive = 0;
+            for (final GenericObjectPool<T> shard : shards) {
+                numActive += shard.getNumActive();
+            }
+            return numActive;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void clear() throws Exception, UnsupportedOperationException {
+            for (final GenericObjectPool<T> shard : shards) {
+                shard.clear();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() {
+            for (final GenericObjectPool<T> shard : shards) {
+                shard.close();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("ShardedObjectPool");
+            sb.append("{shards=").append(shards);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Wrapper that compares pooled objects by identity.
+     */
+    private static final class IdentityWrapper<T> {
+
+        /** the wrapped object */
+        private final T instance;
+
+        IdentityWrapper(final T instance) {
+            this.instance = instance;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(instance);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof IdentityWrapper &&
+                    ((IdentityWrapper<?>) other).instance == instance;
+        }
+    }
+}
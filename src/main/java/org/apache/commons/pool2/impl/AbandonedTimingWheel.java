@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectState;
+import org.apache.commons.pool2.impl.BaseGenericObjectPool.IdentityWrapper;
+
+/**
+ * A hashed timing wheel of borrowed objects, bucketed by the time at which
+ * they become abandoned, so that abandoned objects can be identified without
+ * examining every object in the pool.
+ * <p>
+ * Objects are scheduled when they are borrowed and are not touched again
+ * until the bucket for their deadline expires. Use after scheduling, and
+ * returns, are accounted for lazily at that point: objects that are no longer
+ * allocated are dropped and objects that have been used since are moved to
+ * the bucket for their new deadline.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @param <T> Type of element pooled in the pool.
+ *
+ * @since 2.4.3
+ */
+class AbandonedTimingWheel<T> {
+
+    /** Number of buckets in the wheel */
+    static final int WHEEL_SIZE = 64;
+
+    private final long timeoutMillis;
+    private final long tickMillis;
+    private final List<List<PooledObject<T>>> buckets;
+    private final Map<IdentityWrapper<PooledObject<T>>,Boolean> scheduled =
+            new ConcurrentHashMap<IdentityWrapper<PooledObject<T>>,Boolean>();
+    private final ReentrantLock expireLock = new ReentrantLock();
+    private volatile long lastExpiredTick;
+
+    /**
+     * Create a new timing wheel.
+     *
+     * @param timeoutMillis The time after its last use at which a borrowed
+     *                      object is abandoned
+     */
+    AbandonedTimingWheel(final long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        // The wheel spans twice the timeout so most objects are only examined
+        // once, when they are abandoned or have been returned
+        this.tickMillis = Math.max(1, timeoutMillis * 2 / WHEEL_SIZE);
+        this.buckets = new ArrayList<List<PooledObject<T>>>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets.add(new ArrayList<PooledObject<T>>());
+        }
+        this.lastExpiredTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * Start tracking a borrowed object. Objects that are already being
+     * tracked are ignored.
+     *
+     * @param p The object that has just been borrowed
+     */
+    void schedule(final PooledObject<T> p) {
+        synchronized (p) {
+            if (scheduled.put(new IdentityWrapper<PooledObject<T>>(p),
+                    Boolean.TRUE) == null) {
+                add(p, p.getLastUsedTime() + timeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * Examine the objects in the buckets that have expired since the last
+     * call, mark those that are abandoned and return them. If another thread
+     * is already doing this, return immediately.
+     *
+     * @param now The current time in milliseconds
+     *
+     * @return The objects that have been marked as abandoned
+     */
+    List<PooledObject<T>> expire(final long now) {
+        final List<PooledObject<T>> abandoned = new ArrayList<PooledObject<T>>();
+        if (!expireLock.tryLock()) {
+            return abandoned;
+        }
+        try {
+            final long currentTick = now / tickMillis;
+            final long first = Math.max(lastExpiredTick + 1,
+                    currentTick - WHEEL_SIZE + 1);
+            lastExpiredTick = Math.max(lastExpiredTick, currentTick);
+            for (long tick = first; tick <= currentTick; tick++) {
+                final List<PooledObject<T>> bucket =
+                        buckets.get((int) (tick % WHEEL_SIZE));
+                final List<PooledObject<T>> expired;
+                synchronized (bucket) {
+                    if (bucket.isEmpty()) {
+                        continue;
+                    }
+                    expired = new ArrayList<PooledObject<T>>(bucket);
+                    bucket.clear();
+                }
+                for (final PooledObject<T> p : expired) {
+                    synchronized (p) {
+                        if (p.getState() != PooledObjectState.ALLOCATED) {
+                            scheduled.remove(
+                                    new IdentityWrapper<PooledObject<T>>(p));
+                            continue;
+                        }
+                        final long deadline = p.getLastUsedTime() + timeoutMillis;
+                        if (deadline <= now) {
+                            p.markAbandoned();
+                            scheduled.remove(
+                                    new IdentityWrapper<PooledObject<T>>(p));
+                            abandoned.add(p);
+                        } else {
+                            add(p, deadline);
+                        }
+                    }
+                }
+            }
+        } finally {
+            expireLock.unlock();
+        }
+        return abandoned;
+    }
+
+    /**
+     * Returns the number of objects being tracked.
+     *
+     * @return the number of scheduled objects
+     */
+    int size() {
+        return scheduled.size();
+    }
+
+    /**
+     * Place an object in the first bucket that expires no earlier than its
+     * deadline.
+     */
+    private void add(final PooledObject<T> p, final long deadline) {
+        final long tick = Math.max((deadline + tickMillis - 1) / tickMillis,
+                lastExpiredTick + 1);
+        final List<PooledObject<T>> bucket =
+                buckets.get((int) (tick % WHEEL_SIZE));
+        synchronized (bucket) {
+            bucket.add(p);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("AbandonedTimingWheel [timeoutMillis=");
+        builder.append(timeoutMillis);
+        builder.append(", tickMillis=");
+        builder.append(tickMillis);
+        builder.append(", scheduled=");
+        builder.append(scheduled.size());
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -25,6 +25,7 @@ import java.util.Arrays;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -90,6 +91,10 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
     private volatile EvictionPolicy<T> evictionPolicy;
     private volatile long evictorShutdownTimeoutMillis =
             BaseObjectPoolConfig.DEFAULT_EVICTOR_SHUTDOWN_TIMEOUT_MILLIS;
+    private volatile double memoryPressureThreshold =
+            BaseObjectPoolConfig.DEFAULT_MEMORY_PRESSURE_THRESHOLD;
+    private volatile int memoryPressureMaxIdle =
+            BaseObjectPoolConfig.DEFAULT_MEMORY_PRESSURE_MAX_IDLE;
 
 
     // Internal (primarily state) attributes
@@ -97,6 +102,7 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
     volatile boolean closed = false;
     final Object evictionLock = new Object();
     private Evictor evictor = null; // @GuardedBy("evictionLock")
+    private volatile boolean underMemoryPressure = false;
     EvictionIterator evictionIterator = null; // @GuardedBy("evictionLock")
     /*
      * Class loader for evictor thread to use since, in a JavaEE or similar
@@ -120,7 +126,10 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
     private final StatsStore idleTimes = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
     private final StatsStore waitTimes = new StatsStore(MEAN_TIMING_STATS_CACHE_SIZE);
     private final AtomicLong maxBorrowWaitTimeMillis = new AtomicLong(0L);
+    private final AtomicLong memoryPressureCount = new AtomicLong(0);
+    private volatile PoolWarmUp warmUp = null;
     private volatile SwallowedExceptionListener swallowedExceptionListener = null;
+    private volatile PoolEventListener eventListener = null;
 
 
     /**
@@ -661,6 +670,228 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         this.evictorShutdownTimeoutMillis = evictorShutdownTimeoutMillis;
     }
 
+    /**
+     * Returns the fraction of the maximum size of the tenured heap that must
+     * be in use after a garbage collection for the pool to consider itself
+     * under memory pressure.
+     *
+     * @return the memory pressure threshold, zero or negative if the pool
+     *         ignores memory pressure
+     *
+     * @see #setMemoryPressureThreshold
+     * @see #getMemoryPressureMaxIdle
+     *
+     * @since 2.4.3
+     */
+    public final double getMemoryPressureThreshold() {
+        return memoryPressureThreshold;
+    }
+
+    /**
+     * Sets the fraction of the maximum size of the tenured heap that must be
+     * in use after a garbage collection for the pool to consider itself under
+     * memory pressure. While under memory pressure the pool keeps no more
+     * than {@link #getMemoryPressureMaxIdle() memoryPressureMaxIdle} idle
+     * objects: returned objects beyond that limit are destroyed and each
+     * evictor run destroys any excess idle objects.
+     * <p>
+     * The heap usage after garbage collection is read from the platform
+     * {@link java.lang.management.MemoryPoolMXBean}s, without changing their
+     * usage thresholds. It is checked when this threshold is set, on each
+     * evictor run and, where the JVM sends garbage collection notifications,
+     * after every garbage collection. Pools that do not run the evictor on a
+     * JVM without such notifications only notice a change in memory pressure
+     * when this threshold is set again.
+     *
+     * @param memoryPressureThreshold the memory pressure threshold between 0
+     *                                and 1, zero or negative to ignore memory
+     *                                pressure
+     *
+     * @see #getMemoryPressureThreshold
+     *
+     * @since 2.4.3
+     */
+    public final void setMemoryPressureThreshold(
+            final double memoryPressureThreshold) {
+        this.memoryPressureThreshold = memoryPressureThreshold;
+        if (memoryPressureThreshold > 0 && !isClosed()) {
+            MemoryPressureMonitor.register(this);
+            checkMemoryPressure();
+        } else {
+            MemoryPressureMonitor.deregister(this);
+            underMemoryPressure = false;
+        }
+    }
+
+    /**
+     * Returns the maximum number of idle objects retained while the pool is
+     * under memory pressure. For {@link GenericKeyedObjectPool} the limit
+     * applies to each key.
+     *
+     * @return the maximum number of idle objects under memory pressure
+     *
+     * @see #setMemoryPressureMaxIdle
+     * @see #getMemoryPressureThreshold
+     *
+     * @since 2.4.3
+     */
+    public final int getMemoryPressureMaxIdle() {
+        return memoryPressureMaxIdle;
+    }
+
+    /**
+     * Sets the maximum number of idle objects retained while the pool is
+     * under memory pressure. For {@link GenericKeyedObjectPool} the limit
+     * applies to each key. The limit never raises the configured maximum or
+     * minimum number of idle objects.
+     *
+     * @param memoryPressureMaxIdle the maximum number of idle objects under
+     *                              memory pressure
+     *
+     * @see #getMemoryPressureMaxIdle
+     *
+     * @since 2.4.3
+     */
+    public final void setMemoryPressureMaxIdle(final int memoryPressureMaxIdle) {
+        this.memoryPressureMaxIdle = memoryPressureMaxIdle;
+    }
+
+    /**
+     * Is the pool currently under memory pressure? Pressure subsides once the
+     * heap usage after a garbage collection falls back below the
+     * {@link #getMemoryPressureThreshold() memory pressure threshold}.
+     *
+     * @return <code>true</code> if the pool is limiting its idle objects
+     *         because of memory pressure
+     *
+     * @since 2.4.3
+     */
+    public final boolean isUnderMemoryPressure() {
+        return underMemoryPressure;
+    }
+
+    /**
+     * Returns the number of times the pool has detected memory pressure and
+     * shed idle objects.
+     *
+     * @return the number of memory pressure events
+     *
+     * @since 2.4.3
+     */
+    public final long getMemoryPressureCount() {
+        return memoryPressureCount.get();
+    }
+
+    /**
+     * Returns the number of objects being created by the most recent warm-up
+     * started by one of the <code>preparePool</code> methods that take an
+     * executor, or zero if no such warm-up has been started.
+     *
+     * @return the target of the most recent warm-up
+     *
+     * @since 2.4.3
+     */
+    public final int getWarmUpTarget() {
+        final PoolWarmUp w = warmUp;
+        return w == null ? 0 : w.getTarget();
+    }
+
+    /**
+     * Returns the number of objects created so far by the most recent warm-up
+     * started by one of the <code>preparePool</code> methods that take an
+     * executor. Together with {@link #getWarmUpTarget()} this reports the
+     * progress of the warm-up.
+     *
+     * @return the number of objects created by the most recent warm-up
+     *
+     * @since 2.4.3
+     */
+    public final int getWarmUpCreatedCount() {
+        final PoolWarmUp w = warmUp;
+        return w == null ? 0 : w.getCreatedCount();
+    }
+
+    /**
+     * Record a warm-up so that its progress is reported, and start it.
+     *
+     * @param w           The warm-up
+     * @param executor    The executor that creates the objects
+     * @param parallelism The maximum number of objects to create concurrently
+     *
+     * @return the started warm-up
+     */
+    final PoolWarmUp startWarmUp(final PoolWarmUp w,
+            final ExecutorService executor, final int parallelism) {
+        warmUp = w;
+        return w.start(executor, parallelism);
+    }
+
+    /**
+     * Records whether the pool is under memory pressure given the heap usage
+     * after the most recent garbage collection. This only updates a flag, so
+     * it is safe to call from the JVM's notification thread.
+     *
+     * @param usage the heap usage after garbage collection between 0 and 1
+     *
+     * @return <code>true</code> if the pool is under memory pressure
+     */
+    final boolean updateMemoryPressure(final double usage) {
+        final double threshold = memoryPressureThreshold;
+        final boolean pressure = threshold > 0 && usage >= threshold &&
+                !isClosed();
+        if (pressure && !underMemoryPressure) {
+            memoryPressureCount.incrementAndGet();
+        }
+        underMemoryPressure = pressure;
+        return pressure;
+    }
+
+    /**
+     * Reads the heap usage after the most recent garbage collection and, if
+     * the pool is under memory pressure, sheds idle objects down to the limit
+     * that applies under memory pressure. Called by the evictor and when the
+     * memory pressure threshold is set.
+     */
+    final void checkMemoryPressure() {
+        if (memoryPressureThreshold <= 0 && !underMemoryPressure) {
+            return;
+        }
+        if (updateMemoryPressure(MemoryPressureMonitor.getUsage())) {
+            try {
+                shedIdle();
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Apply the limit on idle objects that applies while the pool is under
+     * memory pressure.
+     *
+     * @param maxIdle the configured limit, negative for no limit
+     *
+     * @return the limit to use
+     */
+    final int limitIdle(final int maxIdle) {
+        if (!isUnderMemoryPressure()) {
+            return maxIdle;
+        }
+        final int memoryPressureMaxIdleSave = getMemoryPressureMaxIdle();
+        if (maxIdle < 0 || maxIdle > memoryPressureMaxIdleSave) {
+            return Math.max(0, memoryPressureMaxIdleSave);
+        }
+        return maxIdle;
+    }
+
+    /**
+     * Destroys idle objects until no more remain than the limit that applies
+     * while the pool is under memory pressure.
+     *
+     * @throws Exception if an error occurs destroying idle instances
+     */
+    abstract void shedIdle() throws Exception;
+
     /**
      * Closes the pool, destroys the remaining idle objects and, if registered
      * in JMX, deregisters it.
@@ -727,10 +958,21 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
             if (delay > 0) {
                 evictor = new Evictor();
                 EvictionTimer.schedule(evictor, delay, delay);
+            } else {
+                evictorStopped();
             }
         }
     }
 
+    /**
+     * Called, with the eviction lock held, whenever the evictor is stopped or
+     * started with a delay that disables it. The default implementation does
+     * nothing.
+     */
+    void evictorStopped() {
+        // NO-OP
+    }
+
     /**
      * Tries to ensure that the configured minimum number of idle instances are
      * available in the pool.
@@ -909,6 +1151,148 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         }
     }
 
+    /**
+     * The listener used (if any) to receive notifications of the operations
+     * performed by the pool.
+     *
+     * @return The listener or <code>null</code> for no listener
+     * @since 2.4.3
+     */
+    public final PoolEventListener getEventListener() {
+        return eventListener;
+    }
+
+    /**
+     * The listener used (if any) to receive notifications of the operations
+     * performed by the pool.
+     *
+     * @param eventListener The listener or <code>null</code> for no listener
+     * @since 2.4.3
+     */
+    public final void setEventListener(final PoolEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Notifies the event listener, if any, that an object has been borrowed.
+     *
+     * @param key the key the object was borrowed under or <code>null</code>
+     * @param waitTime time (in milliseconds) that the borrowing thread had to wait
+     * @param created <code>true</code> if the object was created for the borrow
+     */
+    final void fireBorrow(final Object key, final long waitTime, final boolean created) {
+        final PoolEventListener listener = eventListener;
+        if (listener != null) {
+            try {
+                listener.onBorrow(oname, key, waitTime, created);
+            } catch (final RuntimeException e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the event listener, if any, that an object has been returned.
+     *
+     * @param key the key the object was returned under or <code>null</code>
+     * @param activeTime time (in milliseconds) the object was checked out
+     */
+    final void fireReturn(final Object key, final long activeTime) {
+        final PoolEventListener listener = eventListener;
+        if (listener != null) {
+            try {
+                listener.onReturn(oname, key, activeTime);
+            } catch (final RuntimeException e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the event listener, if any, that an object has been created.
+     *
+     * @param key the key the object was created for or <code>null</code>
+     * @param createTimeNanos time the factory took to create the object
+     */
+    final void fireCreate(final Object key, final long createTimeNanos) {
+        final PoolEventListener listener = eventListener;
+        if (listener != null) {
+            try {
+                listener.onCreate(oname, key, createTimeNanos);
+            } catch (final RuntimeException e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the event listener, if any, that an object has been destroyed.
+     *
+     * @param key the key the object belonged to or <code>null</code>
+     */
+    final void fireDestroy(final Object key) {
+        final PoolEventListener listener = eventListener;
+        if (listener != null) {
+            try {
+                listener.onDestroy(oname, key);
+            } catch (final RuntimeException e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the event listener, if any, that an object failed validation.
+     *
+     * @param key the key the object belongs to or <code>null</code>
+     */
+    final void fireValidationFailure(final Object key) {
+        final PoolEventListener listener = eventListener;
+        if (listener != null) {
+            try {
+                listener.onValidationFailure(oname, key);
+            } catch (final RuntimeException e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the event listener, if any, that an eviction run has completed.
+     *
+     * @param runTimeNanos time the eviction run took
+     * @param examined number of idle objects examined
+     * @param evicted number of idle objects destroyed
+     */
+    final void fireEvictionRun(final long runTimeNanos, final int examined,
+            final int evicted) {
+        final PoolEventListener listener = eventListener;
+        if (listener != null) {
+            try {
+                listener.onEvictionRun(oname, runTimeNanos, examined, evicted);
+            } catch (final RuntimeException e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the event listener, if any, that an object has been abandoned.
+     *
+     * @param key the key the object was borrowed under or <code>null</code>
+     * @param activeTime time (in milliseconds) the object has been checked out
+     */
+    final void fireAbandoned(final Object key, final long activeTime) {
+        final PoolEventListener listener = eventListener;
+        if (listener != null) {
+            try {
+                listener.onAbandoned(oname, key, activeTime);
+            } catch (final RuntimeException e) {
+                swallowException(e);
+            }
+        }
+    }
+
     /**
      * Updates statistics after an object is borrowed from the pool.
      * @param p object borrowed from the pool
@@ -1065,6 +1449,9 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
                     Thread.currentThread().setContextClassLoader(cl);
                 }
 
+                // Shed idle objects if the heap is short of memory
+                checkMemoryPressure();
+
                 // Evict from the pool
                 try {
                     evict();
@@ -1289,6 +1676,12 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         builder.append(softMinEvictableIdleTimeMillis);
         builder.append(", evictionPolicy=");
         builder.append(evictionPolicy);
+        builder.append(", memoryPressureThreshold=");
+        builder.append(memoryPressureThreshold);
+        builder.append(", memoryPressureMaxIdle=");
+        builder.append(memoryPressureMaxIdle);
+        builder.append(", underMemoryPressure=");
+        builder.append(underMemoryPressure);
         builder.append(", closeLock=");
         builder.append(closeLock);
         builder.append(", closed=");
@@ -1327,6 +1720,8 @@ public abstract class BaseGenericObjectPool<T> extends BaseObject {
         builder.append(maxBorrowWaitTimeMillis);
         builder.append(", swallowedExceptionListener=");
         builder.append(swallowedExceptionListener);
+        builder.append(", eventListener=");
+        builder.append(eventListener);
     }
 
 }
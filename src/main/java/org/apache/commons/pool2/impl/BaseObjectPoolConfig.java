@@ -165,6 +165,25 @@ public abstract class BaseObjectPoolConfig extends BaseObject implements Cloneab
             "org.apache.commons.pool2.impl.DefaultEvictionPolicy";
 
 
+    /**
+     * The default value for the {@code memoryPressureThreshold} configuration
+     * attribute.
+     * @see GenericObjectPool#getMemoryPressureThreshold()
+     * @see GenericKeyedObjectPool#getMemoryPressureThreshold()
+     * @since 2.4.3
+     */
+    public static final double DEFAULT_MEMORY_PRESSURE_THRESHOLD = -1;
+
+    /**
+     * The default value for the {@code memoryPressureMaxIdle} configuration
+     * attribute.
+     * @see GenericObjectPool#getMemoryPressureMaxIdle()
+     * @see GenericKeyedObjectPool#getMemoryPressureMaxIdle()
+     * @since 2.4.3
+     */
+    public static final int DEFAULT_MEMORY_PRESSURE_MAX_IDLE = 0;
+
+
     private boolean lifo = DEFAULT_LIFO;
 
     private boolean fairness = DEFAULT_FAIRNESS;
@@ -205,6 +224,10 @@ public abstract class BaseObjectPoolConfig extends BaseObject implements Cloneab
 
     private String jmxNameBase = DEFAULT_JMX_NAME_BASE;
 
+    private double memoryPressureThreshold = DEFAULT_MEMORY_PRESSURE_THRESHOLD;
+
+    private int memoryPressureMaxIdle = DEFAULT_MEMORY_PRESSURE_MAX_IDLE;
+
 
     /**
      * Get the value for the {@code lifo} configuration attribute for pools
@@ -682,6 +705,70 @@ public abstract class BaseObjectPoolConfig extends BaseObject implements Cloneab
         this.jmxNamePrefix = jmxNamePrefix;
     }
 
+    /**
+     * Get the value for the {@code memoryPressureThreshold} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code memoryPressureThreshold} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getMemoryPressureThreshold()
+     * @see GenericKeyedObjectPool#getMemoryPressureThreshold()
+     *
+     * @since 2.4.3
+     */
+    public double getMemoryPressureThreshold() {
+        return memoryPressureThreshold;
+    }
+
+    /**
+     * Set the value for the {@code memoryPressureThreshold} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param memoryPressureThreshold The new setting of
+     *        {@code memoryPressureThreshold} for this configuration instance
+     *
+     * @see GenericObjectPool#getMemoryPressureThreshold()
+     * @see GenericKeyedObjectPool#getMemoryPressureThreshold()
+     *
+     * @since 2.4.3
+     */
+    public void setMemoryPressureThreshold(final double memoryPressureThreshold) {
+        this.memoryPressureThreshold = memoryPressureThreshold;
+    }
+
+    /**
+     * Get the value for the {@code memoryPressureMaxIdle} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code memoryPressureMaxIdle} for this
+     *          configuration instance
+     *
+     * @see GenericObjectPool#getMemoryPressureMaxIdle()
+     * @see GenericKeyedObjectPool#getMemoryPressureMaxIdle()
+     *
+     * @since 2.4.3
+     */
+    public int getMemoryPressureMaxIdle() {
+        return memoryPressureMaxIdle;
+    }
+
+    /**
+     * Set the value for the {@code memoryPressureMaxIdle} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param memoryPressureMaxIdle The new setting of
+     *        {@code memoryPressureMaxIdle} for this configuration instance
+     *
+     * @see GenericObjectPool#getMemoryPressureMaxIdle()
+     * @see GenericKeyedObjectPool#getMemoryPressureMaxIdle()
+     *
+     * @since 2.4.3
+     */
+    public void setMemoryPressureMaxIdle(final int memoryPressureMaxIdle) {
+        this.memoryPressureMaxIdle = memoryPressureMaxIdle;
+    }
+
     @Override
     protected void toStringAppendFields(final StringBuilder builder) {
         builder.append("lifo=");
@@ -716,5 +803,9 @@ public abstract class BaseObjectPoolConfig extends BaseObject implements Cloneab
         builder.append(jmxNamePrefix);
         builder.append(", jmxNameBase=");
         builder.append(jmxNameBase);
+        builder.append(", memoryPressureThreshold=");
+        builder.append(memoryPressureThreshold);
+        builder.append(", memoryPressureMaxIdle=");
+        builder.append(memoryPressureMaxIdle);
     }
 }
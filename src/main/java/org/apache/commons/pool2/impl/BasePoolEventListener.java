@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import javax.management.ObjectName;
+
+/**
+ * A {@link PoolEventListener} that ignores every event. Extend this class and
+ * override only the events of interest.
+ *
+ * @since 2.4.3
+ */
+public abstract class BasePoolEventListener implements PoolEventListener {
+
+    @Override
+    public void onBorrow(final ObjectName pool, final Object key,
+            final long waitTimeMillis, final boolean created) {
+        // NO-OP
+    }
+
+    @Override
+    public void onReturn(final ObjectName pool, final Object key,
+            final long activeTimeMillis) {
+        // NO-OP
+    }
+
+    @Override
+    public void onCreate(final ObjectName pool, final Object key,
+            final long createTimeNanos) {
+        // NO-OP
+    }
+
+    @Override
+    public void onDestroy(final ObjectName pool, final Object key) {
+        // NO-OP
+    }
+
+    @Override
+    public void onValidationFailure(final ObjectName pool, final Object key) {
+        // NO-OP
+    }
+
+    @Override
+    public void onEvictionRun(final ObjectName pool, final long runTimeNanos,
+            final int examined, final int evicted) {
+        // NO-OP
+    }
+
+    @Override
+    public void onAbandoned(final ObjectName pool, final Object key,
+            final long activeTimeMillis) {
+        // NO-OP
+    }
+}
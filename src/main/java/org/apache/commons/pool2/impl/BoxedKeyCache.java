@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+/**
+ * A cache of canonical boxed instances of primitive keys. Looking up a key
+ * that is already present neither allocates nor locks so pools keyed by
+ * primitive values can use the same boxed key instance for every call rather
+ * than boxing the key on each call.
+ * <p>
+ * Keys are held in an open addressing hash table that only grows. Once
+ * {@link #MAX_SIZE} keys are present further keys are boxed on every call.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @param <B> The boxed key type
+ *
+ * @since 2.4.3
+ */
+abstract class BoxedKeyCache<B extends Number> {
+
+    /** The maximum number of keys held in the cache. */
+    static final int MAX_SIZE = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /*
+     * Entries are only ever added to the table, never replaced or removed,
+     * and boxed primitives are immutable so lock free readers can tolerate
+     * reading a stale table or missing a concurrently added entry. A reader
+     * that misses falls back to add() which re-checks under the lock, unless
+     * the cache is full, in which case it boxes the key without locking.
+     */
+    private volatile Number[] table = new Number[INITIAL_CAPACITY];
+    private volatile int size = 0; // Written only while holding "this"
+
+    /**
+     * Obtain the canonical boxed instance of a key.
+     *
+     * @param key The key
+     *
+     * @return The boxed key
+     */
+    @SuppressWarnings("unchecked")
+    final B get(final long key) {
+        final Number[] t = table;
+        final int mask = t.length - 1;
+        int i = hash(key) & mask;
+        Number b;
+        while ((b = t[i]) != null) {
+            if (b.longValue() == key) {
+                return (B) b;
+            }
+            i = (i + 1) & mask;
+        }
+        if (size >= MAX_SIZE) {
+            // Do not serialize callers on the lock once no more keys are added
+            return box(key);
+        }
+        return add(key);
+    }
+
+    /**
+     * Obtain the number of keys in the cache.
+     *
+     * @return The number of cached keys
+     */
+    final int size() {
+        return size;
+    }
+
+    /**
+     * Box a key.
+     *
+     * @param key The key
+     *
+     * @return A new boxed instance of the key
+     */
+    abstract B box(long key);
+
+    @SuppressWarnings("unchecked")
+    private synchronized B add(final long key) {
+        Number[] t = table;
+        int i = indexOf(t, key);
+        if (t[i] != null) {
+            return (B) t[i];
+        }
+        final B b = box(key);
+        if (size >= MAX_SIZE) {
+            return b;
+        }
+        if ((size + 1) * 2 > t.length) {
+            // Keep the load factor at or below 0.5
+            final Number[] grown = new Number[t.length * 2];
+            for (final Number n : t) {
+                if (n != null) {
+                    grown[indexOf(grown, n.longValue())] = n;
+                }
+            }
+            t = grown;
+            i = indexOf(t, key);
+            t[i] = b;
+            table = t;
+        } else {
+            t[i] = b;
+        }
+        size++;
+        return b;
+    }
+
+    /**
+     * Find the slot holding a key or, if the key is not present, the free
+     * slot where it should be added.
+     */
+    private static int indexOf(final Number[] t, final long key) {
+        final int mask = t.length - 1;
+        int i = hash(key) & mask;
+        while (t[i] != null && t[i].longValue() != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private static int hash(final long key) {
+        final int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.util.List;
+
+/**
+ * Provides the keys of a {@link GenericKeyedObjectPool} whose idle instances
+ * may be used to satisfy a borrow for a given key, for example because the
+ * keys represent interchangeable replicas of the same resource. The resolver
+ * is only called when there are no idle instances for the requested key.
+ * <p>
+ * Implementations should be fast and must not call back into the pool.
+ *
+ * @param <K> The type of keys maintained by the pool
+ *
+ * @see GenericKeyedObjectPool#setFallbackKeyResolver(FallbackKeyResolver)
+ *
+ * @since 2.4.3
+ */
+public interface FallbackKeyResolver<K> {
+
+    /**
+     * Obtain the keys whose idle instances may be borrowed in place of an
+     * instance for the given key.
+     *
+     * @param key The key for which an instance is being borrowed
+     *
+     * @return The fallback keys in order of preference or <code>null</code>
+     *         if there are none
+     */
+    List<K> getFallbackKeys(K key);
+}
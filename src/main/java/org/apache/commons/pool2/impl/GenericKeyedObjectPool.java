@@ -17,6 +17,9 @@
 package org.apache.commons.pool2.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -24,13 +27,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.pool2.KeyedObjectPool;
@@ -180,6 +193,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      */
     public void setMaxIdlePerKey(final int maxIdlePerKey) {
         this.maxIdlePerKey = maxIdlePerKey;
+        allKeysBelowMinIdle.set(true);
     }
 
     /**
@@ -202,6 +216,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      */
     public void setMinIdlePerKey(final int minIdlePerKey) {
         this.minIdlePerKey = minIdlePerKey;
+        allKeysBelowMinIdle.set(true);
     }
 
     /**
@@ -229,6 +244,505 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         return minIdlePerKey;
     }
 
+    /**
+     * Returns the limit on the number of object instances allocated by the pool
+     * (checked out or idle) for the given key. This is the value provided by
+     * the {@link #getPerKeyConfigResolver() per key configuration resolver} if
+     * there is one for the key, otherwise {@link #getMaxTotalPerKey()}.
+     *
+     * @param key The key
+     *
+     * @return the limit on the number of active instances for the key
+     *
+     * @since 2.4.3
+     */
+    public int getMaxTotalPerKey(final K key) {
+        return getMaxTotalPerKey(getPerKeyConfig(key));
+    }
+
+    /**
+     * Returns the cap on the number of "idle" instances in the pool for the
+     * given key. This is the value provided by the
+     * {@link #getPerKeyConfigResolver() per key configuration resolver} if
+     * there is one for the key, otherwise {@link #getMaxIdlePerKey()}, limited
+     * to {@link #getMemoryPressureMaxIdle()} while the pool is
+     * {@link #isUnderMemoryPressure() under memory pressure}.
+     *
+     * @param key The key
+     *
+     * @return the maximum number of "idle" instances that can be held for the
+     *         key or a negative value if there is no limit
+     *
+     * @since 2.4.3
+     */
+    public int getMaxIdlePerKey(final K key) {
+        return getMaxIdlePerKey(getPerKeyConfig(key));
+    }
+
+    /**
+     * Returns the target for the minimum number of idle objects to maintain
+     * for the given key. This is the value provided by the
+     * {@link #getPerKeyConfigResolver() per key configuration resolver} if
+     * there is one for the key, otherwise {@link #getMinIdlePerKey()}. In
+     * either case, if the value is greater than the maximum number of idle
+     * objects for the key then that maximum will be used instead.
+     *
+     * @param key The key
+     *
+     * @return minimum number of idle objects for the key
+     *
+     * @since 2.4.3
+     */
+    public int getMinIdlePerKey(final K key) {
+        return getMinIdlePerKey(getPerKeyConfig(key));
+    }
+
+    /**
+     * Returns the resolver used to obtain the limits that override the pool
+     * wide per key settings for individual keys.
+     *
+     * @return the per key configuration resolver or <code>null</code> if the
+     *         pool wide settings apply to every key
+     *
+     * @see #setPerKeyConfigResolver
+     *
+     * @since 2.4.3
+     */
+    public PerKeyConfigResolver<K> getPerKeyConfigResolver() {
+        return perKeyConfigResolver;
+    }
+
+    /**
+     * Sets the resolver used to obtain the limits that override the pool wide
+     * {@link #getMaxTotalPerKey() maxTotalPerKey},
+     * {@link #getMaxIdlePerKey() maxIdlePerKey} and
+     * {@link #getMinIdlePerKey() minIdlePerKey} settings for individual keys.
+     * The resolver is called once when the sub-pool for a key is created and
+     * the result is retained for as long as the sub-pool exists. Setting a new
+     * resolver re-resolves the limits for all current keys.
+     *
+     * @param perKeyConfigResolver the per key configuration resolver or
+     *                             <code>null</code> to apply the pool wide
+     *                             settings to every key
+     *
+     * @see #getPerKeyConfigResolver
+     *
+     * @since 2.4.3
+     */
+    public void setPerKeyConfigResolver(
+            final PerKeyConfigResolver<K> perKeyConfigResolver) {
+        this.perKeyConfigResolver = perKeyConfigResolver;
+        for (Map.Entry<K, ObjectDeque<T>> entry : poolMap.entrySet()) {
+            entry.getValue().setPerKeyConfig(resolvePerKeyConfig(entry.getKey()));
+        }
+        allKeysBelowMinIdle.set(true);
+    }
+
+    /**
+     * Returns the resolver used to obtain the keys whose idle instances may be
+     * borrowed when there are no idle instances for the requested key.
+     *
+     * @return the fallback key resolver or <code>null</code> if instances are
+     *         only borrowed from the requested key
+     *
+     * @see #setFallbackKeyResolver
+     *
+     * @since 2.4.3
+     */
+    public FallbackKeyResolver<K> getFallbackKeyResolver() {
+        return fallbackKeyResolver;
+    }
+
+    /**
+     * Sets the resolver used to obtain the keys whose idle instances may be
+     * borrowed when there are no idle instances for the requested key. If set,
+     * {@link #borrowObject(Object, long)} tries the idle instances of the
+     * fallback keys, in the order provided by the resolver, before creating a
+     * new instance or waiting.
+     * <p>
+     * An instance borrowed via a fallback key remains part of the sub-pool of
+     * the key it was created for: it is counted as active for that key and
+     * the factory methods are called with that key. It may be returned or
+     * invalidated using either the requested key or the key it was created
+     * for and it is returned to the sub-pool of the key it was created for.
+     *
+     * @param fallbackKeyResolver the fallback key resolver or
+     *                            <code>null</code> to only borrow instances
+     *                            from the requested key
+     *
+     * @see #getFallbackKeyResolver
+     *
+     * @since 2.4.3
+     */
+    public void setFallbackKeyResolver(
+            final FallbackKeyResolver<K> fallbackKeyResolver) {
+        this.fallbackKeyResolver = fallbackKeyResolver;
+    }
+
+    /**
+     * Returns the executor used to replenish the idle instances of different
+     * keys in parallel during idle object eviction runs.
+     *
+     * @return the executor or <code>null</code> if keys are replenished
+     *         sequentially by the evictor thread
+     *
+     * @see #setMinIdleExecutor
+     *
+     * @since 2.4.3
+     */
+    public ExecutorService getMinIdleExecutor() {
+        return minIdleExecutor;
+    }
+
+    /**
+     * Sets the executor used to replenish the idle instances of different
+     * keys in parallel during idle object eviction runs. The instances for
+     * any one key are always created sequentially, so the number of threads
+     * available to the executor bounds the number of concurrent calls to
+     * {@link KeyedPooledObjectFactory#makeObject(Object)} made to maintain
+     * {@link #getMinIdlePerKey() minIdlePerKey}. The evictor waits for all the
+     * submitted tasks to complete before the eviction run ends. The pool does
+     * not shut down the executor when the pool is closed.
+     *
+     * @param minIdleExecutor the executor or <code>null</code> to replenish
+     *                        keys sequentially by the evictor thread
+     *
+     * @see #getMinIdleExecutor
+     *
+     * @since 2.4.3
+     */
+    public void setMinIdleExecutor(final ExecutorService minIdleExecutor) {
+        this.minIdleExecutor = minIdleExecutor;
+    }
+
+    /**
+     * Returns whether the pool shares its {@link #getMaxTotal() maxTotal}
+     * capacity between keys in proportion to their weights when it is
+     * exhausted. See {@link #setWeightedFairSharing(boolean)}.
+     *
+     * @return <code>true</code> if weighted fair sharing is enabled
+     *
+     * @see #setWeightedFairSharing
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public boolean getWeightedFairSharing() {
+        return weightedFairSharing;
+    }
+
+    /**
+     * Sets whether the pool shares its {@link #getMaxTotal() maxTotal}
+     * capacity between keys in proportion to their weights when it is
+     * exhausted. The weight and guaranteed number of instances for each key
+     * are obtained from the {@link #getPerKeyConfigResolver() per key
+     * configuration resolver}; keys without an override have a weight of
+     * {@link PerKeyConfig#DEFAULT_WEIGHT} and no guaranteed instances.
+     * <p>
+     * When enabled and the pool is at <code>maxTotal</code>:
+     * <ul>
+     * <li>idle instances are only destroyed to make room for a key whose
+     * allocation relative to its weight, after the new instance is added,
+     * would be no greater than that of the key losing the instance, or for a
+     * key that has fewer instances than it is guaranteed. The idle instances
+     * of the key with the greatest allocation relative to its weight are
+     * destroyed first and a key never loses idle instances to another key
+     * while it has no more instances than it is guaranteed.</li>
+     * <li>when capacity becomes available, it is given to the waiting key
+     * with fewer instances than it is guaranteed or, if there is none, to the
+     * waiting key with the lowest allocation relative to its weight.</li>
+     * </ul>
+     * When disabled, the oldest 15% of idle instances are cleared to make room
+     * and capacity is given to the key with the most waiting threads.
+     *
+     * @param weightedFairSharing <code>true</code> to enable weighted fair
+     *                            sharing
+     *
+     * @see #getWeightedFairSharing
+     *
+     * @since 2.4.3
+     */
+    public void setWeightedFairSharing(final boolean weightedFairSharing) {
+        this.weightedFairSharing = weightedFairSharing;
+    }
+
+    /**
+     * Returns the minimum time in milliseconds a key with no instances and no
+     * threads interested in it is retained for reuse before it is removed
+     * from the pool. See {@link #setKeyRetentionTimeMillis(long)}.
+     *
+     * @return the key retention time in milliseconds
+     *
+     * @see #setKeyRetentionTimeMillis
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public long getKeyRetentionTimeMillis() {
+        return keyRetentionTimeMillis;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds a key with no instances and no
+     * threads interested in it is retained for reuse before it is removed
+     * from the pool. Retaining such keys avoids taking the pool's key write
+     * lock to remove and then re-create the internal structures for keys that
+     * are repeatedly used in short bursts. Retained keys are removed by the
+     * idle object evictor so keys are only retained if
+     * {@link #getTimeBetweenEvictionRunsMillis() timeBetweenEvictionRunsMillis}
+     * is positive. If this value is zero or negative, keys are removed as soon
+     * as they have no instances and no interested threads.
+     *
+     * @param keyRetentionTimeMillis the key retention time in milliseconds
+     *
+     * @see #getKeyRetentionTimeMillis
+     *
+     * @since 2.4.3
+     */
+    public void setKeyRetentionTimeMillis(final long keyRetentionTimeMillis) {
+        this.keyRetentionTimeMillis = keyRetentionTimeMillis;
+    }
+
+    /**
+     * Returns the maximum number of keys treated as hot. See
+     * {@link #setHotKeyCount(int)}.
+     *
+     * @return the maximum number of hot keys
+     *
+     * @see #setHotKeyCount
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public int getHotKeyCount() {
+        return hotKeyCount;
+    }
+
+    /**
+     * Sets the maximum number of keys treated as hot. If positive, the pool
+     * counts borrows per key and each run of the idle object evictor ranks
+     * the keys by an exponentially decaying borrow count, halving the weight
+     * of earlier runs each time. The top <code>hotKeyCount</code> keys that
+     * have been borrowed are hot and use the more generous of their usual
+     * limits and {@link #getMinIdlePerHotKey() minIdlePerHotKey} /
+     * {@link #getMaxIdlePerHotKey() maxIdlePerHotKey}, so idle instances are
+     * retained and replenished for them while other keys keep the (usually
+     * lower) per key limits. Keys stop being hot when they drop out of the
+     * top ranks. If zero or negative, no keys are hot.
+     *
+     * @param hotKeyCount the maximum number of hot keys
+     *
+     * @see #getHotKeyCount
+     * @see #getHotKeys
+     *
+     * @since 2.4.3
+     */
+    public void setHotKeyCount(final int hotKeyCount) {
+        this.hotKeyCount = hotKeyCount;
+    }
+
+    /**
+     * Returns the target for the minimum number of idle objects to maintain
+     * for each hot key. See {@link #setHotKeyCount(int)}.
+     *
+     * @return the minimum number of idle objects for hot keys
+     *
+     * @see #setMinIdlePerHotKey
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public int getMinIdlePerHotKey() {
+        return minIdlePerHotKey;
+    }
+
+    /**
+     * Sets the target for the minimum number of idle objects to maintain for
+     * each hot key. If this is lower than the minimum that would otherwise
+     * apply to a key, that minimum is used instead. The value is applied to
+     * hot keys on the next run of the idle object evictor.
+     *
+     * @param minIdlePerHotKey the minimum number of idle objects for hot keys
+     *
+     * @see #getMinIdlePerHotKey
+     * @see #setHotKeyCount
+     *
+     * @since 2.4.3
+     */
+    public void setMinIdlePerHotKey(final int minIdlePerHotKey) {
+        this.minIdlePerHotKey = minIdlePerHotKey;
+    }
+
+    /**
+     * Returns the cap on the number of "idle" instances for each hot key. See
+     * {@link #setHotKeyCount(int)}.
+     *
+     * @return the maximum number of idle objects for hot keys or a negative
+     *         value if there is no limit
+     *
+     * @see #setMaxIdlePerHotKey
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public int getMaxIdlePerHotKey() {
+        return maxIdlePerHotKey;
+    }
+
+    /**
+     * Sets the cap on the number of "idle" instances for each hot key. If this
+     * is lower than the cap that would otherwise apply to a key, that cap is
+     * used instead. Use a negative value for no limit. The value is applied
+     * to hot keys on the next run of the idle object evictor.
+     *
+     * @param maxIdlePerHotKey the maximum number of idle objects for hot keys
+     *
+     * @see #getMaxIdlePerHotKey
+     * @see #setHotKeyCount
+     *
+     * @since 2.4.3
+     */
+    public void setMaxIdlePerHotKey(final int maxIdlePerHotKey) {
+        this.maxIdlePerHotKey = maxIdlePerHotKey;
+    }
+
+    /**
+     * Returns the number of idle instances cold keys are shrunk to. See
+     * {@link #setMaxIdlePerColdKey(int)}.
+     *
+     * @return the maximum number of idle objects for cold keys or a negative
+     *         value if cold keys are not shrunk
+     *
+     * @see #setMaxIdlePerColdKey
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public int getMaxIdlePerColdKey() {
+        return maxIdlePerColdKey;
+    }
+
+    /**
+     * Sets the number of idle instances cold keys are shrunk to. If zero or
+     * positive, the pool counts borrows per key and a key is cold when it is
+     * not {@link #getHotKeys() hot} and its decaying borrow count (see
+     * {@link #setHotKeyCount(int)}) has fallen below one, i.e. it is borrowed
+     * less than about once per run of the idle object evictor. Each evictor
+     * run examines a bounded number of keys, continuing where the previous run
+     * stopped, and destroys the idle instances of cold keys above the greater
+     * of this value and the minimum idle for the key. Returns to cold keys
+     * are still limited by the usual maximum idle. If negative, cold keys are
+     * not shrunk.
+     *
+     * @param maxIdlePerColdKey the maximum number of idle objects for cold
+     *                          keys
+     *
+     * @see #getMaxIdlePerColdKey
+     *
+     * @since 2.4.3
+     */
+    public void setMaxIdlePerColdKey(final int maxIdlePerColdKey) {
+        this.maxIdlePerColdKey = maxIdlePerColdKey;
+    }
+
+    /**
+     * Returns the number of shards the keys are partitioned into for idle
+     * object eviction. See {@link #setEvictionShardCount(int)}.
+     *
+     * @return the number of eviction shards or zero if the evictor examines
+     *         {@link #getNumTestsPerEvictionRun() numTestsPerEvictionRun}
+     *         objects per run, cycling through the keys in sequence
+     *
+     * @see #setEvictionShardCount
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public int getEvictionShardCount() {
+        return evictionShardCount;
+    }
+
+    /**
+     * Sets the number of shards the keys are partitioned into for idle object
+     * eviction. When positive, each run of the idle object evictor examines
+     * all the idle objects of every key in at least one shard, so every idle
+     * object present at the start of a cycle is examined within
+     * <code>evictionShardCount</code> eviction runs. Additional shards are
+     * examined in the same run while the
+     * {@link #getEvictionTimeBudgetMillis() eviction time budget} has not been
+     * used up. Only the keys of the shard being examined are copied while
+     * holding the pool's key lock. When zero or negative, the evictor
+     * examines {@link #getNumTestsPerEvictionRun() numTestsPerEvictionRun}
+     * objects per run, cycling through the keys in sequence.
+     *
+     * @param evictionShardCount the number of eviction shards or zero to use
+     *                           numTestsPerEvictionRun
+     *
+     * @see #getEvictionShardCount
+     *
+     * @since 2.4.3
+     */
+    public void setEvictionShardCount(final int evictionShardCount) {
+        final Lock writeLock = keyLock.writeLock();
+        writeLock.lock();
+        try {
+            if (evictionShardCount > 0) {
+                final List<List<K>> shards =
+                        new ArrayList<List<K>>(evictionShardCount);
+                for (int i = 0; i < evictionShardCount; i++) {
+                    shards.add(new ArrayList<K>());
+                }
+                for (final K k : poolKeyList) {
+                    shards.get(getEvictionShard(k, evictionShardCount)).add(k);
+                }
+                evictionShards = shards;
+                this.evictionShardCount = evictionShardCount;
+            } else {
+                evictionShards = null;
+                this.evictionShardCount = 0;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds a run of the idle object evictor may
+     * spend examining further eviction shards once it has examined the first.
+     * Only used if {@link #getEvictionShardCount() evictionShardCount} is
+     * positive.
+     *
+     * @return the eviction time budget in milliseconds, zero or negative if
+     *         only one shard is examined per run
+     *
+     * @see #setEvictionTimeBudgetMillis
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public long getEvictionTimeBudgetMillis() {
+        return evictionTimeBudgetMillis;
+    }
+
+    /**
+     * Sets the time in milliseconds a run of the idle object evictor may
+     * spend examining further eviction shards once it has examined the first.
+     * The budget is checked between shards, so a run always completes the
+     * shard it is examining. Only used if
+     * {@link #getEvictionShardCount() evictionShardCount} is positive.
+     *
+     * @param evictionTimeBudgetMillis the eviction time budget in
+     *                                 milliseconds, zero or negative to
+     *                                 examine one shard per run
+     *
+     * @see #getEvictionTimeBudgetMillis
+     *
+     * @since 2.4.3
+     */
+    public void setEvictionTimeBudgetMillis(final long evictionTimeBudgetMillis) {
+        this.evictionTimeBudgetMillis = evictionTimeBudgetMillis;
+    }
+
     /**
      * Sets the configuration.
      *
@@ -242,6 +756,14 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         setMaxTotalPerKey(conf.getMaxTotalPerKey());
         setMaxTotal(conf.getMaxTotal());
         setMinIdlePerKey(conf.getMinIdlePerKey());
+        setWeightedFairSharing(conf.getWeightedFairSharing());
+        setEvictionShardCount(conf.getEvictionShardCount());
+        setKeyRetentionTimeMillis(conf.getKeyRetentionTimeMillis());
+        setHotKeyCount(conf.getHotKeyCount());
+        setMinIdlePerHotKey(conf.getMinIdlePerHotKey());
+        setMaxIdlePerHotKey(conf.getMaxIdlePerHotKey());
+        setMaxIdlePerColdKey(conf.getMaxIdlePerColdKey());
+        setEvictionTimeBudgetMillis(conf.getEvictionTimeBudgetMillis());
         setMaxWaitMillis(conf.getMaxWaitMillis());
         setBlockWhenExhausted(conf.getBlockWhenExhausted());
         setTestOnCreate(conf.getTestOnCreate());
@@ -256,6 +778,8 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
                 conf.getTimeBetweenEvictionRunsMillis());
         setEvictionPolicyClassName(conf.getEvictionPolicyClassName());
         setEvictorShutdownTimeoutMillis(conf.getEvictorShutdownTimeoutMillis());
+        setMemoryPressureMaxIdle(conf.getMemoryPressureMaxIdle());
+        setMemoryPressureThreshold(conf.getMemoryPressureThreshold());
     }
 
     /**
@@ -293,6 +817,11 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      * instance is returned or there are no more idle instances available.
      * <p>
      * If there are no idle instances available in the sub-pool associated with
+     * the given key and a {@link #getFallbackKeyResolver() fallback key
+     * resolver} is set, an idle instance is taken from the sub-pool of the
+     * first fallback key that has one, if any.
+     * <p>
+     * If there are no idle instances available in the sub-pool associated with
      * the given key, behavior depends on the {@link #getMaxTotalPerKey()
      * maxTotalPerKey}, {@link #getMaxTotal() maxTotal}, and (if applicable)
      * {@link #getBlockWhenExhausted()} and the value passed in to the
@@ -316,7 +845,10 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      * When <code>maxTotal</code> is set to a positive value and this method is
      * invoked when at the limit with no idle instances available under the requested
      * key, an attempt is made to create room by clearing the oldest 15% of the
-     * elements from the keyed sub-pools.
+     * elements from the keyed sub-pools or, if
+     * {@link #getWeightedFairSharing() weightedFairSharing} is enabled, by
+     * destroying an idle instance of a key that is using more than its
+     * weighted share of the pool.
      * <p>
      * When the pool is exhausted, multiple calling threads may be
      * simultaneously blocked waiting for instances to become available. A
@@ -343,15 +875,44 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         // Get local copy of current config so it is consistent for entire
         // method execution
         final boolean blockWhenExhausted = getBlockWhenExhausted();
+        final FallbackKeyResolver<K> fallbackKeyResolverSave =
+                getFallbackKeyResolver();
 
         boolean create;
+        // The key and sub-pool the instance belongs to
+        K pKey;
+        ObjectDeque<T> pDeque;
         final long waitTime = System.currentTimeMillis();
         final ObjectDeque<T> objectDeque = register(key);
 
         try {
-            while (p == null) {
+            do {
                 create = false;
+                pKey = key;
+                pDeque = objectDeque;
                 p = objectDeque.getIdleObjects().pollFirst();
+                if (p == null && fallbackKeyResolverSave != null) {
+                    final List<K> fallbackKeys =
+                            fallbackKeyResolverSave.getFallbackKeys(key);
+                    if (fallbackKeys != null) {
+                        for (final K fallbackKey : fallbackKeys) {
+                            // Idle instances keep the sub-pool registered so
+                            // there is no need to register the fallback key
+                            final ObjectDeque<T> fallbackDeque =
+                                    poolMap.get(fallbackKey);
+                            if (fallbackDeque == null ||
+                                    fallbackDeque == objectDeque) {
+                                continue;
+                            }
+                            p = fallbackDeque.getIdleObjects().pollFirst();
+                            if (p != null) {
+                                pKey = fallbackKey;
+                                pDeque = fallbackDeque;
+                                break;
+                            }
+                        }
+                    }
+                }
                 if (p == null) {
                     p = create(key);
                     if (p != null) {
@@ -382,10 +943,10 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
 
                 if (p != null) {
                     try {
-                        factory.activateObject(key, p);
+                        factory.activateObject(pKey, p);
                     } catch (final Exception e) {
                         try {
-                            destroy(key, p, true);
+                            destroy(pKey, p, true);
                         } catch (final Exception e1) {
                             // Ignore - activation failure is more important
                         }
@@ -401,14 +962,15 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
                         boolean validate = false;
                         Throwable validationThrowable = null;
                         try {
-                            validate = factory.validateObject(key, p);
+                            validate = factory.validateObject(pKey, p);
                         } catch (final Throwable t) {
                             PoolUtils.checkRethrow(t);
                             validationThrowable = t;
                         }
                         if (!validate) {
+                            fireValidationFailure(pKey);
                             try {
-                                destroy(key, p, true);
+                                destroy(pKey, p, true);
                                 destroyedByBorrowValidationCount.incrementAndGet();
                             } catch (final Exception e) {
                                 // Ignore - validation failure is more important
@@ -423,17 +985,123 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
                         }
                     }
                 }
-            }
+            } while (p == null);
         } finally {
             deregister(key);
         }
 
-        updateStatsBorrow(p, System.currentTimeMillis() - waitTime);
+        if (pDeque != objectDeque) {
+            fallbackBorrows.put(new IdentityWrapper<T>(p.getObject()), pKey);
+            fallbackBorrowCount.incrementAndGet();
+        }
+        if ((hotKeyCount > 0 || maxIdlePerColdKey >= 0) &&
+                objectDeque.getBorrowCount().getAndIncrement() == 0) {
+            borrowedKeys.add(key);
+        }
+        markBelowMinIdle(pKey, pDeque);
+        final long waitTimeMillis = System.currentTimeMillis() - waitTime;
+        updateStatsBorrow(p, waitTimeMillis);
+        fireBorrow(pKey, waitTimeMillis, create);
 
         return p.getObject();
     }
 
 
+    /**
+     * Borrows one object for each of the given keys, either returning all of
+     * them or none. If the same key appears more than once, that many objects
+     * are borrowed for the key.
+     * <p>
+     * An attempt is first made to borrow all the objects without waiting. If
+     * that fails, any objects obtained are returned and, if
+     * {@link #getBlockWhenExhausted()} is true, the objects are borrowed
+     * again, waiting as necessary. Only one thread at a time may wait while
+     * holding some of the objects it requested, so concurrent calls to this
+     * method can not deadlock by each holding part of what the other needs.
+     * The <code>borrowMaxWaitMillis</code> parameter limits the total time
+     * spent waiting across all the keys.
+     * <p>
+     * If any borrow fails, the objects already borrowed by this call are
+     * returned to the pool before the exception is thrown.
+     *
+     * @param keys                the keys to borrow objects for
+     * @param borrowMaxWaitMillis The total time to wait in milliseconds for the
+     *                            objects to become available or a negative
+     *                            value to wait indefinitely
+     *
+     * @return the borrowed objects, in the iteration order of
+     *         <code>keys</code>
+     *
+     * @throws NoSuchElementException if the objects cannot all be borrowed
+     *                                because the pool is exhausted
+     *
+     * @throws Exception if an object cannot be borrowed due to an error
+     *
+     * @since 2.4.3
+     */
+    public List<T> borrowObjects(final Collection<K> keys,
+            final long borrowMaxWaitMillis) throws Exception {
+        assertOpen();
+
+        final long start = System.currentTimeMillis();
+        try {
+            // Holding part of the objects without waiting can not block
+            // other callers for long so no lock is required
+            return borrowObjectsBefore(keys, start);
+        } catch (final NoSuchElementException nsee) {
+            if (!getBlockWhenExhausted() || borrowMaxWaitMillis == 0) {
+                throw nsee;
+            }
+        }
+
+        final long deadline = borrowMaxWaitMillis < 0 ? -1 :
+                start + borrowMaxWaitMillis;
+        if (deadline < 0) {
+            multiKeyBorrowLock.lockInterruptibly();
+        } else if (!multiKeyBorrowLock.tryLock(
+                Math.max(0, deadline - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS)) {
+            throw new NoSuchElementException("Timeout waiting for idle objects");
+        }
+        try {
+            return borrowObjectsBefore(keys, deadline);
+        } finally {
+            multiKeyBorrowLock.unlock();
+        }
+    }
+
+    /**
+     * Borrows one object for each of the given keys, waiting no later than
+     * the given deadline. If any borrow fails, the objects already borrowed
+     * are returned.
+     *
+     * @param keys     The keys to borrow objects for
+     * @param deadline The time after which no further waiting is permitted or
+     *                 a negative value to wait indefinitely
+     *
+     * @return The borrowed objects in the iteration order of the keys
+     *
+     * @throws Exception If an object could not be borrowed
+     */
+    private List<T> borrowObjectsBefore(final Collection<K> keys,
+            final long deadline) throws Exception {
+        final List<T> objects = new ArrayList<T>(keys.size());
+        try {
+            for (final K key : keys) {
+                final long maxWait = deadline < 0 ? -1 :
+                        Math.max(0, deadline - System.currentTimeMillis());
+                objects.add(borrowObject(key, maxWait));
+            }
+        } catch (final Exception e) {
+            final Iterator<K> keyIter = keys.iterator();
+            for (final T obj : objects) {
+                returnObject(keyIter.next(), obj);
+            }
+            throw e;
+        }
+        return objects;
+    }
+
     /**
      * Returns an object to a keyed sub-pool.
      * <p>
@@ -457,8 +1125,9 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      *                               returned to the pool multiple times
      */
     @Override
-    public void returnObject(final K key, final T obj) {
+    public void returnObject(final K borrowKey, final T obj) {
 
+        final K key = getOwnerKey(borrowKey, obj);
         final ObjectDeque<T> objectDeque = poolMap.get(key);
 
         final PooledObject<T> p = objectDeque.getAllObjects().get(new IdentityWrapper<T>(obj));
@@ -482,6 +1151,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         try {
             if (getTestOnReturn()) {
                 if (!factory.validateObject(key, p)) {
+                    fireValidationFailure(key);
                     try {
                         destroy(key, p, true);
                     } catch (final Exception e) {
@@ -522,7 +1192,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
                         "Object has already been returned to this pool");
             }
 
-            final int maxIdle = getMaxIdlePerKey();
+            final int maxIdle = getMaxIdlePerKey(objectDeque.getPerKeyConfig());
             final LinkedBlockingDeque<PooledObject<T>> idleObjects =
                 objectDeque.getIdleObjects();
 
@@ -550,6 +1220,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
                 reuseCapacity();
             }
             updateStatsReturn(activeTime);
+            fireReturn(key, activeTime);
         }
     }
 
@@ -569,8 +1240,9 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      *                               under the given key
      */
     @Override
-    public void invalidateObject(final K key, final T obj) throws Exception {
+    public void invalidateObject(final K borrowKey, final T obj) throws Exception {
 
+        final K key = getOwnerKey(borrowKey, obj);
         final ObjectDeque<T> objectDeque = poolMap.get(key);
 
         final PooledObject<T> p = objectDeque.getAllObjects().get(new IdentityWrapper<T>(obj));
@@ -710,6 +1382,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
             // Stop the evictor before the pool is closed since evict() calls
             // assertOpen()
             startEvictor(-1L);
+            MemoryPressureMonitor.deregister(this);
 
             closed = true;
             // This clear removes any idle objects
@@ -782,41 +1455,142 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
     }
 
     /**
-     * Attempt to create one new instance to serve from the most heavily
-     * loaded pool that can add a new instance.
+     * Destroys the oldest idle instance of the key that is using the largest
+     * weighted share of the pool, provided that the given key is entitled to
+     * take capacity from it under weighted fair sharing.
      *
-     * This method exists to ensure liveness in the pool when threads are
-     * parked waiting and capacity to create instances under the requested keys
-     * subsequently becomes available.
+     * @param objectDeque   The objects associated with the key that requires
+     *                      capacity
      *
-     * This method is not guaranteed to create an instance and its selection
-     * of the most loaded pool that can create an instance may not always be
-     * correct, since it does not lock the pool and instances may be created,
-     * borrowed, returned or destroyed by other threads while it is executing.
+     * @return {@code true} if an idle instance was selected for destruction
+     *         (whether or not another thread borrowed it first), {@code false}
+     *         if the key is not entitled to any more capacity
      */
-    private void reuseCapacity() {
-        final int maxTotalPerKeySave = getMaxTotalPerKey();
-
-        // Find the most loaded pool that could take a new instance
-        int maxQueueLength = 0;
-        LinkedBlockingDeque<PooledObject<T>> mostLoaded = null;
-        K loadedKey = null;
+    private boolean clearForFairShare(final ObjectDeque<T> objectDeque) {
+        K victimKey = null;
+        ObjectDeque<T> victim = null;
+        double maxShare = -1;
         for (Map.Entry<K, ObjectDeque<T>> entry : poolMap.entrySet()) {
-            final K k = entry.getKey();
             final ObjectDeque<T> deque = entry.getValue();
-            if (deque != null) {
+            if (deque == null || deque == objectDeque ||
+                    deque.getIdleObjects().isEmpty() ||
+                    !isAboveGuaranteed(deque)) {
+                continue;
+            }
+            final double share = getWeightedShare(deque, 0);
+            if (share > maxShare) {
+                maxShare = share;
+                victimKey = entry.getKey();
+                victim = deque;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        if (!isBelowGuaranteed(objectDeque) &&
+                getWeightedShare(objectDeque, 1) > maxShare) {
+            return false;
+        }
+
+        // With LIFO returned objects are added to the head, with FIFO the tail
+        final PooledObject<T> p;
+        if (getLifo()) {
+            p = victim.getIdleObjects().peekLast();
+        } else {
+            p = victim.getIdleObjects().peekFirst();
+        }
+        if (p != null) {
+            try {
+                destroy(victimKey, p, false);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the number of instances allocated to a key, relative to its
+     * weight.
+     *
+     * @param objectDeque   The objects associated with the key
+     * @param extra         Additional instances to include in the calculation
+     *
+     * @return The weighted share
+     */
+    private double getWeightedShare(final ObjectDeque<T> objectDeque, final int extra) {
+        final PerKeyConfig perKeyConfig = objectDeque.getPerKeyConfig();
+        final int weight = perKeyConfig == null ?
+                PerKeyConfig.DEFAULT_WEIGHT : perKeyConfig.getWeight();
+        return (objectDeque.getCreateCount().get() + extra) / (double) weight;
+    }
+
+    private boolean isBelowGuaranteed(final ObjectDeque<T> objectDeque) {
+        final PerKeyConfig perKeyConfig = objectDeque.getPerKeyConfig();
+        return perKeyConfig != null &&
+                objectDeque.getCreateCount().get() < perKeyConfig.getGuaranteedTotal();
+    }
+
+    private boolean isAboveGuaranteed(final ObjectDeque<T> objectDeque) {
+        final PerKeyConfig perKeyConfig = objectDeque.getPerKeyConfig();
+        return perKeyConfig == null ||
+                objectDeque.getCreateCount().get() > perKeyConfig.getGuaranteedTotal();
+    }
+
+    /**
+     * Attempt to create one new instance to serve from the most heavily
+     * loaded pool that can add a new instance.
+     *
+     * This method exists to ensure liveness in the pool when threads are
+     * parked waiting and capacity to create instances under the requested keys
+     * subsequently becomes available.
+     *
+     * This method is not guaranteed to create an instance and its selection
+     * of the most loaded pool that can create an instance may not always be
+     * correct, since it does not lock the pool and instances may be created,
+     * borrowed, returned or destroyed by other threads while it is executing.
+     */
+    private void reuseCapacity() {
+        final boolean weightedFairSharingSave = getWeightedFairSharing();
+
+        // Find the most loaded pool that could take a new instance or, if
+        // using weighted fair sharing, the waiting pool with the smallest
+        // weighted share
+        int maxQueueLength = 0;
+        boolean belowGuaranteed = false;
+        double minShare = Double.MAX_VALUE;
+        K loadedKey = null;
+        for (Map.Entry<K, ObjectDeque<T>> entry : poolMap.entrySet()) {
+            final K k = entry.getKey();
+            final ObjectDeque<T> deque = entry.getValue();
+            if (deque != null) {
                 final LinkedBlockingDeque<PooledObject<T>> pool = deque.getIdleObjects();
                 final int queueLength = pool.getTakeQueueLength();
-                if (getNumActive(k) < maxTotalPerKeySave && queueLength > maxQueueLength) {
+                final int maxTotalPerKeySave =
+                        getMaxTotalPerKey(deque.getPerKeyConfig());
+                if (getNumActive(k) >= maxTotalPerKeySave) {
+                    continue;
+                }
+                if (weightedFairSharingSave) {
+                    if (queueLength > 0) {
+                        final boolean below = isBelowGuaranteed(deque);
+                        final double share = getWeightedShare(deque, 0);
+                        if (loadedKey == null || below && !belowGuaranteed ||
+                                below == belowGuaranteed && share < minShare) {
+                            belowGuaranteed = below;
+                            minShare = share;
+                            loadedKey = k;
+                        }
+                    }
+                } else if (queueLength > maxQueueLength) {
                     maxQueueLength = queueLength;
-                    mostLoaded = pool;
                     loadedKey = k;
                 }
             }
         }
 
         // Attempt to add an instance to the most loaded pool
-        if (mostLoaded != null) {
+        if (loadedKey != null) {
             register(loadedKey);
             try {
                 final PooledObject<T> p = create(loadedKey);
@@ -859,12 +1633,33 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      * Successive activations of this method examine objects in keyed sub-pools
      * in sequence, cycling through the keys and examining objects in
      * oldest-to-youngest order within the keyed sub-pools.
+     * <p>
+     * If {@link #getEvictionShardCount() evictionShardCount} is positive, the
+     * keys are partitioned into that many shards and each activation examines
+     * every idle object of every key in one or more whole shards, continuing
+     * with the next shard while the
+     * {@link #getEvictionTimeBudgetMillis() eviction time budget} has not been
+     * used up. In this case {@link #getNumTestsPerEvictionRun()} is ignored.
+     * <p>
+     * Each activation also removes the keys that have had no instances and no
+     * interested threads for at least
+     * {@link #getKeyRetentionTimeMillis() keyRetentionTimeMillis}, updates
+     * the set of {@link #getHotKeys() hot keys} and shrinks some of the cold
+     * keys (see {@link #setMaxIdlePerColdKey(int)}).
      */
     @Override
     public void evict() throws Exception {
         assertOpen();
 
+        final long startTimeNanos = System.nanoTime();
+        synchronized (evictionLock) {
+            removeRetainedKeys(false);
+            updateHotKeys();
+            shrinkColdKeys();
+        }
+
         if (getNumIdle() == 0) {
+            fireEvictionRun(System.nanoTime() - startTimeNanos, 0, 0);
             return;
         }
 
@@ -872,115 +1667,251 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         final EvictionPolicy<T> evictionPolicy = getEvictionPolicy();
 
         synchronized (evictionLock) {
-            final EvictionConfig evictionConfig = new EvictionConfig(
-                    getMinEvictableIdleTimeMillis(),
-                    getSoftMinEvictableIdleTimeMillis(),
-                    getMinIdlePerKey());
+            final long evictedBefore = destroyedByEvictorCount.get();
+            int examined = 0;
+            try {
+                final EvictionConfig evictionConfig = new EvictionConfig(
+                        getMinEvictableIdleTimeMillis(),
+                        getSoftMinEvictableIdleTimeMillis(),
+                        getMinIdlePerKey());
 
-            final boolean testWhileIdle = getTestWhileIdle();
+                final boolean testWhileIdle = getTestWhileIdle();
 
-            for (int i = 0, m = getNumTests(); i < m; i++) {
-                if(evictionIterator == null || !evictionIterator.hasNext()) {
-                    if (evictionKeyIterator == null ||
-                            !evictionKeyIterator.hasNext()) {
-                        final List<K> keyCopy = new ArrayList<K>();
-                        final Lock readLock = keyLock.readLock();
-                        readLock.lock();
-                        try {
-                            keyCopy.addAll(poolKeyList);
-                        } finally {
-                            readLock.unlock();
-                        }
-                        evictionKeyIterator = keyCopy.iterator();
-                    }
-                    while (evictionKeyIterator.hasNext()) {
-                        evictionKey = evictionKeyIterator.next();
-                        final ObjectDeque<T> objectDeque = poolMap.get(evictionKey);
-                        if (objectDeque == null) {
-                            continue;
+                final List<List<K>> shards = evictionShards;
+                if (shards != null) {
+                    examined = evictShards(shards, evictionPolicy,
+                            evictionConfig, testWhileIdle);
+                    return;
+                }
+
+                for (int i = 0, m = getNumTests(); i < m; i++) {
+                    if(evictionIterator == null || !evictionIterator.hasNext()) {
+                        if (evictionKeyIterator == null ||
+                                !evictionKeyIterator.hasNext()) {
+                            final List<K> keyCopy = new ArrayList<K>();
+                            final Lock readLock = keyLock.readLock();
+                            readLock.lock();
+                            try {
+                                keyCopy.addAll(poolKeyList);
+                            } finally {
+                                readLock.unlock();
+                            }
+                            evictionKeyIterator = keyCopy.iterator();
                         }
+                        while (evictionKeyIterator.hasNext()) {
+                            evictionKey = evictionKeyIterator.next();
+                            final ObjectDeque<T> objectDeque = poolMap.get(evictionKey);
+                            if (objectDeque == null) {
+                                continue;
+                            }
 
-                        final Deque<PooledObject<T>> idleObjects = objectDeque.getIdleObjects();
-                        evictionIterator = new EvictionIterator(idleObjects);
-                        if (evictionIterator.hasNext()) {
-                            break;
+                            final Deque<PooledObject<T>> idleObjects = objectDeque.getIdleObjects();
+                            evictionIterator = new EvictionIterator(idleObjects);
+                            if (evictionIterator.hasNext()) {
+                                break;
+                            }
+                            evictionIterator = null;
                         }
+                    }
+                    if (evictionIterator == null) {
+                        // Pools exhausted
+                        return;
+                    }
+                    final Deque<PooledObject<T>> idleObjects;
+                    try {
+                        underTest = evictionIterator.next();
+                        idleObjects = evictionIterator.getIdleObjects();
+                    } catch (final NoSuchElementException nsee) {
+                        // Object was borrowed in another thread
+                        // Don't count this as an eviction test so reduce i;
+                        i--;
                         evictionIterator = null;
+                        continue;
+                    }
+
+                    if (evictionTest(evictionKey, poolMap.get(evictionKey),
+                            underTest, idleObjects, evictionPolicy,
+                            evictionConfig, testWhileIdle)) {
+                        examined++;
+                    } else {
+                        // Object was borrowed in another thread
+                        // Don't count this as an eviction test so reduce i;
+                        i--;
                     }
                 }
-                if (evictionIterator == null) {
-                    // Pools exhausted
-                    return;
-                }
-                final Deque<PooledObject<T>> idleObjects;
-                try {
-                    underTest = evictionIterator.next();
-                    idleObjects = evictionIterator.getIdleObjects();
-                } catch (final NoSuchElementException nsee) {
-                    // Object was borrowed in another thread
-                    // Don't count this as an eviction test so reduce i;
-                    i--;
-                    evictionIterator = null;
-                    continue;
-                }
+            } finally {
+                fireEvictionRun(System.nanoTime() - startTimeNanos, examined,
+                        (int) (destroyedByEvictorCount.get() - evictedBefore));
+            }
+        }
+    }
 
-                if (!underTest.startEvictionTest()) {
-                    // Object was borrowed in another thread
-                    // Don't count this as an eviction test so reduce i;
-                    i--;
+    /**
+     * Examines every idle object of every key in one or more whole eviction
+     * shards, starting with the shard after the one examined last. Further
+     * shards are examined while the eviction time budget has not been used up
+     * and not all shards have been examined during this call.
+     *
+     * @param shards         The keys, partitioned into shards
+     * @param evictionPolicy The eviction policy to apply
+     * @param evictionConfig The eviction configuration for keys that do not
+     *                       have per key limits
+     * @param testWhileIdle  Should idle objects that are not evicted be
+     *                       validated
+     *
+     * @return The number of idle objects examined
+     *
+     * @throws Exception If an object could not be destroyed or validated
+     */
+    private int evictShards(final List<List<K>> shards,
+            final EvictionPolicy<T> evictionPolicy,
+            final EvictionConfig evictionConfig, final boolean testWhileIdle)
+            throws Exception {
+        final long start = System.currentTimeMillis();
+        final long budget = getEvictionTimeBudgetMillis();
+        final int shardCount = shards.size();
+        int examined = 0;
+        int tested = 0;
+        long now = start;
+        do {
+            if (evictionShardCursor >= shardCount) {
+                evictionShardCursor = 0;
+            }
+            if (evictionShardCursor == 0) {
+                evictionCycleStartMillis = now;
+            }
+            final List<K> keyCopy;
+            final Lock readLock = keyLock.readLock();
+            readLock.lock();
+            try {
+                keyCopy = new ArrayList<K>(shards.get(evictionShardCursor));
+            } finally {
+                readLock.unlock();
+            }
+            for (final K k : keyCopy) {
+                final ObjectDeque<T> objectDeque = poolMap.get(k);
+                if (objectDeque == null) {
                     continue;
                 }
-
-                // User provided eviction policy could throw all sorts of
-                // crazy exceptions. Protect against such an exception
-                // killing the eviction thread.
-                boolean evict;
-                try {
-                    evict = evictionPolicy.evict(evictionConfig, underTest,
-                            poolMap.get(evictionKey).getIdleObjects().size());
-                } catch (final Throwable t) {
-                    // Slightly convoluted as SwallowedExceptionListener
-                    // uses Exception rather than Throwable
-                    PoolUtils.checkRethrow(t);
-                    swallowException(new Exception(t));
-                    // Don't evict on error conditions
-                    evict = false;
+                final EvictionIterator iter =
+                        new EvictionIterator(objectDeque.getIdleObjects());
+                while (iter.hasNext()) {
+                    final PooledObject<T> p;
+                    try {
+                        p = iter.next();
+                    } catch (final NoSuchElementException nsee) {
+                        // Object was borrowed in another thread
+                        break;
+                    }
+                    if (evictionTest(k, objectDeque, p, iter.getIdleObjects(),
+                            evictionPolicy, evictionConfig, testWhileIdle)) {
+                        tested++;
+                    }
                 }
+            }
+            examined++;
+            evictionShardCursor++;
+            now = System.currentTimeMillis();
+            if (evictionShardCursor == shardCount) {
+                lastEvictionCycleMillis = now - evictionCycleStartMillis;
+                evictionCycleCount++;
+                evictionShardCursor = 0;
+            }
+        } while (budget > 0 && now - start < budget && examined < shardCount &&
+                !isClosed());
+        return tested;
+    }
+
+    /**
+     * Applies the eviction policy to an idle object and, if it is not evicted
+     * and testWhileIdle is enabled, validates it.
+     *
+     * @param key            The key associated with the object
+     * @param objectDeque    The objects associated with the key
+     * @param underTest      The object to test
+     * @param idleObjects    The idle objects to which the object is restored
+     *                       after the test
+     * @param evictionPolicy The eviction policy to apply
+     * @param evictionConfig The eviction configuration for keys that do not
+     *                       have per key limits
+     * @param testWhileIdle  Should the object be validated if not evicted
+     *
+     * @return {@code false} if the object could not be tested because it was
+     *         borrowed in another thread, otherwise {@code true}
+     *
+     * @throws Exception If the object could not be destroyed or validated
+     */
+    private boolean evictionTest(final K key, final ObjectDeque<T> objectDeque,
+            final PooledObject<T> underTest,
+            final Deque<PooledObject<T>> idleObjects,
+            final EvictionPolicy<T> evictionPolicy,
+            final EvictionConfig evictionConfig, final boolean testWhileIdle)
+            throws Exception {
 
-                if (evict) {
-                    destroy(evictionKey, underTest, true);
+        if (!underTest.startEvictionTest()) {
+            return false;
+        }
+
+        final PerKeyConfig perKeyConfig = objectDeque.getPerKeyConfig();
+        final EvictionConfig keyEvictionConfig;
+        if (perKeyConfig == null) {
+            keyEvictionConfig = evictionConfig;
+        } else {
+            keyEvictionConfig = new EvictionConfig(
+                    getMinEvictableIdleTimeMillis(),
+                    getSoftMinEvictableIdleTimeMillis(),
+                    getMinIdlePerKey(perKeyConfig));
+        }
+        // User provided eviction policy could throw all sorts of
+        // crazy exceptions. Protect against such an exception
+        // killing the eviction thread.
+        boolean evict;
+        try {
+            evict = evictionPolicy.evict(keyEvictionConfig, underTest,
+                    objectDeque.getIdleObjects().size());
+        } catch (final Throwable t) {
+            // Slightly convoluted as SwallowedExceptionListener
+            // uses Exception rather than Throwable
+            PoolUtils.checkRethrow(t);
+            swallowException(new Exception(t));
+            // Don't evict on error conditions
+            evict = false;
+        }
+
+        if (evict) {
+            destroy(key, underTest, true);
+            destroyedByEvictorCount.incrementAndGet();
+        } else {
+            if (testWhileIdle) {
+                boolean active = false;
+                try {
+                    factory.activateObject(key, underTest);
+                    active = true;
+                } catch (final Exception e) {
+                    destroy(key, underTest, true);
                     destroyedByEvictorCount.incrementAndGet();
-                } else {
-                    if (testWhileIdle) {
-                        boolean active = false;
+                }
+                if (active) {
+                    if (!factory.validateObject(key, underTest)) {
+                        fireValidationFailure(key);
+                        destroy(key, underTest, true);
+                        destroyedByEvictorCount.incrementAndGet();
+                    } else {
                         try {
-                            factory.activateObject(evictionKey, underTest);
-                            active = true;
+                            factory.passivateObject(key, underTest);
                         } catch (final Exception e) {
-                            destroy(evictionKey, underTest, true);
+                            destroy(key, underTest, true);
                             destroyedByEvictorCount.incrementAndGet();
                         }
-                        if (active) {
-                            if (!factory.validateObject(evictionKey, underTest)) {
-                                destroy(evictionKey, underTest, true);
-                                destroyedByEvictorCount.incrementAndGet();
-                            } else {
-                                try {
-                                    factory.passivateObject(evictionKey, underTest);
-                                } catch (final Exception e) {
-                                    destroy(evictionKey, underTest, true);
-                                    destroyedByEvictorCount.incrementAndGet();
-                                }
-                            }
-                        }
-                    }
-                    if (!underTest.endEvictionTest(idleObjects)) {
-                        // TODO - May need to add code here once additional
-                        // states are used
                     }
                 }
             }
+            if (!underTest.endEvictionTest(idleObjects)) {
+                // TODO - May need to add code here once additional
+                // states are used
+            }
         }
+        return true;
     }
 
     /**
@@ -993,14 +1924,14 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      * @throws Exception If the objection creation fails
      */
     private PooledObject<T> create(final K key) throws Exception {
-        int maxTotalPerKeySave = getMaxTotalPerKey(); // Per key
+        final ObjectDeque<T> objectDeque = poolMap.get(key);
+
+        int maxTotalPerKeySave = getMaxTotalPerKey(objectDeque.getPerKeyConfig()); // Per key
         if (maxTotalPerKeySave < 0) {
             maxTotalPerKeySave = Integer.MAX_VALUE;
         }
         final int maxTotal = getMaxTotal();   // All keys
 
-        final ObjectDeque<T> objectDeque = poolMap.get(key);
-
         // Check against the overall limit
         boolean loop = true;
 
@@ -1011,7 +1942,13 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
                 if (getNumIdle() == 0) {
                     return null;
                 }
-                clearOldest();
+                if (getWeightedFairSharing()) {
+                    if (!clearForFairShare(objectDeque)) {
+                        return null;
+                    }
+                } else {
+                    clearOldest();
+                }
             } else {
                 loop = false;
             }
@@ -1058,6 +1995,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         }
 
         PooledObject<T> p = null;
+        final long startTimeNanos = System.nanoTime();
         try {
             p = factory.makeObject(key);
         } catch (final Exception e) {
@@ -1073,6 +2011,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
 
         createdCount.incrementAndGet();
         objectDeque.getAllObjects().put(new IdentityWrapper<T>(p.getObject()), p);
+        fireCreate(key, System.nanoTime() - startTimeNanos);
         return p;
     }
 
@@ -1104,6 +2043,8 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
                     objectDeque.getCreateCount().decrementAndGet();
                     destroyedCount.incrementAndGet();
                     numTotal.decrementAndGet();
+                    markBelowMinIdle(key, objectDeque);
+                    fireDestroy(key);
                 }
                 return true;
             }
@@ -1134,17 +2075,24 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
             if (objectDeque == null) {
                 // Upgrade to write lock
                 lock.unlock();
+                // Resolve any per key limits outside of the lock
+                final PerKeyConfig perKeyConfig = resolvePerKeyConfig(k);
                 lock = keyLock.writeLock();
                 lock.lock();
                 objectDeque = poolMap.get(k);
                 if (objectDeque == null) {
                     objectDeque = new ObjectDeque<T>(fairness);
+                    objectDeque.setPerKeyConfig(perKeyConfig);
                     objectDeque.getNumInterested().incrementAndGet();
                     // NOTE: Keys must always be added to both poolMap and
                     //       poolKeyList at the same time while protected by
                     //       keyLock.writeLock()
                     poolMap.put(k, objectDeque);
                     poolKeyList.add(k);
+                    if (evictionShards != null) {
+                        evictionShards.get(
+                                getEvictionShard(k, evictionShards.size())).add(k);
+                    }
                 } else {
                     objectDeque.getNumInterested().incrementAndGet();
                 }
@@ -1170,17 +2118,27 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         objectDeque = poolMap.get(k);
         final long numInterested = objectDeque.getNumInterested().decrementAndGet();
         if (numInterested == 0 && objectDeque.getCreateCount().get() == 0) {
+            if (getKeyRetentionTimeMillis() > 0 &&
+                    getTimeBetweenEvictionRunsMillis() > 0) {
+                // Retain the key for reuse. The evictor will remove it if it
+                // is still unused once the retention time has passed.
+                objectDeque.setUnusedSinceMillis(System.currentTimeMillis());
+                if (objectDeque.getRetained().compareAndSet(false, true)) {
+                    retainedKeys.add(k);
+                }
+                // Re-check as the evictor may have been stopped since, in
+                // which case nothing would remove the key
+                if (getTimeBetweenEvictionRunsMillis() > 0) {
+                    return;
+                }
+            }
             // Potential to remove key
             final Lock writeLock = keyLock.writeLock();
             writeLock.lock();
             try {
                 if (objectDeque.getCreateCount().get() == 0 &&
                         objectDeque.getNumInterested().get() == 0) {
-                    // NOTE: Keys must always be removed from both poolMap and
-                    //       poolKeyList at the same time while protected by
-                    //       keyLock.writeLock()
-                    poolMap.remove(k);
-                    poolKeyList.remove(k);
+                    removeKey(k);
                 }
             } finally {
                 writeLock.unlock();
@@ -1188,15 +2146,232 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         }
     }
 
+    /**
+     * Obtain the key of the sub-pool an instance belongs to. This differs
+     * from the key used to borrow the instance if the instance was borrowed
+     * via a fallback key.
+     *
+     * @param borrowKey The key the instance is being returned or invalidated
+     *                  with
+     * @param obj       The instance
+     *
+     * @return The key of the sub-pool the instance belongs to
+     */
+    private K getOwnerKey(final K borrowKey, final T obj) {
+        if (fallbackBorrows.isEmpty()) {
+            return borrowKey;
+        }
+        final K ownerKey = fallbackBorrows.remove(new IdentityWrapper<T>(obj));
+        return ownerKey == null ? borrowKey : ownerKey;
+    }
+
+    /**
+     * Remove a key from the pool. The caller must hold keyLock.writeLock().
+     *
+     * @param k The key to remove
+     */
+    private void removeKey(final K k) {
+        // NOTE: Keys must always be removed from both poolMap and
+        //       poolKeyList at the same time while protected by
+        //       keyLock.writeLock()
+        poolMap.remove(k);
+        poolKeyList.remove(k);
+        if (evictionShards != null) {
+            evictionShards.get(
+                    getEvictionShard(k, evictionShards.size())).remove(k);
+        }
+    }
+
+    /**
+     * Is the given key unused, i.e. does it have no instances and no threads
+     * interested in it?
+     *
+     * @param objectDeque The objects associated with the key
+     *
+     * @return {@code true} if the key is unused
+     */
+    private boolean isUnused(final ObjectDeque<T> objectDeque) {
+        return objectDeque.getCreateCount().get() == 0 &&
+                objectDeque.getNumInterested().get() == 0;
+    }
+
+    /**
+     * Remove the retained keys that have been unused for at least
+     * {@link #getKeyRetentionTimeMillis() keyRetentionTimeMillis}. Only the
+     * keys that were retained when they became unused are examined and the
+     * pool's key write lock is only taken if at least one of them has expired.
+     *
+     * @param all <code>true</code> to remove every retained key that is still
+     *            unused regardless of how long it has been unused
+     */
+    private void removeRetainedKeys(final boolean all) {
+        if (retainedKeys.isEmpty()) {
+            return;
+        }
+        final long keyRetentionTimeMillis = getKeyRetentionTimeMillis();
+        final long now = System.currentTimeMillis();
+        List<K> expired = null;
+        final Iterator<K> iter = retainedKeys.iterator();
+        while (iter.hasNext()) {
+            final K k = iter.next();
+            final ObjectDeque<T> objectDeque = poolMap.get(k);
+            if (objectDeque == null || !isUnused(objectDeque)) {
+                // Removed or in use again. It is re-queued if it is retained
+                // again once it is no longer in use.
+                if (objectDeque != null) {
+                    objectDeque.getRetained().set(false);
+                }
+                iter.remove();
+            } else if (all || now - objectDeque.getUnusedSinceMillis() >=
+                    keyRetentionTimeMillis) {
+                objectDeque.getRetained().set(false);
+                iter.remove();
+                if (expired == null) {
+                    expired = new ArrayList<K>();
+                }
+                expired.add(k);
+            }
+        }
+        if (expired == null) {
+            return;
+        }
+        final Lock writeLock = keyLock.writeLock();
+        writeLock.lock();
+        try {
+            for (final K k : expired) {
+                final ObjectDeque<T> objectDeque = poolMap.get(k);
+                // Re-check as the key may have been used since
+                if (objectDeque != null && isUnused(objectDeque)) {
+                    removeKey(k);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Once the evictor has stopped nothing would remove the retained keys so
+     * all retained keys that are still unused are removed immediately.
+     */
+    @Override
+    void evictorStopped() {
+        removeRetainedKeys(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the keys that may have fewer idle instances than required - those
+     * that have had instances borrowed or destroyed since the last call, that
+     * could not be brought up to the minimum by the last call or, after a
+     * configuration change, all keys - are examined.
+     */
     @Override
     void ensureMinIdle() throws Exception {
         final int minIdlePerKeySave = getMinIdlePerKey();
-        if (minIdlePerKeySave < 1) {
+        if (minIdlePerKeySave < 1 && perKeyConfigResolver == null &&
+                hotKeys.isEmpty()) {
+            return;
+        }
+
+        if (allKeysBelowMinIdle.getAndSet(false)) {
+            belowMinIdleKeys.addAll(poolMap.keySet());
+        }
+        final List<K> keys = new ArrayList<K>(belowMinIdleKeys.size());
+        final Iterator<K> iter = belowMinIdleKeys.iterator();
+        while (iter.hasNext()) {
+            keys.add(iter.next());
+            iter.remove();
+        }
+
+        final ExecutorService executor = getMinIdleExecutor();
+        if (executor == null) {
+            for (int i = 0; i < keys.size(); i++) {
+                try {
+                    replenish(keys.get(i));
+                } catch (final Exception e) {
+                    // Try the remaining keys again on the next run
+                    belowMinIdleKeys.addAll(keys.subList(i + 1, keys.size()));
+                    throw e;
+                }
+            }
+            return;
+        }
+
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>(keys.size());
+        for (final K k : keys) {
+            final Callable<Void> task = new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    replenish(k);
+                    return null;
+                }
+            };
+            try {
+                futures.add(executor.submit(task));
+            } catch (final RejectedExecutionException ree) {
+                belowMinIdleKeys.add(k);
+            }
+        }
+        Exception firstException = null;
+        for (final Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (final ExecutionException ee) {
+                final Exception e = ee.getCause() instanceof Exception ?
+                        (Exception) ee.getCause() : ee;
+                if (firstException == null) {
+                    firstException = e;
+                } else {
+                    swallowException(e);
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Ensure that the configured number of minimum idle objects is available
+     * for the given key if it is currently registered, flagging the key for
+     * re-examination during the next eviction run if that is not possible.
+     *
+     * @param key The key to check for idle objects
+     *
+     * @throws Exception If a new object is required and cannot be created
+     */
+    private void replenish(final K key) throws Exception {
+        final ObjectDeque<T> objectDeque = poolMap.get(key);
+        if (objectDeque == null) {
             return;
         }
+        boolean complete = false;
+        try {
+            ensureMinIdle(key);
+            complete = true;
+        } finally {
+            if (!complete || objectDeque.getIdleObjects().size() <
+                    getMinIdlePerKey(objectDeque.getPerKeyConfig())) {
+                belowMinIdleKeys.add(key);
+            }
+        }
+    }
 
-        for (final K k : poolMap.keySet()) {
-            ensureMinIdle(k);
+    /**
+     * Flags the given key for examination during the next eviction run if the
+     * key has fewer idle instances than its minimum.
+     *
+     * @param key The key
+     * @param objectDeque The objects associated with the key
+     */
+    private void markBelowMinIdle(final K key, final ObjectDeque<T> objectDeque) {
+        final int minIdle = getMinIdlePerKey(objectDeque.getPerKeyConfig());
+        if (minIdle > 0 && objectDeque.getIdleObjects().size() < minIdle) {
+            belowMinIdleKeys.add(key);
         }
     }
 
@@ -1220,9 +2395,9 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         // as a loop limit and a second time inside the loop
         // to stop when another thread already returned the
         // needed objects
-        final int deficit = calculateDeficit(objectDeque);
+        final int deficit = calculateDeficit(key, objectDeque);
 
-        for (int i = 0; i < deficit && calculateDeficit(objectDeque) > 0; i++) {
+        for (int i = 0; i < deficit && calculateDeficit(key, objectDeque) > 0; i++) {
             addObject(key);
         }
     }
@@ -1281,7 +2456,7 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      * @throws Exception If the associated factory throws an exception
      */
     public void preparePool(final K key) throws Exception {
-        final int minIdlePerKeySave = getMinIdlePerKey();
+        final int minIdlePerKeySave = getMinIdlePerKey(key);
         if (minIdlePerKeySave < 1) {
             return;
         }
@@ -1289,44 +2464,142 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
     }
 
     /**
-     * Calculate the number of objects to test in a run of the idle object
-     * evictor.
+     * Starts creating the idle instances needed to reach the minimum number of
+     * idle instances for each of the given keys in the background, using up to
+     * <code>parallelism</code> concurrent tasks on the given executor, rather
+     * than one at a time on the calling thread as {@link #preparePool(Object)}
+     * does. The keys are registered for pool control.
+     * <p>
+     * The returned future completes once <code>readyFraction</code> of the
+     * missing instances have been created, so that callers can start using the
+     * pool before it is fully warmed up; creation of the remaining instances
+     * continues in the background. Instances are created for the keys in turn
+     * so that every key is partly warmed up when the future completes. The
+     * future completes exceptionally with the first exception thrown by the
+     * factory, after which no further instances are created. Cancelling the
+     * future stops the creation of further instances. Progress is reported by
+     * {@link #getWarmUpTarget()} and {@link #getWarmUpCreatedCount()}.
+     * </p>
      *
-     * @return The number of objects to test for validity
+     * @param keys          the keys to prepare
+     * @param executor      the executor that creates the instances
+     * @param parallelism   the maximum number of instances to create
+     *                      concurrently
+     * @param readyFraction the fraction, greater than 0 and at most 1, of the
+     *                      missing instances that must be created before the
+     *                      returned future completes
+     *
+     * @return a future that completes when the pool is ready
+     *
+     * @throws IllegalArgumentException if the keys or the executor are null,
+     *         the parallelism is not positive or the fraction is out of range
+     * @since 2.4.3
      */
-    private int getNumTests() {
-        final int totalIdle = getNumIdle();
-        final int numTests = getNumTestsPerEvictionRun();
-        if (numTests >= 0) {
-            return Math.min(numTests, totalIdle);
+    public Future<Void> preparePool(final Collection<K> keys,
+            final ExecutorService executor, final int parallelism,
+            final double readyFraction) {
+        if (keys == null) {
+            throw new IllegalArgumentException("keys must not be null.");
         }
-        return(int)(Math.ceil(totalIdle/Math.abs((double)numTests)));
-    }
-
-    /**
-     * Calculate the number of objects that need to be created to attempt to
-     * maintain the minimum number of idle objects while not exceeded the limits
+        PoolWarmUp.validate(executor, parallelism, readyFraction);
+        assertOpen();
+        // Interleave the keys so that they are warmed up together
+        final List<List<K>> rounds = new ArrayList<List<K>>();
+        for (final K key : keys) {
+            final ObjectDeque<T> objectDeque = register(key);
+            final int deficit;
+            try {
+                deficit = calculateDeficit(key, objectDeque);
+            } finally {
+                deregister(key);
+            }
+            for (int i = 0; i < deficit; i++) {
+                if (rounds.size() == i) {
+                    rounds.add(new ArrayList<K>());
+                }
+                rounds.get(i).add(key);
+            }
+        }
+        final List<K> units = new ArrayList<K>();
+        for (final List<K> round : rounds) {
+            units.addAll(round);
+        }
+        final PoolWarmUp w = new PoolWarmUp(units.size(),
+                PoolWarmUp.readyCount(units.size(), readyFraction)) {
+            @Override
+            boolean createObject(final int index) throws Exception {
+                assertOpen();
+                final K key = units.get(index);
+                register(key);
+                try {
+                    final PooledObject<T> p = create(key);
+                    if (p == null) {
+                        return false;
+                    }
+                    addIdleObject(key, p);
+                    return true;
+                } finally {
+                    deregister(key);
+                }
+            }
+        };
+        return startWarmUp(w, executor, parallelism);
+    }
+
+    /**
+     * Determine the eviction shard for a key.
+     *
+     * @param k          The key
+     * @param shardCount The number of eviction shards
+     *
+     * @return The index of the shard to which the key belongs
+     */
+    private int getEvictionShard(final K k, final int shardCount) {
+        return (k.hashCode() & Integer.MAX_VALUE) % shardCount;
+    }
+
+    /**
+     * Calculate the number of objects to test in a run of the idle object
+     * evictor.
+     *
+     * @return The number of objects to test for validity
+     */
+    private int getNumTests() {
+        final int totalIdle = getNumIdle();
+        final int numTests = getNumTestsPerEvictionRun();
+        if (numTests >= 0) {
+            return Math.min(numTests, totalIdle);
+        }
+        return(int)(Math.ceil(totalIdle/Math.abs((double)numTests)));
+    }
+
+    /**
+     * Calculate the number of objects that need to be created to attempt to
+     * maintain the minimum number of idle objects while not exceeded the limits
      * on the maximum number of objects either per key or totally.
      *
+     * @param key           The key associated with the objects
      * @param objectDeque   The set of objects to check
      *
      * @return The number of new objects to create
      */
-    private int calculateDeficit(final ObjectDeque<T> objectDeque) {
+    private int calculateDeficit(final K key, final ObjectDeque<T> objectDeque) {
 
         if (objectDeque == null) {
-            return getMinIdlePerKey();
+            return getMinIdlePerKey(key);
         }
 
         // Used more than once so keep a local copy so the value is consistent
+        final PerKeyConfig perKeyConfig = objectDeque.getPerKeyConfig();
         final int maxTotal = getMaxTotal();
-        final int maxTotalPerKeySave = getMaxTotalPerKey();
+        final int maxTotalPerKeySave = getMaxTotalPerKey(perKeyConfig);
 
         int objectDefecit = 0;
 
         // Calculate no of objects needed to be created, in order to have
         // the number of pooled objects < maxTotalPerKey();
-        objectDefecit = getMinIdlePerKey() - objectDeque.getIdleObjects().size();
+        objectDefecit = getMinIdlePerKey(perKeyConfig) -
+                objectDeque.getIdleObjects().size();
         if (maxTotalPerKeySave > 0) {
             final int growLimit = Math.max(0,
                     maxTotalPerKeySave - objectDeque.getIdleObjects().size());
@@ -1342,6 +2615,290 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         return objectDefecit;
     }
 
+    /**
+     * Obtain the per key limits for the given key, using the value retained
+     * by the sub-pool if the key is currently registered.
+     *
+     * @param key The key
+     *
+     * @return The per key limits or <code>null</code> if the pool wide
+     *         settings apply to the key
+     */
+    private PerKeyConfig getPerKeyConfig(final K key) {
+        final ObjectDeque<T> objectDeque = poolMap.get(key);
+        if (objectDeque != null) {
+            return objectDeque.getPerKeyConfig();
+        }
+        return resolvePerKeyConfig(key);
+    }
+
+    /**
+     * Re-rank the keys by their decaying borrow counts and update the set of
+     * hot keys, applying the hot key limits to keys that are hot and removing
+     * them from keys that no longer are. Newly hot keys are replenished to
+     * their new minimum by the next call to {@link #ensureMinIdle()} and keys
+     * that are no longer hot are shrunk to their usual maximum idle.
+     * <p>
+     * Only the current hot keys and the keys borrowed since the last call are
+     * examined. The scores of all other keys decay at the same rate so they
+     * cannot overtake the current hot keys. Their decay is applied lazily, see
+     * {@link #getHotKeyScore(ObjectDeque)}.
+     */
+    private void updateHotKeys() {
+        hotKeyTick++;
+        final int hotKeyCountSave = getHotKeyCount();
+        if (hotKeyCountSave < 1 && hotKeys.isEmpty() &&
+                borrowedKeys.isEmpty()) {
+            return;
+        }
+
+        final Map<K,ObjectDeque<T>> candidates = new HashMap<K,ObjectDeque<T>>();
+        for (final K k : hotKeys) {
+            final ObjectDeque<T> objectDeque = poolMap.get(k);
+            if (objectDeque != null) {
+                candidates.put(k, objectDeque);
+            }
+        }
+        K k;
+        while ((k = borrowedKeys.poll()) != null) {
+            final ObjectDeque<T> objectDeque = poolMap.get(k);
+            if (objectDeque != null) {
+                candidates.put(k, objectDeque);
+            }
+        }
+
+        final PriorityQueue<Entry<K,ObjectDeque<T>>> top =
+                new PriorityQueue<Entry<K,ObjectDeque<T>>>(
+                        Math.max(1, hotKeyCountSave + 1), hotKeyOrder);
+        for (final Entry<K,ObjectDeque<T>> entry : candidates.entrySet()) {
+            final ObjectDeque<T> objectDeque = entry.getValue();
+            final double score = getHotKeyScore(objectDeque) +
+                    objectDeque.getBorrowCount().getAndSet(0);
+            objectDeque.setHotKeyScore(score);
+            objectDeque.setHotKeyTick(hotKeyTick);
+            if (score > 0 && hotKeyCountSave > 0) {
+                top.offer(entry);
+                if (top.size() > hotKeyCountSave) {
+                    top.poll();
+                }
+            }
+        }
+
+        // Hottest first
+        final List<Entry<K,ObjectDeque<T>>> ranked =
+                new ArrayList<Entry<K,ObjectDeque<T>>>(top);
+        Collections.sort(ranked, Collections.reverseOrder(hotKeyOrder));
+        final List<K> newHotKeys = new ArrayList<K>(ranked.size());
+        for (final Entry<K,ObjectDeque<T>> entry : ranked) {
+            final ObjectDeque<T> objectDeque = entry.getValue();
+            if (objectDeque.getHotPerKeyConfig() == null) {
+                belowMinIdleKeys.add(entry.getKey());
+            }
+            objectDeque.setHotPerKeyConfig(
+                    getHotKeyConfig(objectDeque.getResolvedPerKeyConfig()));
+            newHotKeys.add(entry.getKey());
+        }
+        for (final K hotKey : hotKeys) {
+            if (!newHotKeys.contains(hotKey)) {
+                final ObjectDeque<T> objectDeque = poolMap.get(hotKey);
+                if (objectDeque != null) {
+                    objectDeque.setHotPerKeyConfig(null);
+                    trimIdle(hotKey, objectDeque);
+                }
+            }
+        }
+        hotKeys = Collections.unmodifiableList(newHotKeys);
+    }
+
+    /**
+     * Obtain the hot key score of a key as of the current evictor run. The
+     * stored score is halved once for every evictor run since it was last
+     * updated.
+     *
+     * @param objectDeque The objects associated with the key
+     *
+     * @return The decayed score, excluding any borrows since the score was
+     *         last updated
+     */
+    private double getHotKeyScore(final ObjectDeque<T> objectDeque) {
+        final long elapsed = hotKeyTick - objectDeque.getHotKeyTick();
+        // Anything halved more often than this is zero anyway
+        return Math.scalb(objectDeque.getHotKeyScore(),
+                (int) -Math.min(elapsed, 2000L));
+    }
+
+    /**
+     * Destroy the idle objects above the cold key limit for the keys that are
+     * cold. At most <code>COLD_KEYS_PER_EVICTION_RUN</code> keys are examined
+     * per call, continuing from where the previous call stopped.
+     */
+    private void shrinkColdKeys() {
+        final int maxIdlePerColdKeySave = getMaxIdlePerColdKey();
+        if (maxIdlePerColdKeySave < 0) {
+            return;
+        }
+
+        final List<K> keys;
+        final Lock readLock = keyLock.readLock();
+        readLock.lock();
+        try {
+            final int size = poolKeyList.size();
+            if (size == 0) {
+                return;
+            }
+            final int count = Math.min(size, COLD_KEYS_PER_EVICTION_RUN);
+            keys = new ArrayList<K>(count);
+            if (coldKeyCursor >= size) {
+                coldKeyCursor = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                keys.add(poolKeyList.get(coldKeyCursor));
+                coldKeyCursor = (coldKeyCursor + 1) % size;
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        for (final K k : keys) {
+            final ObjectDeque<T> objectDeque = poolMap.get(k);
+            if (objectDeque == null ||
+                    objectDeque.getHotPerKeyConfig() != null ||
+                    getHotKeyScore(objectDeque) +
+                            objectDeque.getBorrowCount().get() >= 1) {
+                continue;
+            }
+            final PerKeyConfig perKeyConfig = objectDeque.getPerKeyConfig();
+            final int maxIdle = getMaxIdlePerKey(perKeyConfig);
+            final int coldMaxIdle = Math.max(maxIdlePerColdKeySave,
+                    getMinIdlePerKey(perKeyConfig));
+            if (maxIdle < 0 || coldMaxIdle < maxIdle) {
+                trimIdle(k, objectDeque, coldMaxIdle);
+            }
+        }
+    }
+
+    @Override
+    void shedIdle() throws Exception {
+        for (final Entry<K,ObjectDeque<T>> entry : poolMap.entrySet()) {
+            trimIdle(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Destroy the oldest idle objects for the given key until no more than
+     * the maximum number of idle objects for the key remain.
+     *
+     * @param k           The key
+     * @param objectDeque The objects associated with the key
+     */
+    private void trimIdle(final K k, final ObjectDeque<T> objectDeque) {
+        final int maxIdle = getMaxIdlePerKey(objectDeque.getPerKeyConfig());
+        if (maxIdle < 0) {
+            return;
+        }
+        trimIdle(k, objectDeque, maxIdle);
+    }
+
+    /**
+     * Destroy the oldest idle objects for the given key until no more than
+     * the given number of idle objects for the key remain.
+     *
+     * @param k           The key
+     * @param objectDeque The objects associated with the key
+     * @param maxIdle     The number of idle objects to retain
+     */
+    private void trimIdle(final K k, final ObjectDeque<T> objectDeque,
+            final int maxIdle) {
+        final LinkedBlockingDeque<PooledObject<T>> idleObjects =
+                objectDeque.getIdleObjects();
+        while (idleObjects.size() > maxIdle) {
+            final PooledObject<T> p = getLifo() ? idleObjects.peekLast() :
+                    idleObjects.peekFirst();
+            if (p == null) {
+                break;
+            }
+            try {
+                destroy(k, p, false);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
+    }
+
+    /**
+     * Determine the limits for a hot key.
+     *
+     * @param perKeyConfig The limits that apply to the key when it is not hot
+     *                     or <code>null</code> if the pool wide settings
+     *                     apply
+     *
+     * @return The limits for the key while it is hot
+     */
+    private PerKeyConfig getHotKeyConfig(final PerKeyConfig perKeyConfig) {
+        int maxIdle = perKeyConfig == null ?
+                getMaxIdlePerKey() : perKeyConfig.getMaxIdle();
+        final int maxIdlePerHotKeySave = getMaxIdlePerHotKey();
+        if (maxIdle >= 0 && (maxIdlePerHotKeySave < 0 ||
+                maxIdlePerHotKeySave > maxIdle)) {
+            maxIdle = maxIdlePerHotKeySave;
+        }
+        final int minIdle = Math.max(perKeyConfig == null ?
+                minIdlePerKey : perKeyConfig.getMinIdle(), getMinIdlePerHotKey());
+        if (perKeyConfig == null) {
+            return new PerKeyConfig(getMaxTotalPerKey(), maxIdle, minIdle);
+        }
+        return new PerKeyConfig(perKeyConfig.getMaxTotal(), maxIdle, minIdle,
+                perKeyConfig.getWeight(), perKeyConfig.getGuaranteedTotal());
+    }
+
+    /**
+     * Call the configured {@link PerKeyConfigResolver}, if any, for the given
+     * key. Exceptions thrown by the resolver are swallowed and the pool wide
+     * settings are used instead.
+     *
+     * @param key The key
+     *
+     * @return The per key limits or <code>null</code> if the pool wide
+     *         settings apply to the key
+     */
+    private PerKeyConfig resolvePerKeyConfig(final K key) {
+        final PerKeyConfigResolver<K> resolver = perKeyConfigResolver;
+        if (resolver == null) {
+            return null;
+        }
+        try {
+            return resolver.resolve(key);
+        } catch (final Exception e) {
+            swallowException(e);
+            return null;
+        }
+    }
+
+    private int getMaxTotalPerKey(final PerKeyConfig perKeyConfig) {
+        if (perKeyConfig == null) {
+            return getMaxTotalPerKey();
+        }
+        return perKeyConfig.getMaxTotal();
+    }
+
+    private int getMaxIdlePerKey(final PerKeyConfig perKeyConfig) {
+        if (perKeyConfig == null) {
+            return limitIdle(getMaxIdlePerKey());
+        }
+        return limitIdle(perKeyConfig.getMaxIdle());
+    }
+
+    private int getMinIdlePerKey(final PerKeyConfig perKeyConfig) {
+        final int minIdle;
+        if (perKeyConfig == null) {
+            minIdle = getMinIdlePerKey();
+        } else {
+            minIdle = Math.min(perKeyConfig.getMinIdle(),
+                    perKeyConfig.getMaxIdle());
+        }
+        return Math.min(minIdle, limitIdle(Integer.MAX_VALUE));
+    }
+
 
     //--- JMX support ----------------------------------------------------------
 
@@ -1416,6 +2973,96 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         return result;
     }
 
+    /**
+     * The keys that are currently hot, hottest first. See
+     * {@link #setHotKeyCount(int)}.
+     *
+     * @return the hot keys
+     *
+     * @since 2.4.3
+     */
+    public List<K> getHotKeys() {
+        return hotKeys;
+    }
+
+    /**
+     * The keys that are currently hot, hottest first, as strings.
+     *
+     * @return the hot keys
+     *
+     * @see #getHotKeys()
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public List<String> getHotKeyNames() {
+        final List<K> hotKeysSave = hotKeys;
+        final List<String> result = new ArrayList<String>(hotKeysSave.size());
+        for (final K k : hotKeysSave) {
+            result.add(String.valueOf(k));
+        }
+        return result;
+    }
+
+    /**
+     * The number of instances borrowed from the sub-pool of a
+     * {@link #getFallbackKeyResolver() fallback key} because there were no
+     * idle instances for the requested key.
+     *
+     * @return the number of fallback borrows
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public long getFallbackBorrowCount() {
+        return fallbackBorrowCount.get();
+    }
+
+    /**
+     * The number of complete cycles through all the eviction shards made by
+     * the idle object evictor. Only updated if
+     * {@link #getEvictionShardCount() evictionShardCount} is positive.
+     *
+     * @return the number of complete eviction cycles
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public long getEvictionCycleCount() {
+        return evictionCycleCount;
+    }
+
+    /**
+     * The time in milliseconds between the start of the most recently
+     * completed cycle through all the eviction shards and its completion.
+     * This is the longest that any idle object present at the start of that
+     * cycle went without being examined. Only updated if
+     * {@link #getEvictionShardCount() evictionShardCount} is positive.
+     *
+     * @return the duration of the last complete eviction cycle in
+     *         milliseconds or zero if no cycle has completed
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public long getLastEvictionCycleMillis() {
+        return lastEvictionCycleMillis;
+    }
+
+    /**
+     * The index of the eviction shard the idle object evictor will examine
+     * next. Only updated if {@link #getEvictionShardCount() evictionShardCount}
+     * is positive.
+     *
+     * @return the index of the next eviction shard
+     *
+     * @since 2.4.3
+     */
+    @Override
+    public int getEvictionShardCursor() {
+        return evictionShardCursor;
+    }
+
     /**
      * Provides information on all the objects in the pool, both idle (waiting
      * to be borrowed) and active (currently borrowed).
@@ -1481,6 +3128,38 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
          */
         private final AtomicLong numInterested = new AtomicLong(0);
 
+        /*
+         * The limits that override the pool wide per key settings for this
+         * key, or null if the pool wide settings apply.
+         */
+        private volatile PerKeyConfig perKeyConfig = null;
+
+        /*
+         * The limits that apply while the key is hot, or null if the key is
+         * not hot.
+         */
+        private volatile PerKeyConfig hotPerKeyConfig = null;
+
+        /*
+         * The number of borrows for the key since the last hot key update and
+         * the decaying score derived from those counts.
+         */
+        private final AtomicLong borrowCount = new AtomicLong(0);
+        private double hotKeyScore = 0; // @GuardedBy("evictionLock")
+        private long hotKeyTick = 0; // @GuardedBy("evictionLock")
+
+        /*
+         * The time the key was last found to have no objects and no
+         * interested threads.
+         */
+        private volatile long unusedSinceMillis = 0;
+
+        /*
+         * Whether the key is currently queued for removal by the evictor once
+         * its retention time has passed.
+         */
+        private final AtomicBoolean retained = new AtomicBoolean(false);
+
         /**
          * Create a new ObjecDeque with the given fairness policy.
          * @param fairness true means client threads waiting to borrow / return instances
@@ -1527,6 +3206,141 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
             return allObjects;
         }
 
+        /**
+         * Obtain the limits that override the pool wide per key settings for
+         * the current key. These are the hot key limits while the key is hot.
+         *
+         * @return The per key limits or <code>null</code> if the pool wide
+         *         settings apply
+         */
+        public PerKeyConfig getPerKeyConfig() {
+            final PerKeyConfig hot = hotPerKeyConfig;
+            return hot == null ? perKeyConfig : hot;
+        }
+
+        /**
+         * Obtain the limits provided by the per key configuration resolver for
+         * the current key, ignoring any hot key limits.
+         *
+         * @return The per key limits or <code>null</code> if the pool wide
+         *         settings apply
+         */
+        public PerKeyConfig getResolvedPerKeyConfig() {
+            return perKeyConfig;
+        }
+
+        /**
+         * Obtain the limits that apply while the current key is hot.
+         *
+         * @return The hot key limits or <code>null</code> if the key is not
+         *         hot
+         */
+        public PerKeyConfig getHotPerKeyConfig() {
+            return hotPerKeyConfig;
+        }
+
+        /**
+         * Set the limits that apply while the current key is hot.
+         *
+         * @param hotPerKeyConfig The hot key limits or <code>null</code> if
+         *                        the key is not hot
+         */
+        public void setHotPerKeyConfig(final PerKeyConfig hotPerKeyConfig) {
+            this.hotPerKeyConfig = hotPerKeyConfig;
+        }
+
+        /**
+         * Obtain the number of borrows for the current key since the hot keys
+         * were last updated.
+         *
+         * @return The borrow count
+         */
+        public AtomicLong getBorrowCount() {
+            return borrowCount;
+        }
+
+        /**
+         * Obtain the decaying borrow count used to rank the current key when
+         * identifying hot keys.
+         *
+         * @return The hot key score
+         */
+        public double getHotKeyScore() {
+            return hotKeyScore;
+        }
+
+        /**
+         * Set the decaying borrow count used to rank the current key when
+         * identifying hot keys.
+         *
+         * @param hotKeyScore The hot key score
+         */
+        public void setHotKeyScore(final double hotKeyScore) {
+            this.hotKeyScore = hotKeyScore;
+        }
+
+        /**
+         * Obtain the evictor run in which the hot key score of the current
+         * key was last updated.
+         *
+         * @return The evictor run
+         */
+        public long getHotKeyTick() {
+            return hotKeyTick;
+        }
+
+        /**
+         * Set the evictor run in which the hot key score of the current key
+         * was last updated.
+         *
+         * @param hotKeyTick The evictor run
+         */
+        public void setHotKeyTick(final long hotKeyTick) {
+            this.hotKeyTick = hotKeyTick;
+        }
+
+        /**
+         * Set the limits that override the pool wide per key settings for the
+         * current key.
+         *
+         * @param perKeyConfig The per key limits or <code>null</code> if the
+         *                     pool wide settings apply
+         */
+        public void setPerKeyConfig(final PerKeyConfig perKeyConfig) {
+            this.perKeyConfig = perKeyConfig;
+        }
+
+        /**
+         * Obtain the time the current key was last found to have no objects
+         * and no interested threads.
+         *
+         * @return The time in milliseconds since the epoch or zero if the key
+         *         has not been unused since it was created
+         */
+        public long getUnusedSinceMillis() {
+            return unusedSinceMillis;
+        }
+
+        /**
+         * Set the time the current key was last found to have no objects and
+         * no interested threads.
+         *
+         * @param unusedSinceMillis The time in milliseconds since the epoch
+         */
+        public void setUnusedSinceMillis(final long unusedSinceMillis) {
+            this.unusedSinceMillis = unusedSinceMillis;
+        }
+
+        /**
+         * Obtain the flag that records whether the current key is queued for
+         * removal once its retention time has passed.
+         *
+         * @return The retained flag
+         */
+        public AtomicBoolean getRetained() {
+            return retained;
+        }
+
         @Override
         public String toString() {
             final StringBuilder builder = new StringBuilder();
@@ -1538,6 +3352,14 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
             builder.append(allObjects);
             builder.append(", numInterested=");
             builder.append(numInterested);
+            builder.append(", perKeyConfig=");
+            builder.append(perKeyConfig);
+            builder.append(", hotPerKeyConfig=");
+            builder.append(hotPerKeyConfig);
+            builder.append(", hotKeyScore=");
+            builder.append(hotKeyScore);
+            builder.append(", unusedSinceMillis=");
+            builder.append(unusedSinceMillis);
             builder.append("]");
             return builder.toString();
         }
@@ -1551,6 +3373,20 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         GenericKeyedObjectPoolConfig.DEFAULT_MIN_IDLE_PER_KEY;
     private volatile int maxTotalPerKey =
         GenericKeyedObjectPoolConfig.DEFAULT_MAX_TOTAL_PER_KEY;
+    private volatile PerKeyConfigResolver<K> perKeyConfigResolver = null;
+    private volatile FallbackKeyResolver<K> fallbackKeyResolver = null;
+    private volatile boolean weightedFairSharing =
+        GenericKeyedObjectPoolConfig.DEFAULT_WEIGHTED_FAIR_SHARING;
+    private volatile long keyRetentionTimeMillis =
+        GenericKeyedObjectPoolConfig.DEFAULT_KEY_RETENTION_TIME_MILLIS;
+    private volatile int hotKeyCount =
+        GenericKeyedObjectPoolConfig.DEFAULT_HOT_KEY_COUNT;
+    private volatile int minIdlePerHotKey =
+        GenericKeyedObjectPoolConfig.DEFAULT_MIN_IDLE_PER_HOT_KEY;
+    private volatile int maxIdlePerHotKey =
+        GenericKeyedObjectPoolConfig.DEFAULT_MAX_IDLE_PER_HOT_KEY;
+    private volatile int maxIdlePerColdKey =
+        GenericKeyedObjectPoolConfig.DEFAULT_MAX_IDLE_PER_COLD_KEY;
     private final KeyedPooledObjectFactory<K,T> factory;
     private final boolean fairness;
 
@@ -1572,6 +3408,11 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      */
     private final List<K> poolKeyList = new ArrayList<K>(); // @GuardedBy("keyLock")
     private final ReadWriteLock keyLock = new ReentrantReadWriteLock(true);
+    /*
+     * Held by a thread that may wait while holding some, but not all, of the
+     * objects requested by borrowObjects().
+     */
+    private final Lock multiKeyBorrowLock = new ReentrantLock(true);
     /*
      * The combined count of the currently active objects for all keys and those
      * in the process of being created. Under load, it may exceed
@@ -1579,6 +3420,77 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
      * created at any one time.
      */
     private final AtomicInteger numTotal = new AtomicInteger(0);
+    /*
+     * Keys that may have fewer than the minimum number of idle instances.
+     * Only these keys are examined by ensureMinIdle() unless
+     * allKeysBelowMinIdle is set.
+     */
+    private final Set<K> belowMinIdleKeys =
+            Collections.newSetFromMap(new ConcurrentHashMap<K, Boolean>());
+    private final AtomicBoolean allKeysBelowMinIdle = new AtomicBoolean(false);
+    private volatile ExecutorService minIdleExecutor = null;
+    /*
+     * The instances currently borrowed via a fallback key, mapped to the key
+     * of the sub-pool they belong to.
+     */
+    private final Map<IdentityWrapper<T>, K> fallbackBorrows =
+            new ConcurrentHashMap<IdentityWrapper<T>, K>();
+    private final AtomicLong fallbackBorrowCount = new AtomicLong(0);
+    /*
+     * The current hot keys, hottest first. Replaced, never modified, by the
+     * evictor.
+     */
+    private volatile List<K> hotKeys = Collections.emptyList();
+    /*
+     * The keys that were retained when they became unused. Only these keys
+     * are examined when removing keys whose retention time has passed.
+     */
+    private final ConcurrentLinkedQueue<K> retainedKeys =
+            new ConcurrentLinkedQueue<K>();
+    /*
+     * The keys borrowed since the hot keys were last updated. A key is added
+     * when its borrow count changes from zero.
+     */
+    private final ConcurrentLinkedQueue<K> borrowedKeys =
+            new ConcurrentLinkedQueue<K>();
+    /*
+     * The number of times the hot keys have been updated, used to decay the
+     * hot key scores lazily, and the position in poolKeyList at which the
+     * next search for cold keys starts.
+     */
+    private long hotKeyTick = 0; // @GuardedBy("evictionLock")
+    private int coldKeyCursor = 0; // @GuardedBy("evictionLock")
+    /*
+     * The maximum number of keys examined for cold keys per evictor run.
+     */
+    private static final int COLD_KEYS_PER_EVICTION_RUN = 256;
+    /*
+     * Orders keys by their hot key score, coldest first.
+     */
+    private final Comparator<Entry<K,ObjectDeque<T>>> hotKeyOrder =
+            new Comparator<Entry<K,ObjectDeque<T>>>() {
+        @Override
+        public int compare(final Entry<K,ObjectDeque<T>> e1,
+                final Entry<K,ObjectDeque<T>> e2) {
+            return Double.compare(e1.getValue().getHotKeyScore(),
+                    e2.getValue().getHotKeyScore());
+        }
+    };
+    private volatile int evictionShardCount =
+        GenericKeyedObjectPoolConfig.DEFAULT_EVICTION_SHARD_COUNT;
+    private volatile long evictionTimeBudgetMillis =
+        GenericKeyedObjectPoolConfig.DEFAULT_EVICTION_TIME_BUDGET_MILLIS;
+    /*
+     * The keys partitioned into evictionShardCount shards or null if the keys
+     * are not sharded for eviction. Replaced while holding
+     * keyLock.writeLock(). Keys must be added to and removed from the shards
+     * at the same time as poolMap and poolKeyList.
+     */
+    private volatile List<List<K>> evictionShards = null; // @GuardedBy("keyLock")
+    private volatile int evictionShardCursor = 0; // @GuardedBy("evictionLock")
+    private long evictionCycleStartMillis = 0; // @GuardedBy("evictionLock")
+    private volatile long evictionCycleCount = 0; // @GuardedBy("evictionLock")
+    private volatile long lastEvictionCycleMillis = 0; // @GuardedBy("evictionLock")
     private Iterator<K> evictionKeyIterator = null; // @GuardedBy("evictionLock")
     private K evictionKey = null; // @GuardedBy("evictionLock")
 
@@ -1595,6 +3507,22 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         builder.append(minIdlePerKey);
         builder.append(", maxTotalPerKey=");
         builder.append(maxTotalPerKey);
+        builder.append(", perKeyConfigResolver=");
+        builder.append(perKeyConfigResolver);
+        builder.append(", weightedFairSharing=");
+        builder.append(weightedFairSharing);
+        builder.append(", keyRetentionTimeMillis=");
+        builder.append(keyRetentionTimeMillis);
+        builder.append(", hotKeyCount=");
+        builder.append(hotKeyCount);
+        builder.append(", minIdlePerHotKey=");
+        builder.append(minIdlePerHotKey);
+        builder.append(", maxIdlePerHotKey=");
+        builder.append(maxIdlePerHotKey);
+        builder.append(", maxIdlePerColdKey=");
+        builder.append(maxIdlePerColdKey);
+        builder.append(", hotKeys=");
+        builder.append(hotKeys);
         builder.append(", factory=");
         builder.append(factory);
         builder.append(", fairness=");
@@ -1607,9 +3535,19 @@ public class GenericKeyedObjectPool<K,T> extends BaseGenericObjectPool<T>
         builder.append(keyLock);
         builder.append(", numTotal=");
         builder.append(numTotal);
+        builder.append(", belowMinIdleKeys=");
+        builder.append(belowMinIdleKeys);
+        builder.append(", minIdleExecutor=");
+        builder.append(minIdleExecutor);
         builder.append(", evictionKeyIterator=");
         builder.append(evictionKeyIterator);
         builder.append(", evictionKey=");
         builder.append(evictionKey);
+        builder.append(", evictionShardCount=");
+        builder.append(evictionShardCount);
+        builder.append(", evictionTimeBudgetMillis=");
+        builder.append(evictionTimeBudgetMillis);
+        builder.append(", evictionShardCursor=");
+        builder.append(evictionShardCursor);
     }
 }
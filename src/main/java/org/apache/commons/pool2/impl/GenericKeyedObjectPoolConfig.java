@@ -54,6 +54,58 @@ public class GenericKeyedObjectPoolConfig extends BaseObjectPoolConfig {
      */
     public static final int DEFAULT_MAX_IDLE_PER_KEY = 8;
 
+    /**
+     * The default value for the {@code weightedFairSharing} configuration
+     * attribute.
+     * @see GenericKeyedObjectPool#getWeightedFairSharing()
+     */
+    public static final boolean DEFAULT_WEIGHTED_FAIR_SHARING = false;
+
+    /**
+     * The default value for the {@code evictionShardCount} configuration
+     * attribute.
+     * @see GenericKeyedObjectPool#getEvictionShardCount()
+     */
+    public static final int DEFAULT_EVICTION_SHARD_COUNT = 0;
+
+    /**
+     * The default value for the {@code evictionTimeBudgetMillis}
+     * configuration attribute.
+     * @see GenericKeyedObjectPool#getEvictionTimeBudgetMillis()
+     */
+    public static final long DEFAULT_EVICTION_TIME_BUDGET_MILLIS = -1L;
+
+    /**
+     * The default value for the {@code keyRetentionTimeMillis} configuration
+     * attribute.
+     * @see GenericKeyedObjectPool#getKeyRetentionTimeMillis()
+     */
+    public static final long DEFAULT_KEY_RETENTION_TIME_MILLIS = 0L;
+
+    /**
+     * The default value for the {@code hotKeyCount} configuration attribute.
+     * @see GenericKeyedObjectPool#getHotKeyCount()
+     */
+    public static final int DEFAULT_HOT_KEY_COUNT = 0;
+
+    /**
+     * The default value for the {@code minIdlePerHotKey} configuration attribute.
+     * @see GenericKeyedObjectPool#getMinIdlePerHotKey()
+     */
+    public static final int DEFAULT_MIN_IDLE_PER_HOT_KEY = 0;
+
+    /**
+     * The default value for the {@code maxIdlePerHotKey} configuration attribute.
+     * @see GenericKeyedObjectPool#getMaxIdlePerHotKey()
+     */
+    public static final int DEFAULT_MAX_IDLE_PER_HOT_KEY = 8;
+
+    /**
+     * The default value for the {@code maxIdlePerColdKey} configuration attribute.
+     * @see GenericKeyedObjectPool#getMaxIdlePerColdKey()
+     */
+    public static final int DEFAULT_MAX_IDLE_PER_COLD_KEY = -1;
+
 
     private int minIdlePerKey = DEFAULT_MIN_IDLE_PER_KEY;
 
@@ -63,6 +115,22 @@ public class GenericKeyedObjectPoolConfig extends BaseObjectPoolConfig {
 
     private int maxTotal = DEFAULT_MAX_TOTAL;
 
+    private boolean weightedFairSharing = DEFAULT_WEIGHTED_FAIR_SHARING;
+
+    private int evictionShardCount = DEFAULT_EVICTION_SHARD_COUNT;
+
+    private long evictionTimeBudgetMillis = DEFAULT_EVICTION_TIME_BUDGET_MILLIS;
+
+    private long keyRetentionTimeMillis = DEFAULT_KEY_RETENTION_TIME_MILLIS;
+
+    private int hotKeyCount = DEFAULT_HOT_KEY_COUNT;
+
+    private int minIdlePerHotKey = DEFAULT_MIN_IDLE_PER_HOT_KEY;
+
+    private int maxIdlePerHotKey = DEFAULT_MAX_IDLE_PER_HOT_KEY;
+
+    private int maxIdlePerColdKey = DEFAULT_MAX_IDLE_PER_COLD_KEY;
+
     /**
      * Create a new configuration with default settings.
      */
@@ -173,6 +241,246 @@ public class GenericKeyedObjectPoolConfig extends BaseObjectPoolConfig {
         this.maxIdlePerKey = maxIdlePerKey;
     }
 
+    /**
+     * Get the value for the {@code weightedFairSharing} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code weightedFairSharing} for this
+     *          configuration instance
+     *
+     * @see GenericKeyedObjectPool#getWeightedFairSharing()
+     *
+     * @since 2.4.3
+     */
+    public boolean getWeightedFairSharing() {
+        return weightedFairSharing;
+    }
+
+    /**
+     * Set the value for the {@code weightedFairSharing} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param weightedFairSharing The new setting of
+     *        {@code weightedFairSharing} for this configuration instance
+     *
+     * @see GenericKeyedObjectPool#setWeightedFairSharing(boolean)
+     *
+     * @since 2.4.3
+     */
+    public void setWeightedFairSharing(final boolean weightedFairSharing) {
+        this.weightedFairSharing = weightedFairSharing;
+    }
+
+    /**
+     * Get the value for the {@code evictionShardCount} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code evictionShardCount} for this
+     *          configuration instance
+     *
+     * @see GenericKeyedObjectPool#getEvictionShardCount()
+     *
+     * @since 2.4.3
+     */
+    public int getEvictionShardCount() {
+        return evictionShardCount;
+    }
+
+    /**
+     * Set the value for the {@code evictionShardCount} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param evictionShardCount The new setting of
+     *        {@code evictionShardCount} for this configuration instance
+     *
+     * @see GenericKeyedObjectPool#setEvictionShardCount(int)
+     *
+     * @since 2.4.3
+     */
+    public void setEvictionShardCount(final int evictionShardCount) {
+        this.evictionShardCount = evictionShardCount;
+    }
+
+    /**
+     * Get the value for the {@code evictionTimeBudgetMillis} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code evictionTimeBudgetMillis} for
+     *          this configuration instance
+     *
+     * @see GenericKeyedObjectPool#getEvictionTimeBudgetMillis()
+     *
+     * @since 2.4.3
+     */
+    public long getEvictionTimeBudgetMillis() {
+        return evictionTimeBudgetMillis;
+    }
+
+    /**
+     * Set the value for the {@code evictionTimeBudgetMillis} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param evictionTimeBudgetMillis The new setting of
+     *        {@code evictionTimeBudgetMillis} for this configuration instance
+     *
+     * @see GenericKeyedObjectPool#setEvictionTimeBudgetMillis(long)
+     *
+     * @since 2.4.3
+     */
+    public void setEvictionTimeBudgetMillis(final long evictionTimeBudgetMillis) {
+        this.evictionTimeBudgetMillis = evictionTimeBudgetMillis;
+    }
+
+    /**
+     * Get the value for the {@code keyRetentionTimeMillis} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code keyRetentionTimeMillis} for
+     *          this configuration instance
+     *
+     * @see GenericKeyedObjectPool#getKeyRetentionTimeMillis()
+     *
+     * @since 2.4.3
+     */
+    public long getKeyRetentionTimeMillis() {
+        return keyRetentionTimeMillis;
+    }
+
+    /**
+     * Set the value for the {@code keyRetentionTimeMillis} configuration
+     * attribute for pools created with this configuration instance.
+     *
+     * @param keyRetentionTimeMillis The new setting of
+     *        {@code keyRetentionTimeMillis} for this configuration instance
+     *
+     * @see GenericKeyedObjectPool#setKeyRetentionTimeMillis(long)
+     *
+     * @since 2.4.3
+     */
+    public void setKeyRetentionTimeMillis(final long keyRetentionTimeMillis) {
+        this.keyRetentionTimeMillis = keyRetentionTimeMillis;
+    }
+
+    /**
+     * Get the value for the {@code hotKeyCount} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code hotKeyCount} for this
+     *          configuration instance
+     *
+     * @see GenericKeyedObjectPool#getHotKeyCount()
+     *
+     * @since 2.4.3
+     */
+    public int getHotKeyCount() {
+        return hotKeyCount;
+    }
+
+    /**
+     * Set the value for the {@code hotKeyCount} configuration attribute for
+     * pools created with this configuration instance.
+     *
+     * @param hotKeyCount The new setting of {@code hotKeyCount}
+     *        for this configuration instance
+     *
+     * @see GenericKeyedObjectPool#setHotKeyCount(int)
+     *
+     * @since 2.4.3
+     */
+    public void setHotKeyCount(final int hotKeyCount) {
+        this.hotKeyCount = hotKeyCount;
+    }
+
+    /**
+     * Get the value for the {@code minIdlePerHotKey} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code minIdlePerHotKey} for this
+     *          configuration instance
+     *
+     * @see GenericKeyedObjectPool#getMinIdlePerHotKey()
+     *
+     * @since 2.4.3
+     */
+    public int getMinIdlePerHotKey() {
+        return minIdlePerHotKey;
+    }
+
+    /**
+     * Set the value for the {@code minIdlePerHotKey} configuration attribute for
+     * pools created with this configuration instance.
+     *
+     * @param minIdlePerHotKey The new setting of {@code minIdlePerHotKey}
+     *        for this configuration instance
+     *
+     * @see GenericKeyedObjectPool#setMinIdlePerHotKey(int)
+     *
+     * @since 2.4.3
+     */
+    public void setMinIdlePerHotKey(final int minIdlePerHotKey) {
+        this.minIdlePerHotKey = minIdlePerHotKey;
+    }
+
+    /**
+     * Get the value for the {@code maxIdlePerHotKey} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code maxIdlePerHotKey} for this
+     *          configuration instance
+     *
+     * @see GenericKeyedObjectPool#getMaxIdlePerHotKey()
+     *
+     * @since 2.4.3
+     */
+    public int getMaxIdlePerHotKey() {
+        return maxIdlePerHotKey;
+    }
+
+    /**
+     * Set the value for the {@code maxIdlePerHotKey} configuration attribute for
+     * pools created with this configuration instance.
+     *
+     * @param maxIdlePerHotKey The new setting of {@code maxIdlePerHotKey}
+     *        for this configuration instance
+     *
+     * @see GenericKeyedObjectPool#setMaxIdlePerHotKey(int)
+     *
+     * @since 2.4.3
+     */
+    public void setMaxIdlePerHotKey(final int maxIdlePerHotKey) {
+        this.maxIdlePerHotKey = maxIdlePerHotKey;
+    }
+
+    /**
+     * Get the value for the {@code maxIdlePerColdKey} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @return  The current setting of {@code maxIdlePerColdKey} for this
+     *          configuration instance
+     *
+     * @see GenericKeyedObjectPool#getMaxIdlePerColdKey()
+     *
+     * @since 2.4.3
+     */
+    public int getMaxIdlePerColdKey() {
+        return maxIdlePerColdKey;
+    }
+
+    /**
+     * Set the value for the {@code maxIdlePerColdKey} configuration attribute
+     * for pools created with this configuration instance.
+     *
+     * @param maxIdlePerColdKey The new setting of {@code maxIdlePerColdKey}
+     *        for this configuration instance
+     *
+     * @see GenericKeyedObjectPool#setMaxIdlePerColdKey(int)
+     *
+     * @since 2.4.3
+     */
+    public void setMaxIdlePerColdKey(final int maxIdlePerColdKey) {
+        this.maxIdlePerColdKey = maxIdlePerColdKey;
+    }
+
     @Override
     public GenericKeyedObjectPoolConfig clone() {
         try {
@@ -193,5 +501,21 @@ public class GenericKeyedObjectPoolConfig extends BaseObjectPoolConfig {
         builder.append(maxTotalPerKey);
         builder.append(", maxTotal=");
         builder.append(maxTotal);
+        builder.append(", weightedFairSharing=");
+        builder.append(weightedFairSharing);
+        builder.append(", evictionShardCount=");
+        builder.append(evictionShardCount);
+        builder.append(", evictionTimeBudgetMillis=");
+        builder.append(evictionTimeBudgetMillis);
+        builder.append(", keyRetentionTimeMillis=");
+        builder.append(keyRetentionTimeMillis);
+        builder.append(", hotKeyCount=");
+        builder.append(hotKeyCount);
+        builder.append(", minIdlePerHotKey=");
+        builder.append(minIdlePerHotKey);
+        builder.append(", maxIdlePerHotKey=");
+        builder.append(maxIdlePerHotKey);
+        builder.append(", maxIdlePerColdKey=");
+        builder.append(maxIdlePerColdKey);
     }
 }
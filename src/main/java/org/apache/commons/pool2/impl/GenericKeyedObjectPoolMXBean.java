@@ -123,6 +123,54 @@ public interface GenericKeyedObjectPoolMXBean<K> {
      * @return See {@link GenericKeyedObjectPool#getTimeBetweenEvictionRunsMillis()}
      */
     long getTimeBetweenEvictionRunsMillis();
+    /**
+     * See {@link GenericKeyedObjectPool#getWeightedFairSharing()}
+     * @return See {@link GenericKeyedObjectPool#getWeightedFairSharing()}
+     * @since 2.4.3
+     */
+    boolean getWeightedFairSharing();
+    /**
+     * See {@link GenericKeyedObjectPool#getEvictionShardCount()}
+     * @return See {@link GenericKeyedObjectPool#getEvictionShardCount()}
+     * @since 2.4.3
+     */
+    int getEvictionShardCount();
+    /**
+     * See {@link GenericKeyedObjectPool#getEvictionTimeBudgetMillis()}
+     * @return See {@link GenericKeyedObjectPool#getEvictionTimeBudgetMillis()}
+     * @since 2.4.3
+     */
+    long getEvictionTimeBudgetMillis();
+    /**
+     * See {@link GenericKeyedObjectPool#getKeyRetentionTimeMillis()}
+     * @return See {@link GenericKeyedObjectPool#getKeyRetentionTimeMillis()}
+     * @since 2.4.3
+     */
+    long getKeyRetentionTimeMillis();
+    /**
+     * See {@link GenericKeyedObjectPool#getHotKeyCount()}
+     * @return See {@link GenericKeyedObjectPool#getHotKeyCount()}
+     * @since 2.4.3
+     */
+    int getHotKeyCount();
+    /**
+     * See {@link GenericKeyedObjectPool#getMinIdlePerHotKey()}
+     * @return See {@link GenericKeyedObjectPool#getMinIdlePerHotKey()}
+     * @since 2.4.3
+     */
+    int getMinIdlePerHotKey();
+    /**
+     * See {@link GenericKeyedObjectPool#getMaxIdlePerHotKey()}
+     * @return See {@link GenericKeyedObjectPool#getMaxIdlePerHotKey()}
+     * @since 2.4.3
+     */
+    int getMaxIdlePerHotKey();
+    /**
+     * See {@link GenericKeyedObjectPool#getMaxIdlePerColdKey()}
+     * @return See {@link GenericKeyedObjectPool#getMaxIdlePerColdKey()}
+     * @since 2.4.3
+     */
+    int getMaxIdlePerColdKey();
     /**
      * See {@link GenericKeyedObjectPool#isClosed()}
      * @return See {@link GenericKeyedObjectPool#isClosed()}
@@ -199,6 +247,72 @@ public interface GenericKeyedObjectPoolMXBean<K> {
      * @return See {@link GenericKeyedObjectPool#getNumWaitersByKey()}
      */
     Map<String,Integer> getNumWaitersByKey();
+    /**
+     * See {@link GenericKeyedObjectPool#getEvictionCycleCount()}
+     * @return See {@link GenericKeyedObjectPool#getEvictionCycleCount()}
+     * @since 2.4.3
+     */
+    long getEvictionCycleCount();
+    /**
+     * See {@link GenericKeyedObjectPool#getFallbackBorrowCount()}
+     * @return See {@link GenericKeyedObjectPool#getFallbackBorrowCount()}
+     * @since 2.4.3
+     */
+    long getFallbackBorrowCount();
+    /**
+     * See {@link GenericKeyedObjectPool#getHotKeyNames()}
+     * @return See {@link GenericKeyedObjectPool#getHotKeyNames()}
+     * @since 2.4.3
+     */
+    List<String> getHotKeyNames();
+    /**
+     * See {@link GenericKeyedObjectPool#getLastEvictionCycleMillis()}
+     * @return See {@link GenericKeyedObjectPool#getLastEvictionCycleMillis()}
+     * @since 2.4.3
+     */
+    long getLastEvictionCycleMillis();
+    /**
+     * See {@link GenericKeyedObjectPool#getEvictionShardCursor()}
+     * @return See {@link GenericKeyedObjectPool#getEvictionShardCursor()}
+     * @since 2.4.3
+     */
+    int getEvictionShardCursor();
+    /**
+     * See {@link GenericKeyedObjectPool#getMemoryPressureThreshold()}
+     * @return See {@link GenericKeyedObjectPool#getMemoryPressureThreshold()}
+     * @since 2.4.3
+     */
+    double getMemoryPressureThreshold();
+    /**
+     * See {@link GenericKeyedObjectPool#getMemoryPressureMaxIdle()}
+     * @return See {@link GenericKeyedObjectPool#getMemoryPressureMaxIdle()}
+     * @since 2.4.3
+     */
+    int getMemoryPressureMaxIdle();
+    /**
+     * See {@link GenericKeyedObjectPool#isUnderMemoryPressure()}
+     * @return See {@link GenericKeyedObjectPool#isUnderMemoryPressure()}
+     * @since 2.4.3
+     */
+    boolean isUnderMemoryPressure();
+    /**
+     * See {@link GenericKeyedObjectPool#getMemoryPressureCount()}
+     * @return See {@link GenericKeyedObjectPool#getMemoryPressureCount()}
+     * @since 2.4.3
+     */
+    long getMemoryPressureCount();
+    /**
+     * See {@link GenericKeyedObjectPool#getWarmUpTarget()}
+     * @return See {@link GenericKeyedObjectPool#getWarmUpTarget()}
+     * @since 2.4.3
+     */
+    int getWarmUpTarget();
+    /**
+     * See {@link GenericKeyedObjectPool#getWarmUpCreatedCount()}
+     * @return See {@link GenericKeyedObjectPool#getWarmUpCreatedCount()}
+     * @since 2.4.3
+     */
+    int getWarmUpCreatedCount();
     /**
      * See {@link GenericKeyedObjectPool#listAllObjects()}
      * @return See {@link GenericKeyedObjectPool#listAllObjects()}
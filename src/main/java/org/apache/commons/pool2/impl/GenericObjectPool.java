@@ -16,13 +16,15 @@
  */
 package org.apache.commons.pool2.impl;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -319,6 +321,8 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                 conf.getSoftMinEvictableIdleTimeMillis());
         setEvictionPolicyClassName(conf.getEvictionPolicyClassName());
         setEvictorShutdownTimeoutMillis(conf.getEvictorShutdownTimeoutMillis());
+        setMemoryPressureMaxIdle(conf.getMemoryPressureMaxIdle());
+        setMemoryPressureThreshold(conf.getMemoryPressureThreshold());
     }
 
     /**
@@ -331,14 +335,27 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
     public void setAbandonedConfig(final AbandonedConfig abandonedConfig) {
         if (abandonedConfig == null) {
             this.abandonedConfig = null;
+            this.abandonedWheel = null;
         } else {
-            this.abandonedConfig = new AbandonedConfig();
-            this.abandonedConfig.setLogAbandoned(abandonedConfig.getLogAbandoned());
-            this.abandonedConfig.setLogWriter(abandonedConfig.getLogWriter());
-            this.abandonedConfig.setRemoveAbandonedOnBorrow(abandonedConfig.getRemoveAbandonedOnBorrow());
-            this.abandonedConfig.setRemoveAbandonedOnMaintenance(abandonedConfig.getRemoveAbandonedOnMaintenance());
-            this.abandonedConfig.setRemoveAbandonedTimeout(abandonedConfig.getRemoveAbandonedTimeout());
-            this.abandonedConfig.setUseUsageTracking(abandonedConfig.getUseUsageTracking());
+            final AbandonedConfig ac = new AbandonedConfig();
+            ac.setLogAbandoned(abandonedConfig.getLogAbandoned());
+            ac.setLogWriter(abandonedConfig.getLogWriter());
+            ac.setRemoveAbandonedOnBorrow(abandonedConfig.getRemoveAbandonedOnBorrow());
+            ac.setRemoveAbandonedOnMaintenance(abandonedConfig.getRemoveAbandonedOnMaintenance());
+            ac.setRemoveAbandonedTimeout(abandonedConfig.getRemoveAbandonedTimeout());
+            ac.setUseUsageTracking(abandonedConfig.getUseUsageTracking());
+
+            // Publish the new wheel before scanning so objects borrowed
+            // meanwhile are scheduled by one or the other
+            final AbandonedTimingWheel<T> wheel = new AbandonedTimingWheel<T>(
+                    ac.getRemoveAbandonedTimeout() * 1000L);
+            this.abandonedWheel = wheel;
+            for (final PooledObject<T> p : allObjects.values()) {
+                if (p.getState() == PooledObjectState.ALLOCATED) {
+                    wheel.schedule(p);
+                }
+            }
+            this.abandonedConfig = ac;
         }
     }
 
@@ -424,7 +441,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         // method execution
         final boolean blockWhenExhausted = getBlockWhenExhausted();
 
-        boolean create;
+        boolean create = false;
         final long waitTime = System.currentTimeMillis();
 
         while (p == null) {
@@ -485,6 +502,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                         validationThrowable = t;
                     }
                     if (!validate) {
+                        fireValidationFailure(null);
                         try {
                             destroy(p);
                             destroyedByBorrowValidationCount.incrementAndGet();
@@ -503,7 +521,14 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             }
         }
 
-        updateStatsBorrow(p, System.currentTimeMillis() - waitTime);
+        final AbandonedTimingWheel<T> wheel = abandonedWheel;
+        if (wheel != null) {
+            wheel.schedule(p);
+        }
+
+        final long waitTimeMillis = System.currentTimeMillis() - waitTime;
+        updateStatsBorrow(p, waitTimeMillis);
+        fireBorrow(null, waitTimeMillis, create);
 
         return p.getObject();
     }
@@ -547,6 +572,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
 
         if (getTestOnReturn()) {
             if (!factory.validateObject(p)) {
+                fireValidationFailure(null);
                 try {
                     destroy(p);
                 } catch (final Exception e) {
@@ -558,6 +584,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                     swallowException(e);
                 }
                 updateStatsReturn(activeTime);
+                fireReturn(null, activeTime);
                 return;
             }
         }
@@ -577,6 +604,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                 swallowException(e);
             }
             updateStatsReturn(activeTime);
+            fireReturn(null, activeTime);
             return;
         }
 
@@ -585,7 +613,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
                     "Object has already been returned to this pool or is invalid");
         }
 
-        final int maxIdleSave = getMaxIdle();
+        final int maxIdleSave = limitIdle(getMaxIdle());
         if (isClosed() || maxIdleSave > -1 && maxIdleSave <= idleObjects.size()) {
             try {
                 destroy(p);
@@ -606,6 +634,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             }
         }
         updateStatsReturn(activeTime);
+        fireReturn(null, activeTime);
     }
 
     /**
@@ -699,6 +728,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             // Stop the evictor before the pool is closed since evict() calls
             // assertOpen()
             startEvictor(-1L);
+            MemoryPressureMonitor.deregister(this);
 
             closed = true;
             // This clear removes any idle objects
@@ -721,95 +751,111 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
     public void evict() throws Exception {
         assertOpen();
 
+        final long startTimeNanos = System.nanoTime();
         if (idleObjects.size() > 0) {
 
+            int examined = 0;
+            int evicted = 0;
             PooledObject<T> underTest = null;
             final EvictionPolicy<T> evictionPolicy = getEvictionPolicy();
 
             synchronized (evictionLock) {
-                final EvictionConfig evictionConfig = new EvictionConfig(
-                        getMinEvictableIdleTimeMillis(),
-                        getSoftMinEvictableIdleTimeMillis(),
-                        getMinIdle());
+                try {
+                    final EvictionConfig evictionConfig = new EvictionConfig(
+                            getMinEvictableIdleTimeMillis(),
+                            getSoftMinEvictableIdleTimeMillis(),
+                            getMinIdle());
 
-                final boolean testWhileIdle = getTestWhileIdle();
+                    final boolean testWhileIdle = getTestWhileIdle();
 
-                for (int i = 0, m = getNumTests(); i < m; i++) {
-                    if (evictionIterator == null || !evictionIterator.hasNext()) {
-                        evictionIterator = new EvictionIterator(idleObjects);
-                    }
-                    if (!evictionIterator.hasNext()) {
-                        // Pool exhausted, nothing to do here
-                        return;
-                    }
+                    for (int i = 0, m = getNumTests(); i < m; i++) {
+                        if (evictionIterator == null || !evictionIterator.hasNext()) {
+                            evictionIterator = new EvictionIterator(idleObjects);
+                        }
+                        if (!evictionIterator.hasNext()) {
+                            // Pool exhausted, nothing to do here
+                            return;
+                        }
 
-                    try {
-                        underTest = evictionIterator.next();
-                    } catch (final NoSuchElementException nsee) {
-                        // Object was borrowed in another thread
-                        // Don't count this as an eviction test so reduce i;
-                        i--;
-                        evictionIterator = null;
-                        continue;
-                    }
+                        try {
+                            underTest = evictionIterator.next();
+                        } catch (final NoSuchElementException nsee) {
+                            // Object was borrowed in another thread
+                            // Don't count this as an eviction test so reduce i;
+                            i--;
+                            evictionIterator = null;
+                            continue;
+                        }
 
-                    if (!underTest.startEvictionTest()) {
-                        // Object was borrowed in another thread
-                        // Don't count this as an eviction test so reduce i;
-                        i--;
-                        continue;
-                    }
+                        if (!underTest.startEvictionTest()) {
+                            // Object was borrowed in another thread
+                            // Don't count this as an eviction test so reduce i;
+                            i--;
+                            continue;
+                        }
+                        examined++;
 
-                    // User provided eviction policy could throw all sorts of
-                    // crazy exceptions. Protect against such an exception
-                    // killing the eviction thread.
-                    boolean evict;
-                    try {
-                        evict = evictionPolicy.evict(evictionConfig, underTest,
-                                idleObjects.size());
-                    } catch (final Throwable t) {
-                        // Slightly convoluted as SwallowedExceptionListener
-                        // uses Exception rather than Throwable
-                        PoolUtils.checkRethrow(t);
-                        swallowException(new Exception(t));
-                        // Don't evict on error conditions
-                        evict = false;
-                    }
+                        // User provided eviction policy could throw all sorts of
+                        // crazy exceptions. Protect against such an exception
+                        // killing the eviction thread.
+                        boolean evict;
+                        try {
+                            evict = evictionPolicy.evict(evictionConfig, underTest,
+                                    idleObjects.size());
+                        } catch (final Throwable t) {
+                            // Slightly convoluted as SwallowedExceptionListener
+                            // uses Exception rather than Throwable
+                            PoolUtils.checkRethrow(t);
+                            swallowException(new Exception(t));
+                            // Don't evict on error conditions
+                            evict = false;
+                        }
 
-                    if (evict) {
-                        destroy(underTest);
-                        destroyedByEvictorCount.incrementAndGet();
-                    } else {
-                        if (testWhileIdle) {
-                            boolean active = false;
-                            try {
-                                factory.activateObject(underTest);
-                                active = true;
-                            } catch (final Exception e) {
-                                destroy(underTest);
-                                destroyedByEvictorCount.incrementAndGet();
-                            }
-                            if (active) {
-                                if (!factory.validateObject(underTest)) {
+                        if (evict) {
+                            destroy(underTest);
+                            destroyedByEvictorCount.incrementAndGet();
+                            evicted++;
+                        } else {
+                            if (testWhileIdle) {
+                                boolean active = false;
+                                try {
+                                    factory.activateObject(underTest);
+                                    active = true;
+                                } catch (final Exception e) {
                                     destroy(underTest);
                                     destroyedByEvictorCount.incrementAndGet();
-                                } else {
-                                    try {
-                                        factory.passivateObject(underTest);
-                                    } catch (final Exception e) {
+                                    evicted++;
+                                }
+                                if (active) {
+                                    if (!factory.validateObject(underTest)) {
+                                        fireValidationFailure(null);
                                         destroy(underTest);
                                         destroyedByEvictorCount.incrementAndGet();
+                                        evicted++;
+                                    } else {
+                                        try {
+                                            factory.passivateObject(underTest);
+                                        } catch (final Exception e) {
+                                            destroy(underTest);
+                                            destroyedByEvictorCount.incrementAndGet();
+                                            evicted++;
+                                        }
                                     }
                                 }
                             }
-                        }
-                        if (!underTest.endEvictionTest(idleObjects)) {
-                            // TODO - May need to add code here once additional
-                            // states are used
+                            if (!underTest.endEvictionTest(idleObjects)) {
+                                // TODO - May need to add code here once additional
+                                // states are used
+                            }
                         }
                     }
+                } finally {
+                    fireEvictionRun(System.nanoTime() - startTimeNanos,
+                            examined, evicted);
                 }
             }
+        } else {
+            fireEvictionRun(System.nanoTime() - startTimeNanos, 0, 0);
         }
         final AbandonedConfig ac = this.abandonedConfig;
         if (ac != null && ac.getRemoveAbandonedOnMaintenance()) {
@@ -831,6 +877,57 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         ensureMinIdle();
     }
 
+    /**
+     * Starts creating the idle instances needed to reach {@link #getMinIdle()}
+     * in the background, using up to <code>parallelism</code> concurrent tasks
+     * on the given executor, rather than one at a time on the calling thread
+     * as {@link #preparePool()} does.
+     * <p>
+     * The returned future completes once <code>readyFraction</code> of the
+     * missing instances have been created, so that callers can start using the
+     * pool before it is fully warmed up; creation of the remaining instances
+     * continues in the background. It completes exceptionally with the first
+     * exception thrown by the factory, after which no further instances are
+     * created. Cancelling the future stops the creation of further instances.
+     * Progress is reported by {@link #getWarmUpTarget()} and
+     * {@link #getWarmUpCreatedCount()}.
+     * </p>
+     *
+     * @param executor      the executor that creates the instances
+     * @param parallelism   the maximum number of instances to create
+     *                      concurrently
+     * @param readyFraction the fraction, greater than 0 and at most 1, of the
+     *                      missing instances that must be created before the
+     *                      returned future completes
+     *
+     * @return a future that completes when the pool is ready
+     *
+     * @throws IllegalArgumentException if the executor is null, the
+     *         parallelism is not positive or the fraction is out of range
+     * @since 2.4.3
+     */
+    public Future<Void> preparePool(final ExecutorService executor,
+            final int parallelism, final double readyFraction) {
+        PoolWarmUp.validate(executor, parallelism, readyFraction);
+        assertOpen();
+        final int target = Math.max(0, Math.min(getMinIdle(),
+                limitIdle(Integer.MAX_VALUE)) - idleObjects.size());
+        final PoolWarmUp w = new PoolWarmUp(target,
+                PoolWarmUp.readyCount(target, readyFraction)) {
+            @Override
+            boolean createObject(final int index) throws Exception {
+                assertOpen();
+                final PooledObject<T> p = create();
+                if (p == null) {
+                    return false;
+                }
+                addIdleObject(p);
+                return true;
+            }
+        };
+        return startWarmUp(w, executor, parallelism);
+    }
+
     /**
      * Attempts to create a new wrapped pooled object.
      * <p>
@@ -886,6 +983,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         }
 
         final PooledObject<T> p;
+        final long startTimeNanos = System.nanoTime();
         try {
             p = factory.makeObject();
         } catch (Exception e) {
@@ -905,6 +1003,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
 
         createdCount.incrementAndGet();
         allObjects.put(new IdentityWrapper<T>(p.getObject()), p);
+        fireCreate(null, System.nanoTime() - startTimeNanos);
         return p;
     }
 
@@ -925,12 +1024,34 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         } finally {
             destroyedCount.incrementAndGet();
             createCount.decrementAndGet();
+            fireDestroy(null);
         }
     }
 
     @Override
     void ensureMinIdle() throws Exception {
-        ensureIdle(getMinIdle(), true);
+        ensureIdle(Math.min(getMinIdle(), limitIdle(Integer.MAX_VALUE)), true);
+    }
+
+    @Override
+    void shedIdle() throws Exception {
+        final int maxIdleSave = limitIdle(getMaxIdle());
+        if (maxIdleSave < 0) {
+            return;
+        }
+        while (idleObjects.size() > maxIdleSave) {
+            // Destroy the oldest idle objects first
+            final PooledObject<T> p = getLifo() ? idleObjects.pollLast() :
+                    idleObjects.pollFirst();
+            if (p == null) {
+                break;
+            }
+            try {
+                destroy(p);
+            } catch (final Exception e) {
+                swallowException(e);
+            }
+        }
     }
 
     /**
@@ -1027,26 +1148,20 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
     /**
      * Recover abandoned objects which have been checked out but
      * not used since longer than the removeAbandonedTimeout.
+     * <p>
+     * Borrowed objects are tracked in a timing wheel so only those objects
+     * whose deadline has passed since the last call are examined.
      *
      * @param ac The configuration to use to identify abandoned objects
      */
     private void removeAbandoned(final AbandonedConfig ac) {
-        // Generate a list of abandoned objects to remove
-        final long now = System.currentTimeMillis();
-        final long timeout =
-                now - (ac.getRemoveAbandonedTimeout() * 1000L);
-        final ArrayList<PooledObject<T>> remove = new ArrayList<PooledObject<T>>();
-        final Iterator<PooledObject<T>> it = allObjects.values().iterator();
-        while (it.hasNext()) {
-            final PooledObject<T> pooledObject = it.next();
-            synchronized (pooledObject) {
-                if (pooledObject.getState() == PooledObjectState.ALLOCATED &&
-                        pooledObject.getLastUsedTime() <= timeout) {
-                    pooledObject.markAbandoned();
-                    remove.add(pooledObject);
-                }
-            }
+        final AbandonedTimingWheel<T> wheel = abandonedWheel;
+        if (wheel == null) {
+            return;
         }
+        // Generate a list of abandoned objects to remove
+        final List<PooledObject<T>> remove =
+                wheel.expire(System.currentTimeMillis());
 
         // Now remove the abandoned objects
         final Iterator<PooledObject<T>> itr = remove.iterator();
@@ -1055,6 +1170,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
             if (ac.getLogAbandoned()) {
                 pooledObject.printStackTrace(ac.getLogWriter());
             }
+            fireAbandoned(null, pooledObject.getActiveTimeMillis());
             try {
                 invalidateObject(pooledObject.getObject());
             } catch (final Exception e) {
@@ -1175,6 +1291,7 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
 
     // Additional configuration properties for abandoned object tracking
     private volatile AbandonedConfig abandonedConfig = null;
+    private volatile AbandonedTimingWheel<T> abandonedWheel = null;
 
     @Override
     protected void toStringAppendFields(final StringBuilder builder) {
@@ -1195,6 +1312,8 @@ public class GenericObjectPool<T> extends BaseGenericObjectPool<T>
         builder.append(idleObjects);
         builder.append(", abandonedConfig=");
         builder.append(abandonedConfig);
+        builder.append(", abandonedWheel=");
+        builder.append(abandonedWheel);
     }
 
 }
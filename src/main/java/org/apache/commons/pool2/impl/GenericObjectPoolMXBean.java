@@ -213,6 +213,42 @@ public interface GenericObjectPoolMXBean {
      * @return See {@link GenericObjectPool#getFactoryType()}
      */
     public String getFactoryType();
+    /**
+     * See {@link GenericObjectPool#getMemoryPressureThreshold()}
+     * @return See {@link GenericObjectPool#getMemoryPressureThreshold()}
+     * @since 2.4.3
+     */
+    double getMemoryPressureThreshold();
+    /**
+     * See {@link GenericObjectPool#getMemoryPressureMaxIdle()}
+     * @return See {@link GenericObjectPool#getMemoryPressureMaxIdle()}
+     * @since 2.4.3
+     */
+    int getMemoryPressureMaxIdle();
+    /**
+     * See {@link GenericObjectPool#isUnderMemoryPressure()}
+     * @return See {@link GenericObjectPool#isUnderMemoryPressure()}
+     * @since 2.4.3
+     */
+    boolean isUnderMemoryPressure();
+    /**
+     * See {@link GenericObjectPool#getMemoryPressureCount()}
+     * @return See {@link GenericObjectPool#getMemoryPressureCount()}
+     * @since 2.4.3
+     */
+    long getMemoryPressureCount();
+    /**
+     * See {@link GenericObjectPool#getWarmUpTarget()}
+     * @return See {@link GenericObjectPool#getWarmUpTarget()}
+     * @since 2.4.3
+     */
+    int getWarmUpTarget();
+    /**
+     * See {@link GenericObjectPool#getWarmUpCreatedCount()}
+     * @return See {@link GenericObjectPool#getWarmUpCreatedCount()}
+     * @since 2.4.3
+     */
+    int getWarmUpCreatedCount();
     /**
      * See {@link GenericObjectPool#listAllObjects()}
      * @return See {@link GenericObjectPool#listAllObjects()}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import org.apache.commons.pool2.KeyedPooledObjectFactory;
+
+/**
+ * A {@link GenericKeyedObjectPool} keyed by <code>long</code> values.
+ * <p>
+ * In addition to the methods inherited from {@link GenericKeyedObjectPool},
+ * this pool provides methods that accept primitive keys. These map each key
+ * to a canonical {@link Long} instance via a lock free cache, so pools keyed
+ * by a large range of values do not box the key on every borrow and return.
+ * The canonical instances are also the keys held by the pool itself. Up to
+ * {@value org.apache.commons.pool2.impl.BoxedKeyCache#MAX_SIZE} distinct keys
+ * are cached.
+ *
+ * @see GenericKeyedObjectPool
+ *
+ * @param <T> Type of element pooled in this pool.
+ *
+ * @since 2.4.3
+ */
+public class LongKeyedObjectPool<T> extends GenericKeyedObjectPool<Long,T> {
+
+    private final BoxedKeyCache<Long> keys = new BoxedKeyCache<Long>() {
+        @Override
+        Long box(final long key) {
+            return Long.valueOf(key);
+        }
+    };
+
+    /**
+     * Create a new <code>LongKeyedObjectPool</code> using defaults from
+     * {@link GenericKeyedObjectPoolConfig}.
+     *
+     * @param factory the factory to be used to create entries
+     */
+    public LongKeyedObjectPool(final KeyedPooledObjectFactory<Long,T> factory) {
+        super(factory);
+    }
+
+    /**
+     * Create a new <code>LongKeyedObjectPool</code> using a specific
+     * configuration.
+     *
+     * @param factory the factory to be used to create entries
+     * @param config    The configuration to use for this pool instance. The
+     *                  configuration is used by value. Subsequent changes to
+     *                  the configuration object will not be reflected in the
+     *                  pool.
+     */
+    public LongKeyedObjectPool(final KeyedPooledObjectFactory<Long,T> factory,
+            final GenericKeyedObjectPoolConfig config) {
+        super(factory, config);
+    }
+
+    /**
+     * Obtain the canonical boxed instance of a key, as used by this pool.
+     *
+     * @param key the key
+     *
+     * @return the boxed key
+     */
+    public Long getKey(final long key) {
+        return keys.get(key);
+    }
+
+    /**
+     * Borrows an object for the given key.
+     *
+     * @param key pool key
+     *
+     * @return object instance from the keyed pool
+     *
+     * @throws Exception if a keyed object instance cannot be returned
+     *
+     * @see GenericKeyedObjectPool#borrowObject(Object)
+     */
+    public T borrowObject(final long key) throws Exception {
+        return borrowObject(keys.get(key));
+    }
+
+    /**
+     * Borrows an object for the given key using the specified waiting time.
+     *
+     * @param key pool key
+     * @param borrowMaxWaitMillis The time to wait in milliseconds for an object
+     *                            to become available
+     *
+     * @return object instance from the keyed pool
+     *
+     * @throws Exception if a keyed object instance cannot be returned
+     *
+     * @see GenericKeyedObjectPool#borrowObject(Object, long)
+     */
+    public T borrowObject(final long key, final long borrowMaxWaitMillis)
+            throws Exception {
+        return borrowObject(keys.get(key), borrowMaxWaitMillis);
+    }
+
+    /**
+     * Returns an object to the sub-pool for the given key.
+     *
+     * @param key pool key
+     * @param obj instance to return to the keyed pool
+     *
+     * @see GenericKeyedObjectPool#returnObject(Object, Object)
+     */
+    public void returnObject(final long key, final T obj) {
+        returnObject(keys.get(key), obj);
+    }
+
+    /**
+     * Invalidates an object from the sub-pool for the given key.
+     *
+     * @param key pool key
+     * @param obj instance to invalidate
+     *
+     * @throws Exception if an exception occurs destroying the object
+     *
+     * @see GenericKeyedObjectPool#invalidateObject(Object, Object)
+     */
+    public void invalidateObject(final long key, final T obj) throws Exception {
+        invalidateObject(keys.get(key), obj);
+    }
+
+    /**
+     * Creates an object for the given key and places it in the idle sub-pool.
+     *
+     * @param key the key a new instance should be added to
+     *
+     * @throws Exception when the factory has a problem creating or
+     *                   passivating an object
+     *
+     * @see GenericKeyedObjectPool#addObject(Object)
+     */
+    public void addObject(final long key) throws Exception {
+        addObject(keys.get(key));
+    }
+
+    /**
+     * Clears the idle objects of the sub-pool for the given key.
+     *
+     * @param key the key to clear
+     *
+     * @see GenericKeyedObjectPool#clear(Object)
+     */
+    public void clear(final long key) {
+        clear(keys.get(key));
+    }
+
+    /**
+     * Returns the number of idle objects for the given key.
+     *
+     * @param key the key to query
+     *
+     * @return the number of idle objects for the key
+     *
+     * @see GenericKeyedObjectPool#getNumIdle(Object)
+     */
+    public int getNumIdle(final long key) {
+        return getNumIdle(keys.get(key));
+    }
+
+    /**
+     * Returns the number of active objects for the given key.
+     *
+     * @param key the key to query
+     *
+     * @return the number of active objects for the key
+     *
+     * @see GenericKeyedObjectPool#getNumActive(Object)
+     */
+    public int getNumActive(final long key) {
+        return getNumActive(keys.get(key));
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * Provides shared detection of heap memory pressure for all pools. Where the
+ * JVM's garbage collector beans send a notification after each garbage
+ * collection, the monitor reads the usage of the tenured heap memory pools
+ * after the collection and tells each registered pool whether its
+ * {@link BaseGenericObjectPool#getMemoryPressureThreshold() memory pressure
+ * threshold} has been reached. The pools only record this; their evictors
+ * shed the idle objects. The usage thresholds of the memory pools are never
+ * changed, so other users of those thresholds are not affected.
+ * <p>
+ * This class has package scope to prevent its inclusion in the pool public API.
+ * The class declaration below should *not* be changed to public.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @since 2.4.3
+ */
+class MemoryPressureMonitor {
+
+    /**
+     * Type of the notification sent by the garbage collector beans of JVMs
+     * that support it after each garbage collection.
+     */
+    private static final String GC_NOTIFICATION =
+            "com.sun.management.gc.notification";
+
+    /** Pools being monitored */
+    private static final List<BaseGenericObjectPool<?>> pools =
+            new ArrayList<BaseGenericObjectPool<?>>(); //@GuardedBy("MemoryPressureMonitor.class")
+
+    /** Garbage collector beans the listener has been added to */
+    private static final List<NotificationEmitter> emitters =
+            new ArrayList<NotificationEmitter>(); //@GuardedBy("MemoryPressureMonitor.class")
+
+    /** Listener for garbage collection notifications, null when not installed */
+    private static NotificationListener listener; //@GuardedBy("MemoryPressureMonitor.class")
+
+    /** Tenured heap memory pools, lazily initialised */
+    private static volatile List<MemoryPoolMXBean> tenuredPools;
+
+    /** Prevent instantiation */
+    private MemoryPressureMonitor() {
+        // Hide the default constructor
+    }
+
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("MemoryPressureMonitor []");
+        return builder.toString();
+    }
+
+
+    /**
+     * Add the specified pool to the pools being monitored. Pools that are
+     * registered *must* call {@link #deregister(BaseGenericObjectPool)} to
+     * prevent memory leaks in application server environments.
+     *
+     * @param pool  The pool to monitor
+     */
+    static synchronized void register(final BaseGenericObjectPool<?> pool) {
+        if (!pools.contains(pool)) {
+            pools.add(pool);
+        }
+        if (listener == null) {
+            install();
+        }
+    }
+
+    /**
+     * Remove the specified pool from the pools being monitored. If no pools
+     * remain the monitor stops listening for notifications.
+     *
+     * @param pool  The pool to stop monitoring
+     */
+    static synchronized void deregister(final BaseGenericObjectPool<?> pool) {
+        if (pools.remove(pool) && pools.isEmpty()) {
+            uninstall();
+        }
+    }
+
+    /**
+     * Returns the fraction of the maximum size of the fullest tenured heap
+     * memory pool that was in use after the most recent garbage collection.
+     *
+     * @return the heap usage after garbage collection between 0 and 1, or 0
+     *         if it cannot be determined
+     */
+    static double getUsage() {
+        double usage = 0;
+        for (final MemoryPoolMXBean bean : getTenuredPools()) {
+            final MemoryUsage collectionUsage = bean.getCollectionUsage();
+            if (collectionUsage != null) {
+                long max = collectionUsage.getMax();
+                if (max <= 0) {
+                    max = bean.getUsage().getMax();
+                }
+                if (max > 0) {
+                    usage = Math.max(usage,
+                            (double) collectionUsage.getUsed() / max);
+                }
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Tell each monitored pool whether it is under memory pressure after a
+     * garbage collection.
+     */
+    private static void updatePools() {
+        final List<BaseGenericObjectPool<?>> toUpdate;
+        synchronized (MemoryPressureMonitor.class) {
+            toUpdate = new ArrayList<BaseGenericObjectPool<?>>(pools);
+        }
+        final double usage = getUsage();
+        for (final BaseGenericObjectPool<?> pool : toUpdate) {
+            pool.updateMemoryPressure(usage);
+        }
+    }
+
+    /**
+     * Start listening for the notifications of the garbage collector beans
+     * that send them. Without such beans pools rely on their evictors to
+     * notice memory pressure.
+     */
+    private static void install() {
+        listener = new Listener();
+        for (final GarbageCollectorMXBean bean :
+                ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter) {
+                final NotificationEmitter emitter = (NotificationEmitter) bean;
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Stop listening for notifications.
+     */
+    private static void uninstall() {
+        for (final NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (final ListenerNotFoundException e) {
+                // Already removed
+            }
+        }
+        emitters.clear();
+        listener = null;
+    }
+
+    /**
+     * Identify the tenured heap memory pools. These are the only heap pools
+     * that support collection usage thresholds, since the usage of the young
+     * generation pools fluctuates too much for memory pressure to be judged
+     * from it.
+     *
+     * @return the tenured heap memory pools
+     */
+    private static List<MemoryPoolMXBean> getTenuredPools() {
+        List<MemoryPoolMXBean> result = tenuredPools;
+        if (result == null) {
+            result = new ArrayList<MemoryPoolMXBean>();
+            for (final MemoryPoolMXBean bean :
+                    ManagementFactory.getMemoryPoolMXBeans()) {
+                if (bean.getType() == MemoryType.HEAP &&
+                        bean.isUsageThresholdSupported() &&
+                        bean.isCollectionUsageThresholdSupported()) {
+                    result.add(bean);
+                }
+            }
+            tenuredPools = result;
+        }
+        return result;
+    }
+
+    /**
+     * Listener for the notifications sent after each garbage collection.
+     */
+    private static class Listener implements NotificationListener {
+
+        @Override
+        public void handleNotification(final Notification notification,
+                final Object handback) {
+            if (GC_NOTIFICATION.equals(notification.getType())) {
+                updatePools();
+            }
+        }
+    }
+}
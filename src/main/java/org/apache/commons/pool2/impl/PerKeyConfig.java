@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import org.apache.commons.pool2.BaseObject;
+
+/**
+ * The limits that apply to a single key of a {@link GenericKeyedObjectPool},
+ * overriding the pool wide {@code maxTotalPerKey}, {@code maxIdlePerKey} and
+ * {@code minIdlePerKey} settings for that key. Instances are provided by a
+ * {@link PerKeyConfigResolver}.
+ * <p>
+ * This class is immutable and thread-safe.
+ *
+ * @see GenericKeyedObjectPool#setPerKeyConfigResolver(PerKeyConfigResolver)
+ *
+ * @since 2.4.3
+ */
+public class PerKeyConfig extends BaseObject {
+
+    /**
+     * The default value for the {@code weight} attribute.
+     */
+    public static final int DEFAULT_WEIGHT = 1;
+
+    /**
+     * The default value for the {@code guaranteedTotal} attribute.
+     */
+    public static final int DEFAULT_GUARANTEED_TOTAL = 0;
+
+    private final int maxTotal;
+    private final int maxIdle;
+    private final int minIdle;
+    private final int weight;
+    private final int guaranteedTotal;
+
+    /**
+     * Create a new per key configuration with the specified limits. The
+     * values have the same meaning as the equivalent pool wide per key
+     * settings.
+     *
+     * @param maxTotal The limit on the number of instances allocated for the
+     *                 key or a negative value for no limit. See
+     *                 {@link GenericKeyedObjectPool#getMaxTotalPerKey()}
+     * @param maxIdle  The cap on the number of idle instances for the key or a
+     *                 negative value for no limit. See
+     *                 {@link GenericKeyedObjectPool#getMaxIdlePerKey()}
+     * @param minIdle  The target for the minimum number of idle instances for
+     *                 the key. See
+     *                 {@link GenericKeyedObjectPool#getMinIdlePerKey()}
+     */
+    public PerKeyConfig(final int maxTotal, final int maxIdle, final int minIdle) {
+        this(maxTotal, maxIdle, minIdle, DEFAULT_WEIGHT, DEFAULT_GUARANTEED_TOTAL);
+    }
+
+    /**
+     * Create a new per key configuration with the specified limits and fair
+     * sharing attributes. The fair sharing attributes are only used if
+     * {@link GenericKeyedObjectPool#getWeightedFairSharing()} is
+     * <code>true</code>.
+     *
+     * @param maxTotal        The limit on the number of instances allocated
+     *                        for the key or a negative value for no limit. See
+     *                        {@link GenericKeyedObjectPool#getMaxTotalPerKey()}
+     * @param maxIdle         The cap on the number of idle instances for the
+     *                        key or a negative value for no limit. See
+     *                        {@link GenericKeyedObjectPool#getMaxIdlePerKey()}
+     * @param minIdle         The target for the minimum number of idle
+     *                        instances for the key. See
+     *                        {@link GenericKeyedObjectPool#getMinIdlePerKey()}
+     * @param weight          The relative share of the pool's
+     *                        {@code maxTotal} capacity for the key. Must be
+     *                        positive.
+     * @param guaranteedTotal The number of instances the key is always
+     *                        entitled to when the pool is at {@code maxTotal},
+     *                        regardless of weight
+     *
+     * @throws IllegalArgumentException if weight is not positive
+     */
+    public PerKeyConfig(final int maxTotal, final int maxIdle, final int minIdle,
+            final int weight, final int guaranteedTotal) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        this.maxTotal = maxTotal;
+        this.maxIdle = maxIdle;
+        this.minIdle = minIdle;
+        this.weight = weight;
+        this.guaranteedTotal = guaranteedTotal;
+    }
+
+    /**
+     * Obtain the limit on the number of instances allocated for the key.
+     *
+     * @return The {@code maxTotal} for the key, negative for no limit
+     */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * Obtain the cap on the number of idle instances for the key.
+     *
+     * @return The {@code maxIdle} for the key, negative for no limit
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Obtain the target for the minimum number of idle instances for the key.
+     * As with the pool wide setting, if this value is greater than
+     * {@link #getMaxIdle()} then {@link #getMaxIdle()} is used instead.
+     *
+     * @return The {@code minIdle} for the key
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Obtain the relative share of the pool's {@code maxTotal} capacity for
+     * the key when the pool is configured for weighted fair sharing.
+     *
+     * @return The {@code weight} for the key
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Obtain the number of instances the key is always entitled to when the
+     * pool is at {@code maxTotal} and is configured for weighted fair sharing.
+     * Idle instances for the key are not destroyed to make room for other
+     * keys while the key has this many instances or fewer.
+     *
+     * @return The {@code guaranteedTotal} for the key
+     */
+    public int getGuaranteedTotal() {
+        return guaranteedTotal;
+    }
+
+    @Override
+    protected void toStringAppendFields(final StringBuilder builder) {
+        builder.append("maxTotal=");
+        builder.append(maxTotal);
+        builder.append(", maxIdle=");
+        builder.append(maxIdle);
+        builder.append(", minIdle=");
+        builder.append(minIdle);
+        builder.append(", weight=");
+        builder.append(weight);
+        builder.append(", guaranteedTotal=");
+        builder.append(guaranteedTotal);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+/**
+ * Provides the per key limits for the keys of a
+ * {@link GenericKeyedObjectPool}. The resolver is called when the pool first
+ * creates the sub-pool for a key and the result is retained with the sub-pool
+ * so it is not called on every borrow or return.
+ * <p>
+ * Implementations should be fast and must not call back into the pool.
+ *
+ * @param <K> The type of keys maintained by the pool
+ *
+ * @see GenericKeyedObjectPool#setPerKeyConfigResolver(PerKeyConfigResolver)
+ *
+ * @since 2.4.3
+ */
+public interface PerKeyConfigResolver<K> {
+
+    /**
+     * Obtain the limits to apply to the given key.
+     *
+     * @param key The key for which limits are required
+     *
+     * @return The limits for the key or <code>null</code> if the pool wide
+     *         per key settings should be used
+     */
+    PerKeyConfig resolve(K key);
+}
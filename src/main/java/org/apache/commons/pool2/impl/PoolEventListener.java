@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import javax.management.ObjectName;
+
+/**
+ * Receives a notification for each significant operation performed by a
+ * {@link GenericObjectPool} or {@link GenericKeyedObjectPool}, so that pool
+ * stalls can be diagnosed after the fact from individual events rather than
+ * from the averages exposed via JMX.
+ * <p>
+ * Every method is passed the JMX name of the pool (<code>null</code> if JMX
+ * is disabled) and, for keyed pools, the key of the sub-pool concerned. The
+ * key is always <code>null</code> for non-keyed pools.
+ * <p>
+ * Listeners are called synchronously on the thread performing the operation
+ * so implementations should be fast and must not call back into the pool.
+ * Implementations are expected to record the event (for example by
+ * committing a Java Flight Recorder event on a JDK that supports it) and
+ * return. Exceptions thrown by a listener are swallowed and passed to the
+ * pool's {@link org.apache.commons.pool2.SwallowedExceptionListener}.
+ * <p>
+ * When no listener is configured the pools do no extra work beyond a single
+ * volatile read per operation.
+ *
+ * @see BasePoolEventListener
+ * @since 2.4.3
+ */
+public interface PoolEventListener {
+
+    /**
+     * Called after an object has been borrowed from the pool.
+     *
+     * @param pool           the JMX name of the pool
+     * @param key            the key the object was borrowed under
+     * @param waitTimeMillis the time the borrowing thread spent in the pool
+     * @param created        <code>true</code> if a new object had to be
+     *                       created to satisfy the borrow
+     */
+    void onBorrow(ObjectName pool, Object key, long waitTimeMillis, boolean created);
+
+    /**
+     * Called after an object has been returned to the pool.
+     *
+     * @param pool             the JMX name of the pool
+     * @param key              the key the object was returned under
+     * @param activeTimeMillis the time the object was checked out for
+     */
+    void onReturn(ObjectName pool, Object key, long activeTimeMillis);
+
+    /**
+     * Called after the factory has created a new object for the pool.
+     *
+     * @param pool            the JMX name of the pool
+     * @param key             the key the object was created for
+     * @param createTimeNanos the time the factory took to create the object
+     */
+    void onCreate(ObjectName pool, Object key, long createTimeNanos);
+
+    /**
+     * Called after an object has been destroyed, for whatever reason.
+     *
+     * @param pool the JMX name of the pool
+     * @param key  the key the object belonged to
+     */
+    void onDestroy(ObjectName pool, Object key);
+
+    /**
+     * Called when an object fails validation on borrow, on return or while
+     * being tested by the evictor. The object is destroyed afterwards.
+     *
+     * @param pool the JMX name of the pool
+     * @param key  the key the object belongs to
+     */
+    void onValidationFailure(ObjectName pool, Object key);
+
+    /**
+     * Called at the end of each eviction run.
+     *
+     * @param pool         the JMX name of the pool
+     * @param runTimeNanos the time the eviction run took
+     * @param examined     the number of idle objects examined
+     * @param evicted      the number of idle objects destroyed
+     */
+    void onEvictionRun(ObjectName pool, long runTimeNanos, int examined, int evicted);
+
+    /**
+     * Called when a borrowed object is found to be abandoned, before it is
+     * removed from the pool.
+     *
+     * @param pool             the JMX name of the pool
+     * @param key              the key the object was borrowed under
+     * @param activeTimeMillis the time the object has been checked out for
+     */
+    void onAbandoned(ObjectName pool, Object key, long activeTimeMillis);
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates a fixed number of idle objects for a pool using a bounded number of
+ * concurrent tasks on an executor. The warm-up is also the {@link Future}
+ * handed to the caller; it completes as soon as a given number of the objects
+ * have been created, while creation of the remaining objects continues in the
+ * background.
+ * <p>
+ * The warm-up completes exceptionally with the first exception thrown while
+ * creating an object, after which no further objects are created. If every
+ * object has been attempted without reaching the ready count, for example
+ * because the pool reached its capacity, the warm-up completes normally.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @since 2.4.3
+ */
+abstract class PoolWarmUp implements Future<Void> {
+
+    private final int target;
+    private final int readyCount;
+    private final AtomicInteger claimed = new AtomicInteger(0);
+    private final AtomicInteger created = new AtomicInteger(0);
+    private final AtomicInteger activeWorkers = new AtomicInteger(0);
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean stopped = false;
+    private volatile boolean cancelled = false;
+    private volatile Exception failure = null;
+
+    /**
+     * Create a new warm-up.
+     *
+     * @param target     The number of objects to create
+     * @param readyCount The number of objects that must be created before the
+     *                   warm-up completes
+     */
+    PoolWarmUp(final int target, final int readyCount) {
+        this.target = target;
+        this.readyCount = Math.min(readyCount, target);
+        if (this.readyCount < 1) {
+            complete(null, false);
+        }
+    }
+
+    /**
+     * Compute the number of objects that must be created for a fraction of
+     * the target to be reached.
+     *
+     * @param target        The number of objects to create
+     * @param readyFraction The fraction of the target that must be created
+     *
+     * @return The ready count
+     */
+    static int readyCount(final int target, final double readyFraction) {
+        return (int) Math.ceil(target * readyFraction);
+    }
+
+    /**
+     * Check the arguments common to the warm-up methods of the pools.
+     *
+     * @param executor      The executor that will create the objects
+     * @param parallelism   The maximum number of objects to create concurrently
+     * @param readyFraction The fraction of the objects that must be created
+     *                      before the warm-up completes
+     *
+     * @throws IllegalArgumentException if any of the arguments is invalid
+     */
+    static void validate(final ExecutorService executor, final int parallelism,
+            final double readyFraction) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null.");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive.");
+        }
+        if (!(readyFraction > 0 && readyFraction <= 1)) {
+            throw new IllegalArgumentException(
+                    "readyFraction must be greater than 0 and at most 1.");
+        }
+    }
+
+    /**
+     * Create an object and add it to the idle objects of the pool.
+     *
+     * @param index The number of the object being created, from zero up to
+     *              the target
+     *
+     * @return <code>true</code> if an object was added, <code>false</code> if
+     *         the pool had no capacity for it
+     *
+     * @throws Exception if the object could not be created
+     */
+    abstract boolean createObject(int index) throws Exception;
+
+    /**
+     * Submit up to <code>parallelism</code> tasks to the executor, each of
+     * which creates objects until the target has been attempted.
+     *
+     * @param executor    The executor to run the tasks
+     * @param parallelism The maximum number of tasks
+     *
+     * @return this warm-up
+     */
+    PoolWarmUp start(final ExecutorService executor, final int parallelism) {
+        final int workers = Math.min(parallelism, target);
+        activeWorkers.set(workers);
+        for (int i = 0; i < workers; i++) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        work();
+                    }
+                });
+            } catch (final RejectedExecutionException ree) {
+                if (i == 0) {
+                    failure = ree;
+                    stopped = true;
+                }
+                // The workers already started create the remaining objects
+                for (int j = i; j < workers; j++) {
+                    workerDone();
+                }
+                break;
+            }
+        }
+        return this;
+    }
+
+    private void work() {
+        try {
+            int index;
+            while (!stopped && (index = claimed.getAndIncrement()) < target) {
+                if (createObject(index) &&
+                        created.incrementAndGet() >= readyCount) {
+                    complete(null, false);
+                }
+            }
+        } catch (final Exception e) {
+            stopped = true;
+            complete(e, false);
+        } finally {
+            workerDone();
+        }
+    }
+
+    private void workerDone() {
+        if (activeWorkers.decrementAndGet() == 0) {
+            complete(failure, false);
+        }
+    }
+
+    private boolean complete(final Exception e, final boolean cancel) {
+        if (!completed.compareAndSet(false, true)) {
+            return false;
+        }
+        failure = e;
+        cancelled = cancel;
+        done.countDown();
+        return true;
+    }
+
+    /**
+     * Get the number of objects this warm-up is creating.
+     *
+     * @return the target number of objects
+     */
+    int getTarget() {
+        return target;
+    }
+
+    /**
+     * Get the number of objects created so far.
+     *
+     * @return the number of objects created
+     */
+    int getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * Stops creating objects. Objects that are being created when this method
+     * is called are still added to the pool.
+     *
+     * @param mayInterruptIfRunning ignored, object creation is never
+     *                              interrupted
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        stopped = true;
+        return complete(null, true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public Void get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    @Override
+    public Void get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private Void result() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        final Exception e = failure;
+        if (e != null) {
+            throw new ExecutionException(e);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("PoolWarmUp [target=");
+        builder.append(target);
+        builder.append(", readyCount=");
+        builder.append(readyCount);
+        builder.append(", created=");
+        builder.append(created.get());
+        builder.append(", done=");
+        builder.append(isDone());
+        builder.append("]");
+        return builder.toString();
+    }
+}
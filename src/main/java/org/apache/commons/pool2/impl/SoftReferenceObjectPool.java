@@ -19,19 +19,26 @@ package org.apache.commons.pool2.impl;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.pool2.BaseObjectPool;
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.PoolUtils;
 import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.PooledObjectState;
 
 /**
  * A {@link java.lang.ref.SoftReference SoftReference} based {@link ObjectPool}.
  * <p>
- * This class is intended to be thread-safe.
+ * This class is intended to be thread-safe. The pool does not hold a pool
+ * wide lock while calling the factory so slow factory methods in one thread
+ * do not block other threads borrowing or returning objects.
  *
  * @param <T>
  *            Type of element pooled in this pool.
@@ -53,22 +60,58 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
     private final ReferenceQueue<T> refQueue = new ReferenceQueue<T>();
 
     /** Count of instances that have been checkout out to pool clients */
-    private int numActive = 0; // @GuardedBy("this")
+    private final AtomicInteger numActive = new AtomicInteger(0);
 
     /** Total number of instances that have been destroyed */
-    private long destroyCount = 0; // @GuardedBy("this")
+    private final AtomicLong destroyCount = new AtomicLong(0);
 
 
     /** Total number of instances that have been created */
-    private long createCount = 0; // @GuardedBy("this")
+    private final AtomicLong createCount = new AtomicLong(0);
 
     /** Idle references - waiting to be borrowed */
     private final LinkedBlockingDeque<PooledSoftReference<T>> idleReferences =
         new LinkedBlockingDeque<PooledSoftReference<T>>();
 
-    /** All references - checked out or waiting to be borrowed. */
-    private final ArrayList<PooledSoftReference<T>> allReferences =
-        new ArrayList<PooledSoftReference<T>>();
+    /**
+     * All references - checked out or waiting to be borrowed - mapped to the
+     * key used to find them in {@link #referencesByObject}.
+     */
+    private final Map<PooledSoftReference<T>, ReferentKey> allReferences =
+        new ConcurrentHashMap<PooledSoftReference<T>, ReferentKey>();
+
+    /** All references indexed by the identity of the object they refer to. */
+    private final Map<ReferentKey, PooledSoftReference<T>> referencesByObject =
+        new ConcurrentHashMap<ReferentKey, PooledSoftReference<T>>();
+
+    /**
+     * Number of references in {@link #idleReferences} that have been cleared
+     * by the garbage collector but not yet removed from the queue.
+     */
+    private final AtomicInteger numClearedIdle = new AtomicInteger(0);
+
+    /**
+     * Maximum number of cleared references processed by a call to
+     * {@link #getNumIdle()}. Negative for no limit.
+     */
+    private volatile int maxInlinePrune = -1;
+
+    /** Time between runs of the background pruner. Not positive for none. */
+    private volatile long pruningPeriodMillis = -1;
+
+    /** Background task pruning cleared references */
+    private Pruner pruner = null; // @GuardedBy("prunerLock")
+
+    private final Object prunerLock = new Object();
+
+    /** Total number of cleared references that have been pruned */
+    private final AtomicLong clearedCount = new AtomicLong(0);
+
+    /** Duration of the most recent prune that found cleared references */
+    private volatile long lastPruneNanos = 0;
+
+    /** Longest duration of a prune that found cleared references */
+    private final AtomicLong maxPruneNanos = new AtomicLong(0);
 
     /**
      * Create a <code>SoftReferenceObjectPool</code> with the specified factory.
@@ -115,29 +158,42 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
      */
     @SuppressWarnings("null") // ref can not be null
     @Override
-    public synchronized T borrowObject() throws Exception {
+    public T borrowObject() throws Exception {
         assertOpen();
         T obj = null;
         boolean newlyCreated = false;
         PooledSoftReference<T> ref = null;
         while (null == obj) {
-            if (idleReferences.isEmpty()) {
+            ref = idleReferences.pollFirst();
+            if (ref == null) {
                 if (null == factory) {
                     throw new NoSuchElementException();
                 }
                 newlyCreated = true;
                 obj = factory.makeObject().getObject();
-                createCount++;
+                createCount.incrementAndGet();
                 // Do not register with the queue
                 ref = new PooledSoftReference<T>(new SoftReference<T>(obj));
-                allReferences.add(ref);
+                track(ref, obj);
             } else {
-                ref = idleReferences.pollFirst();
                 obj = ref.getObject();
                 // Clear the reference so it will not be queued, but replace with a
                 // a new, non-registered reference so we can still track this object
                 // in allReferences
                 ref.getReference().clear();
+                if (obj == null) {
+                    // Garbage collected while idle
+                    synchronized (ref) {
+                        if (ref.getState() == PooledObjectState.INVALID) {
+                            // Already counted when the reference was dequeued
+                            numClearedIdle.decrementAndGet();
+                        } else {
+                            ref.invalidate();
+                        }
+                    }
+                    untrack(ref);
+                    continue;
+                }
                 ref.setReference(new SoftReference<T>(obj));
             }
             if (null != factory && null != obj) {
@@ -164,7 +220,7 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
                 }
             }
         }
-        numActive++;
+        numActive.incrementAndGet();
         ref.allocate();
         return obj;
     }
@@ -189,13 +245,20 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
      *            instance to return to the pool
      */
     @Override
-    public synchronized void returnObject(final T obj) throws Exception {
+    public void returnObject(final T obj) throws Exception {
         boolean success = !isClosed();
         final PooledSoftReference<T> ref = findReference(obj);
         if (ref == null) {
             throw new IllegalStateException(
                 "Returned object not currently part of this pool");
         }
+        synchronized (ref) {
+            if (ref.getState() != PooledObjectState.ALLOCATED) {
+                throw new IllegalStateException(
+                        "Object has already been returned to this pool or is invalid");
+            }
+            ref.markReturning(); // Keep from being marked abandoned
+        }
         if (factory != null) {
             if (!factory.validateObject(ref)) {
                 success = false;
@@ -209,14 +272,15 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
         }
 
         final boolean shouldDestroy = !success;
-        numActive--;
+        numActive.decrementAndGet();
         if (success) {
 
-            // Deallocate and add to the idle instance pool
+            // Deallocate and add to the idle instance pool, registering with
+            // the queue so the reference is pruned if it is cleared while idle
             ref.deallocate();
+            ref.setReference(new OwnedSoftReference<T>(obj, refQueue, ref));
             idleReferences.add(ref);
         }
-        notifyAll(); // numActive has changed
 
         if (shouldDestroy && factory != null) {
             try {
@@ -231,7 +295,7 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void invalidateObject(final T obj) throws Exception {
+    public void invalidateObject(final T obj) throws Exception {
         final PooledSoftReference<T> ref = findReference(obj);
         if (ref == null) {
             throw new IllegalStateException(
@@ -240,8 +304,7 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
         if (factory != null) {
             destroy(ref);
         }
-        numActive--;
-        notifyAll(); // numActive has changed
+        numActive.decrementAndGet();
     }
 
     /**
@@ -267,18 +330,19 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
      *             or passivating an object.
      */
     @Override
-    public synchronized void addObject() throws Exception {
+    public void addObject() throws Exception {
         assertOpen();
         if (factory == null) {
             throw new IllegalStateException(
                     "Cannot add objects without a factory.");
         }
         final T obj = factory.makeObject().getObject();
-        createCount++;
+        createCount.incrementAndGet();
         // Create and register with the queue
         final PooledSoftReference<T> ref = new PooledSoftReference<T>(
-                new SoftReference<T>(obj, refQueue));
-        allReferences.add(ref);
+                new SoftReference<T>(obj));
+        ref.setReference(new OwnedSoftReference<T>(obj, refQueue, ref));
+        track(ref, obj);
 
         boolean success = true;
         if (!factory.validateObject(ref)) {
@@ -290,7 +354,6 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
         final boolean shouldDestroy = !success;
         if (success) {
             idleReferences.add(ref);
-            notifyAll(); // numActive has changed
         }
 
         if (shouldDestroy) {
@@ -309,9 +372,9 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
      * @return estimated number of idle instances in the pool
      */
     @Override
-    public synchronized int getNumIdle() {
-        pruneClearedReferences();
-        return idleReferences.size();
+    public int getNumIdle() {
+        pruneClearedReferences(maxInlinePrune);
+        return Math.max(0, idleReferences.size() - numClearedIdle.get());
     }
 
     /**
@@ -320,20 +383,25 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
      * @return the number of instances currently borrowed from this pool
      */
     @Override
-    public synchronized int getNumActive() {
-        return numActive;
+    public int getNumActive() {
+        return numActive.get();
     }
 
     /**
      * Clears any objects sitting idle in the pool.
      */
     @Override
-    public synchronized void clear() {
-        if (null != factory) {
-            final Iterator<PooledSoftReference<T>> iter = idleReferences.iterator();
-            while (iter.hasNext()) {
+    public void clear() {
+        PooledSoftReference<T> ref = idleReferences.pollFirst();
+        while (ref != null) {
+            synchronized (ref) {
+                if (ref.getState() == PooledObjectState.INVALID) {
+                    numClearedIdle.decrementAndGet();
+                }
+            }
+            untrack(ref);
+            if (null != factory) {
                 try {
-                    final PooledSoftReference<T> ref = iter.next();
                     if (null != ref.getObject()) {
                         factory.destroyObject(ref);
                     }
@@ -341,9 +409,9 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
                     // ignore error, keep destroying the rest
                 }
             }
+            ref = idleReferences.pollFirst();
         }
-        idleReferences.clear();
-        pruneClearedReferences();
+        pruneClearedReferences(-1);
     }
 
     /**
@@ -357,28 +425,182 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
     @Override
     public void close() {
         super.close();
+        setPruningPeriodMillis(-1);
         clear();
     }
 
+    /**
+     * Returns the maximum number of cleared references processed by each call
+     * to {@link #getNumIdle()}.
+     *
+     * @return the maximum number of cleared references pruned inline, negative
+     *         if there is no limit
+     *
+     * @see #setMaxInlinePrune
+     *
+     * @since 2.4.3
+     */
+    public int getMaxInlinePrune() {
+        return maxInlinePrune;
+    }
+
+    /**
+     * Sets the maximum number of cleared references processed by each call
+     * to {@link #getNumIdle()}. After a garbage collection clears many idle
+     * references, a limit stops the next caller from paying for the whole
+     * cleanup. It is normally combined with a
+     * {@link #setPruningPeriodMillis(long) background pruner}. Any references
+     * that remain are still skipped when borrowing, but
+     * {@link #getNumIdle()} may over-report until they have been processed.
+     *
+     * @param maxInlinePrune the maximum number of cleared references pruned
+     *                       inline, negative for no limit
+     *
+     * @see #getMaxInlinePrune
+     *
+     * @since 2.4.3
+     */
+    public void setMaxInlinePrune(final int maxInlinePrune) {
+        this.maxInlinePrune = maxInlinePrune;
+    }
+
+    /**
+     * Returns the time between runs of the background task that prunes
+     * references cleared by the garbage collector.
+     *
+     * @return the pruning period in milliseconds, zero or negative if there is
+     *         no background pruning
+     *
+     * @see #setPruningPeriodMillis
+     *
+     * @since 2.4.3
+     */
+    public long getPruningPeriodMillis() {
+        return pruningPeriodMillis;
+    }
+
+    /**
+     * Sets the time between runs of the background task that prunes
+     * references cleared by the garbage collector. The task runs on the same
+     * shared timer thread as the idle object evictors of the generic pools
+     * and is stopped when the pool is closed.
+     *
+     * @param pruningPeriodMillis the pruning period in milliseconds, zero or
+     *                            negative for no background pruning
+     *
+     * @see #getPruningPeriodMillis
+     *
+     * @since 2.4.3
+     */
+    public void setPruningPeriodMillis(final long pruningPeriodMillis) {
+        synchronized (prunerLock) {
+            if (pruner != null) {
+                EvictionTimer.cancel(pruner,
+                        BaseObjectPoolConfig.DEFAULT_EVICTOR_SHUTDOWN_TIMEOUT_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                pruner = null;
+            }
+            this.pruningPeriodMillis = pruningPeriodMillis;
+            if (pruningPeriodMillis > 0 && !isClosed()) {
+                pruner = new Pruner();
+                EvictionTimer.schedule(pruner, pruningPeriodMillis,
+                        pruningPeriodMillis);
+            }
+        }
+    }
+
+    /**
+     * Returns the total number of references cleared by the garbage collector
+     * that have been pruned from the pool.
+     *
+     * @return the number of cleared references
+     *
+     * @since 2.4.3
+     */
+    public long getClearedCount() {
+        return clearedCount.get();
+    }
+
+    /**
+     * Returns the time taken by the most recent prune that found references
+     * cleared by the garbage collector.
+     *
+     * @return the duration in nanoseconds
+     *
+     * @since 2.4.3
+     */
+    public long getLastPruneNanos() {
+        return lastPruneNanos;
+    }
+
+    /**
+     * Returns the longest time taken by a prune that found references cleared
+     * by the garbage collector.
+     *
+     * @return the duration in nanoseconds
+     *
+     * @since 2.4.3
+     */
+    public long getMaxPruneNanos() {
+        return maxPruneNanos.get();
+    }
+
     /**
      * Returns the {@link PooledObjectFactory} used by this pool to create and
      * manage object instances.
      *
      * @return the factory
      */
-    public synchronized PooledObjectFactory<T> getFactory() {
+    public PooledObjectFactory<T> getFactory() {
         return factory;
     }
 
     /**
-     * If any idle objects were garbage collected, remove their
-     * {@link Reference} wrappers from the idle object pool.
+     * If any idle objects were garbage collected, stop tracking their
+     * {@link Reference} wrappers. The wrappers are removed from the idle
+     * object pool when they reach the head of the queue.
+     *
+     * @param max the maximum number of cleared references to process,
+     *            negative for no limit
      */
-    private void pruneClearedReferences() {
-        // Remove wrappers for enqueued references from idle and allReferences lists
-        removeClearedReferences(idleReferences.iterator());
-        removeClearedReferences(allReferences.iterator());
-        while (refQueue.poll() != null) {}
+    @SuppressWarnings("unchecked") // Only OwnedSoftReferences are queued
+    private void pruneClearedReferences(final int max) {
+        if (max == 0) {
+            return;
+        }
+        Reference<? extends T> cleared = refQueue.poll();
+        if (cleared == null) {
+            return;
+        }
+        final long start = System.nanoTime();
+        int count = 0;
+        while (cleared != null) {
+            final PooledSoftReference<T> ref =
+                    ((OwnedSoftReference<T>) cleared).getOwner();
+            boolean wasIdle = false;
+            synchronized (ref) {
+                // Ignore references that have since been borrowed or destroyed
+                if (ref.getReference() == cleared &&
+                        ref.getState() == PooledObjectState.IDLE) {
+                    ref.invalidate();
+                    wasIdle = true;
+                }
+            }
+            if (wasIdle) {
+                numClearedIdle.incrementAndGet();
+                untrack(ref);
+            }
+            count++;
+            cleared = max > 0 && count >= max ? null : refQueue.poll();
+        }
+        clearedCount.addAndGet(count);
+        final long duration = System.nanoTime() - start;
+        lastPruneNanos = duration;
+        long currentMax = maxPruneNanos.get();
+        while (duration > currentMax &&
+                !maxPruneNanos.compareAndSet(currentMax, duration)) {
+            currentMax = maxPruneNanos.get();
+        }
     }
 
     /**
@@ -388,19 +610,38 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
      * @return PooledSoftReference wrapping a soft reference to obj
      */
     private PooledSoftReference<T> findReference(final T obj) {
-        final Iterator<PooledSoftReference<T>> iterator = allReferences.iterator();
-        while (iterator.hasNext()) {
-            final PooledSoftReference<T> reference = iterator.next();
-            if (reference.getObject() != null && reference.getObject().equals(obj)) {
-                return reference;
-            }
+        return referencesByObject.get(new ReferentKey(obj));
+    }
+
+    /**
+     * Start tracking a reference.
+     *
+     * @param ref the reference
+     * @param obj the object it refers to
+     */
+    private void track(final PooledSoftReference<T> ref, final T obj) {
+        final ReferentKey key = new ReferentKey(obj, ref);
+        allReferences.put(ref, key);
+        referencesByObject.put(key, ref);
+    }
+
+    /**
+     * Stop tracking a reference.
+     *
+     * @param ref the reference
+     */
+    private void untrack(final PooledSoftReference<T> ref) {
+        final ReferentKey key = allReferences.remove(ref);
+        if (key != null) {
+            // Removal finds the key by identity so works even if the
+            // reference has been cleared
+            referencesByObject.remove(key);
         }
-        return null;
     }
 
     /**
-     * Destroy a {@code PooledSoftReference} and remove it from the idle and all
-     * references pools.
+     * Destroy a {@code PooledSoftReference} and stop tracking it. This is
+     * never called for references in the idle object pool.
      *
      * @param toDestroy PooledSoftReference to destroy
      *
@@ -408,30 +649,15 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
      */
     private void destroy(final PooledSoftReference<T> toDestroy) throws Exception {
         toDestroy.invalidate();
-        idleReferences.remove(toDestroy);
-        allReferences.remove(toDestroy);
+        untrack(toDestroy);
         try {
             factory.destroyObject(toDestroy);
         } finally {
-            destroyCount++;
+            destroyCount.incrementAndGet();
             toDestroy.getReference().clear();
         }
     }
 
-    /**
-     * Clears cleared references from iterator's collection
-     * @param iterator iterator over idle/allReferences
-     */
-    private void removeClearedReferences(final Iterator<PooledSoftReference<T>> iterator) {
-        PooledSoftReference<T> ref;
-        while (iterator.hasNext()) {
-            ref = iterator.next();
-            if (ref.getReference() == null || ref.getReference().isEnqueued()) {
-                iterator.remove();
-            }
-        }
-    }
-
     @Override
     protected void toStringAppendFields(final StringBuilder builder) {
         super.toStringAppendFields(builder);
@@ -448,6 +674,108 @@ public class SoftReferenceObjectPool<T> extends BaseObjectPool<T> {
         builder.append(", idleReferences=");
         builder.append(idleReferences);
         builder.append(", allReferences=");
-        builder.append(allReferences);
+        builder.append(allReferences.keySet());
+        builder.append(", pruningPeriodMillis=");
+        builder.append(pruningPeriodMillis);
+        builder.append(", maxInlinePrune=");
+        builder.append(maxInlinePrune);
+        builder.append(", clearedCount=");
+        builder.append(clearedCount);
+    }
+
+    /**
+     * Background task that prunes cleared references.
+     */
+    private class Pruner extends TimerTask {
+
+        private volatile boolean cancelled = false;
+
+        @Override
+        public void run() {
+            if (!cancelled) {
+                pruneClearedReferences(-1);
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            cancelled = true;
+            return super.cancel();
+        }
+    }
+
+    /**
+     * A soft reference registered with the pool's reference queue that knows
+     * the {@link PooledSoftReference} that wraps it, so it can be pruned
+     * without searching once it has been cleared.
+     *
+     * @param <T> type of the referenced object
+     */
+    private static class OwnedSoftReference<T> extends SoftReference<T> {
+
+        private final PooledSoftReference<T> owner;
+
+        OwnedSoftReference(final T referent, final ReferenceQueue<? super T> queue,
+                final PooledSoftReference<T> owner) {
+            super(referent, queue);
+            this.owner = owner;
+        }
+
+        PooledSoftReference<T> getOwner() {
+            return owner;
+        }
+    }
+
+    /**
+     * Key that compares referenced objects by identity. Keys stored in the
+     * index do not hold a strong reference to the object so they do not
+     * prevent it from being garbage collected. Keys used for lookups hold
+     * the object directly.
+     */
+    private static final class ReferentKey {
+
+        private final int hash;
+        /** The object, for lookup keys */
+        private final Object referent;
+        /** The reference to the object, for stored keys */
+        private final PooledSoftReference<?> ref;
+
+        ReferentKey(final Object referent) {
+            this.hash = System.identityHashCode(referent);
+            this.referent = referent;
+            this.ref = null;
+        }
+
+        ReferentKey(final Object referent, final PooledSoftReference<?> ref) {
+            this.hash = System.identityHashCode(referent);
+            this.referent = null;
+            this.ref = ref;
+        }
+
+        private Object get() {
+            return ref == null ? referent : ref.getObject();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof ReferentKey)) {
+                return false;
+            }
+            final Object obj = get();
+            return obj != null && obj == ((ReferentKey) other).get();
+        }
+
+        @Override
+        public String toString() {
+            return "ReferentKey [hash=" + hash + "]";
+        }
     }
 }
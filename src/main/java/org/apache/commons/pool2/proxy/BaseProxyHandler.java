@@ -32,6 +32,11 @@ class BaseProxyHandler<T> {
 
     private volatile T pooledObject;
     private final UsageTracking<T> usageTracking;
+    private final boolean trackUse;
+    private final long usageTrackingInterval;
+    private final CallMetrics callMetrics;
+    // Only used by the thread holding the borrowed object
+    private long lastTrackedUse = 0;
 
 
     /**
@@ -45,6 +50,17 @@ class BaseProxyHandler<T> {
     BaseProxyHandler(final T pooledObject, final UsageTracking<T> usageTracking) {
         this.pooledObject = pooledObject;
         this.usageTracking = usageTracking;
+        if (usageTracking instanceof ProxyUsageTracking) {
+            final ProxyUsageTracking<T> proxyUsageTracking =
+                    (ProxyUsageTracking<T>) usageTracking;
+            trackUse = proxyUsageTracking.isTracking();
+            usageTrackingInterval = proxyUsageTracking.getIntervalMillis();
+            callMetrics = proxyUsageTracking.getCallMetrics();
+        } else {
+            trackUse = usageTracking != null;
+            usageTrackingInterval = 0;
+            callMetrics = null;
+        }
     }
 
 
@@ -72,17 +88,63 @@ class BaseProxyHandler<T> {
     }
 
 
+    /**
+     * Re-enable a disabled proxy wrapper so that it can be handed out again
+     * for the given pooled object.
+     *
+     * @param object        The object to wrap
+     * @param tracking      The usage tracking instance the wrapper is expected
+     *                      to use
+     *
+     * @return <code>true</code> if the wrapper was re-enabled,
+     *         <code>false</code> if it is still in use or uses a different
+     *         usage tracking instance
+     */
+    boolean enableProxy(final T object, final UsageTracking<T> tracking) {
+        if (pooledObject != null || usageTracking != tracking) {
+            return false;
+        }
+        lastTrackedUse = 0;
+        pooledObject = object;
+        return true;
+    }
+
+
     /**
      * Check that the proxy is still valid (i.e. that {@link #disableProxy()}
-     * has not been called).
+     * has not been called) and record the use of the wrapped object with the
+     * usage tracking instance, if any. With a {@link ProxyUsageTracking}
+     * interval, the first use, any use after the object has not been used
+     * for longer than the interval and otherwise at most one use per interval
+     * is reported.
+     *
+     * @return the wrapped object on which to invoke the intercepted method
      *
      * @throws IllegalStateException if {@link #disableProxy()} has been called
      */
-    void validateProxiedObject() {
-        if (pooledObject == null) {
+    T useProxiedObject() {
+        // Read the volatile field once for both the check and the call
+        final T object = pooledObject;
+        if (object == null) {
             throw new IllegalStateException("This object may no longer be " +
                     "used as it has been returned to the Object Pool.");
         }
+        if (trackUse) {
+            if (usageTrackingInterval <= 0) {
+                usageTracking.use(object);
+            } else {
+                final long now = System.currentTimeMillis();
+                // The last report is never later than the last use so this
+                // also reports the first use after a gap of at least one
+                // interval. The reported use can therefore only be stale while
+                // calls are closer together than the interval.
+                if (now - lastTrackedUse >= usageTrackingInterval) {
+                    lastTrackedUse = now;
+                    usageTracking.use(object);
+                }
+            }
+        }
+        return object;
     }
 
 
@@ -95,12 +157,29 @@ class BaseProxyHandler<T> {
      * @throws Throwable    If the method invocation fails
      */
     Object doInvoke(final Method method, final Object[] args) throws Throwable {
-        validateProxiedObject();
-        final T object = getPooledObject();
-        if (usageTracking != null) {
-            usageTracking.use(object);
+        final T object = useProxiedObject();
+        if (callMetrics == null) {
+            return method.invoke(object, args);
+        }
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Object result = method.invoke(object, args);
+            failed = false;
+            return result;
+        } finally {
+            callMetrics.record(method, object, System.nanoTime() - start, failed);
         }
-        return method.invoke(object, args);
+    }
+
+
+    /**
+     * Obtain the metrics in which calls through this wrapper are recorded.
+     *
+     * @return the call metrics or <code>null</code> if calls are not measured
+     */
+    CallMetrics getCallMetrics() {
+        return callMetrics;
     }
 
 
@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.proxy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+
+/**
+ * Records the number, latency and failures of method calls made through the
+ * proxies of a proxied pool. Recording a call only updates atomic counters so
+ * it adds little to the cost of the call.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @since 2.4.3
+ */
+final class CallMetrics implements CallMetricsMXBean {
+
+    /** Number of latency histogram buckets, the last covers ~4.5 minutes and up */
+    static final int HISTOGRAM_BUCKETS = 40;
+
+    /** Maximum number of live pooled objects for which failures are counted */
+    static final int MAX_TRACKED_OBJECTS = 1000;
+
+    private final ConcurrentMap<Method, MethodMetrics> methods =
+            new ConcurrentHashMap<Method, MethodMetrics>();
+    /*
+     * Failures by pooled object. The objects are only weakly referenced so
+     * the entries of destroyed objects are removed once they are collected.
+     */
+    private final ConcurrentMap<WeakIdentityKey, ObjectErrors> objectErrors =
+            new ConcurrentHashMap<WeakIdentityKey, ObjectErrors>();
+    private final ReferenceQueue<Object> collectedObjects =
+            new ReferenceQueue<Object>();
+    private volatile ObjectName objectName = null;
+
+    /**
+     * Record a call.
+     *
+     * @param method      The method called
+     * @param object      The pooled object on which it was called
+     * @param latencyNanos The time the call took
+     * @param failed      Whether the call threw an exception
+     */
+    void record(final Method method, final Object object,
+            final long latencyNanos, final boolean failed) {
+        MethodMetrics metrics = methods.get(method);
+        if (metrics == null) {
+            metrics = new MethodMetrics(describe(method));
+            final MethodMetrics existing = methods.putIfAbsent(method, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        metrics.record(latencyNanos, failed);
+        if (failed) {
+            removeCollected();
+            ObjectErrors errors =
+                    objectErrors.get(new WeakIdentityKey(object, null));
+            if (errors == null) {
+                if (objectErrors.size() >= MAX_TRACKED_OBJECTS) {
+                    return;
+                }
+                errors = new ObjectErrors(object);
+                final ObjectErrors existing = objectErrors.putIfAbsent(
+                        new WeakIdentityKey(object, collectedObjects), errors);
+                if (existing != null) {
+                    errors = existing;
+                }
+            }
+            errors.count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove the failure counts of the pooled objects that have been garbage
+     * collected.
+     */
+    private void removeCollected() {
+        Reference<?> ref;
+        while ((ref = collectedObjects.poll()) != null) {
+            objectErrors.remove(ref);
+        }
+    }
+
+    private static String describe(final Method method) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(typeName(method.getDeclaringClass()));
+        builder.append('.');
+        builder.append(method.getName());
+        builder.append('(');
+        final Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(typeName(parameterTypes[i]));
+        }
+        builder.append(')');
+        return builder.toString();
+    }
+
+    private static String typeName(final Class<?> type) {
+        if (type.isArray()) {
+            return typeName(type.getComponentType()) + "[]";
+        }
+        return type.getName();
+    }
+
+    @Override
+    public Map<String, Long> getCallCounts() {
+        final Map<String, Long> result = new HashMap<String, Long>();
+        for (final MethodMetrics metrics : methods.values()) {
+            result.put(metrics.name, Long.valueOf(metrics.count.get()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        final Map<String, Long> result = new HashMap<String, Long>();
+        for (final MethodMetrics metrics : methods.values()) {
+            result.put(metrics.name, Long.valueOf(metrics.errors.get()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getMeanLatencyNanos() {
+        final Map<String, Long> result = new HashMap<String, Long>();
+        for (final MethodMetrics metrics : methods.values()) {
+            final long count = metrics.count.get();
+            result.put(metrics.name, Long.valueOf(count == 0 ? 0 :
+                    metrics.totalNanos.get() / count));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatencyNanos() {
+        final Map<String, Long> result = new HashMap<String, Long>();
+        for (final MethodMetrics metrics : methods.values()) {
+            result.put(metrics.name, Long.valueOf(metrics.maxNanos.get()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, long[]> getLatencyHistograms() {
+        final Map<String, long[]> result = new HashMap<String, long[]>();
+        for (final MethodMetrics metrics : methods.values()) {
+            result.put(metrics.name, metrics.histogram());
+        }
+        return result;
+    }
+
+    @Override
+    public long getLatencyPercentileNanos(final String method,
+            final double percentile) {
+        for (final MethodMetrics metrics : methods.values()) {
+            if (metrics.name.equals(method)) {
+                final long[] histogram = metrics.histogram();
+                long total = 0;
+                for (final long bucket : histogram) {
+                    total += bucket;
+                }
+                if (total == 0) {
+                    return -1;
+                }
+                final double rank = total * Math.max(0, Math.min(100, percentile)) / 100;
+                long seen = 0;
+                for (int i = 0; i < histogram.length; i++) {
+                    seen += histogram[i];
+                    if (seen >= rank && seen > 0) {
+                        return 1L << i;
+                    }
+                }
+                return 1L << (histogram.length - 1);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCountsByObject() {
+        removeCollected();
+        final Map<String, Long> result = new HashMap<String, Long>();
+        for (final ObjectErrors errors : objectErrors.values()) {
+            String id = errors.name;
+            // Live objects may share an identity hash code
+            for (int i = 2; result.containsKey(id); i++) {
+                id = errors.name + '#' + i;
+            }
+            result.put(id, Long.valueOf(errors.count.get()));
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        methods.clear();
+        objectErrors.clear();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server. If the name is
+     * already in use a numeric suffix is added.
+     *
+     * @param name The name under which to register
+     */
+    void register(final String name) {
+        final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        int i = 1;
+        while (objectName == null) {
+            try {
+                // Skip the numeric suffix for the first instance
+                final ObjectName objName = new ObjectName(i == 1 ? name : name + i);
+                mbs.registerMBean(this, objName);
+                objectName = objName;
+            } catch (final InstanceAlreadyExistsException e) {
+                // Increment the index and try again
+                i++;
+            } catch (final MalformedObjectNameException e) {
+                // Shouldn't happen. Skip registration if it does.
+                return;
+            } catch (final MBeanRegistrationException e) {
+                // Shouldn't happen. Skip registration if it does.
+                return;
+            } catch (final NotCompliantMBeanException e) {
+                // Shouldn't happen. Skip registration if it does.
+                return;
+            }
+        }
+    }
+
+    /**
+     * Unregisters these metrics from the platform MBean server, if they were
+     * registered.
+     */
+    void unregister() {
+        final ObjectName name = objectName;
+        if (name != null) {
+            objectName = null;
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (final MBeanRegistrationException e) {
+                // Ignore
+            } catch (final InstanceNotFoundException e) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Obtain the name under which these metrics are registered with JMX.
+     *
+     * @return the JMX name or <code>null</code> if not registered
+     */
+    ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("CallMetrics [objectName=");
+        builder.append(objectName);
+        builder.append(", methods=");
+        builder.append(methods.size());
+        builder.append("]");
+        return builder.toString();
+    }
+
+    /**
+     * Failures of calls on a single pooled object.
+     */
+    private static final class ObjectErrors {
+
+        private final String name;
+        private final AtomicLong count = new AtomicLong(0);
+
+        ObjectErrors(final Object object) {
+            name = object.getClass().getName() + '@' +
+                    Integer.toHexString(System.identityHashCode(object));
+        }
+    }
+
+    /**
+     * Metrics for the calls to a single method.
+     */
+    private static final class MethodMetrics {
+
+        private final String name;
+        private final AtomicLong count = new AtomicLong(0);
+        private final AtomicLong errors = new AtomicLong(0);
+        private final AtomicLong totalNanos = new AtomicLong(0);
+        private final AtomicLong maxNanos = new AtomicLong(0);
+        private final AtomicLongArray buckets =
+                new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+        MethodMetrics(final String name) {
+            this.name = name;
+        }
+
+        void record(final long latencyNanos, final boolean failed) {
+            final long latency = Math.max(0, latencyNanos);
+            count.incrementAndGet();
+            if (failed) {
+                errors.incrementAndGet();
+            }
+            totalNanos.addAndGet(latency);
+            long max = maxNanos.get();
+            while (latency > max && !maxNanos.compareAndSet(max, latency)) {
+                max = maxNanos.get();
+            }
+            final int bucket = 64 - Long.numberOfLeadingZeros(latency);
+            buckets.incrementAndGet(Math.min(bucket, HISTOGRAM_BUCKETS - 1));
+        }
+
+        long[] histogram() {
+            final long[] result = new long[HISTOGRAM_BUCKETS];
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                result[i] = buckets.get(i);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.proxy;
+
+import java.util.Map;
+
+/**
+ * The interface that defines the information about method calls on proxied
+ * pooled objects that will be made available via JMX when call metrics are
+ * enabled on a {@link ProxiedObjectPool} or {@link ProxiedKeyedObjectPool}.
+ * <p>
+ * Methods are identified by the fully qualified name of their declaring class,
+ * their name and the fully qualified names of their parameter types, e.g.
+ * <code>java.sql.Connection.prepareStatement(java.lang.String)</code>.
+ * Latencies are collected
+ * in a histogram with power of two buckets: bucket <code>i</code> counts
+ * calls that took less than 2<sup>i</sup> ns and at least
+ * 2<sup>i-1</sup> ns, with the last bucket also counting all longer calls.
+ *
+ * @since 2.4.3
+ */
+public interface CallMetricsMXBean {
+
+    /**
+     * Obtain the number of calls made to each method.
+     *
+     * @return calls by method
+     */
+    Map<String, Long> getCallCounts();
+
+    /**
+     * Obtain the number of calls to each method that threw an exception.
+     *
+     * @return failed calls by method
+     */
+    Map<String, Long> getErrorCounts();
+
+    /**
+     * Obtain the mean time taken by calls to each method.
+     *
+     * @return mean latency in ns by method
+     */
+    Map<String, Long> getMeanLatencyNanos();
+
+    /**
+     * Obtain the longest time taken by a call to each method.
+     *
+     * @return maximum latency in ns by method
+     */
+    Map<String, Long> getMaxLatencyNanos();
+
+    /**
+     * Obtain the latency histogram of each method.
+     *
+     * @return the number of calls in each latency bucket by method
+     */
+    Map<String, long[]> getLatencyHistograms();
+
+    /**
+     * Estimate a latency percentile for a method from its histogram.
+     *
+     * @param method     The method, as identified by the keys of
+     *                   {@link #getCallCounts()}
+     * @param percentile The percentile, between 0 and 100
+     *
+     * @return the upper bound, in ns, of the histogram bucket containing the
+     *         percentile, or -1 if the method has not been called
+     */
+    long getLatencyPercentileNanos(String method, double percentile);
+
+    /**
+     * Obtain the number of failed calls for each pooled object on which a
+     * call has failed. Objects are identified by their class name and
+     * identity hash code, with a <code>#n</code> suffix if several objects
+     * share both. Objects that have been destroyed and garbage collected are
+     * no longer reported. At most 1000 live objects are tracked.
+     *
+     * @return failed calls by pooled object
+     */
+    Map<String, Long> getErrorCountsByObject();
+
+    /**
+     * Discard all the metrics collected so far.
+     */
+    void reset();
+}
@@ -16,6 +16,12 @@
  */
 package org.apache.commons.pool2.proxy;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.Factory;
 
@@ -23,6 +29,12 @@ import org.apache.commons.pool2.UsageTracking;
 
 /**
  * Provides proxy objects using CGLib.
+ * <p>
+ * The proxy class is generated once, on first use, and proxies are then
+ * created by the generated class itself. Optionally, see
+ * {@link #setReuseProxies(boolean)}, the proxy created for a pooled object is
+ * kept with it and handed out again each time the object is borrowed, for as
+ * long as the proxy has not been garbage collected.
  *
  * @param <T> type of the pooled object to be proxied
  *
@@ -31,6 +43,17 @@ import org.apache.commons.pool2.UsageTracking;
 public class CglibProxySource<T> implements ProxySource<T> {
 
     private final Class<? extends T> superclass;
+    private volatile Factory prototype = null;
+    private volatile boolean reuseProxies = false;
+    /*
+     * Proxies by pooled object. Both are only weakly referenced so that the
+     * cache never keeps a proxy, or through its handler the pooled object,
+     * reachable.
+     */
+    private final ConcurrentMap<WeakIdentityKey, WeakReference<T>> proxies =
+            new ConcurrentHashMap<WeakIdentityKey, WeakReference<T>>();
+    private final ReferenceQueue<Object> collectedObjects =
+            new ReferenceQueue<Object>();
 
     /**
      * Create a new proxy source for the given class.
@@ -41,22 +64,124 @@ public class CglibProxySource<T> implements ProxySource<T> {
         this.superclass = superclass;
     }
 
+    /**
+     * Will the proxy created for a pooled object be re-enabled and handed out
+     * again when the object is borrowed again?
+     *
+     * @return <code>true</code> if proxies are reused
+     *
+     * @see #setReuseProxies(boolean)
+     * @since 2.4.3
+     */
+    public boolean getReuseProxies() {
+        return reuseProxies;
+    }
+
+    /**
+     * Sets whether the proxy created for a pooled object is kept with the
+     * object and re-enabled, rather than replaced by a new proxy, each time
+     * the object is borrowed. This makes a proxied borrow almost as cheap as
+     * a plain borrow. Proxies are only weakly referenced, so a proxy that has
+     * been garbage collected since the object was returned is replaced by a
+     * new one.
+     * <p>
+     * Note that, with proxy reuse, a client that keeps using a proxy after
+     * returning it only gets an {@link IllegalStateException} while the pooled
+     * object is idle or borrowed through a different proxy; once the object is
+     * borrowed again the old reference works again. Leave this disabled where
+     * detecting such use is more important than the cost of borrowing.
+     * <p>
+     * As this source does not keep the proxies reachable, proxy reuse can be
+     * combined with the leak detection of
+     * {@link ProxiedObjectPool#setLeakDetection(boolean)} and
+     * {@link ProxiedKeyedObjectPool#setLeakDetection(boolean)}.
+     *
+     * @param reuseProxies <code>true</code> to reuse proxies
+     *
+     * @since 2.4.3
+     */
+    public void setReuseProxies(final boolean reuseProxies) {
+        this.reuseProxies = reuseProxies;
+        if (!reuseProxies) {
+            proxies.clear();
+        }
+    }
+
     @Override
     public T createProxy(final T pooledObject, final UsageTracking<T> usageTracking) {
-        final Enhancer enhancer = new Enhancer();
-        enhancer.setSuperclass(superclass);
+        if (!reuseProxies) {
+            return newProxy(pooledObject, usageTracking);
+        }
+        purgeCollected();
+        final WeakReference<T> existingRef =
+                proxies.get(new WeakIdentityKey(pooledObject, null));
+        final T existing = existingRef == null ? null : existingRef.get();
+        if (existing != null) {
+            @SuppressWarnings("unchecked")
+            final
+            CglibProxyHandler<T> cglibProxyHandler =
+                    (CglibProxyHandler<T>) ((Factory) existing).getCallback(0);
+            if (cglibProxyHandler.enableProxy(pooledObject, usageTracking)) {
+                return existing;
+            }
+        }
+        final T proxy = newProxy(pooledObject, usageTracking);
+        proxies.put(new WeakIdentityKey(pooledObject, collectedObjects),
+                new WeakReference<T>(proxy));
+        return proxy;
+    }
 
-        final CglibProxyHandler<T> proxyInterceptor =
-                new CglibProxyHandler<T>(pooledObject, usageTracking);
-        enhancer.setCallback(proxyInterceptor);
+    /**
+     * Obtain the number of pooled objects for which a proxy is cached,
+     * excluding objects that are known to have been garbage collected.
+     *
+     * @return the number of cached proxies
+     */
+    int getCachedProxyCount() {
+        purgeCollected();
+        return proxies.size();
+    }
+
+    /**
+     * Create a new proxy from the cached proxy class.
+     *
+     * @param pooledObject  The object to wrap
+     * @param usageTracking The usage tracking instance, if any
+     *
+     * @return the new proxy
+     */
+    private T newProxy(final T pooledObject, final UsageTracking<T> usageTracking) {
+        Factory factory = prototype;
+        if (factory == null) {
+            // Generate the class once. Proxies are created from a prototype
+            // that is never handed out, so that the source does not keep a
+            // client's proxy, or the object it wraps, reachable. Concurrent
+            // first calls may each create one.
+            final Enhancer enhancer = new Enhancer();
+            enhancer.setSuperclass(superclass);
+            enhancer.setCallback(new CglibProxyHandler<T>(null, null));
+            factory = (Factory) enhancer.create();
+            prototype = factory;
+        }
 
         @SuppressWarnings("unchecked")
         final
-        T proxy = (T) enhancer.create();
+        T proxy = (T) factory.newInstance(
+                new CglibProxyHandler<T>(pooledObject, usageTracking));
 
         return proxy;
     }
 
+    /**
+     * Forget the proxies of pooled objects that have been garbage collected.
+     */
+    private void purgeCollected() {
+        Reference<?> ref;
+        while ((ref = collectedObjects.poll()) != null) {
+            proxies.remove(ref);
+        }
+    }
+
 
     @Override
     public T resolveProxy(final T proxy) {
@@ -76,6 +201,8 @@ public class CglibProxySource<T> implements ProxySource<T> {
         final StringBuilder builder = new StringBuilder();
         builder.append("CglibProxySource [superclass=");
         builder.append(superclass);
+        builder.append(", reuseProxies=");
+        builder.append(reuseProxies);
         builder.append("]");
         return builder.toString();
     }
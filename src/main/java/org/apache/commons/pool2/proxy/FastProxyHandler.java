@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.proxy;
+
+import java.lang.reflect.Method;
+
+import org.apache.commons.pool2.UsageTracking;
+
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+
+/**
+ * Proxy handler for {@link FastProxySource} that invokes methods on the
+ * wrapped object through the generated {@link MethodProxy} rather than by
+ * reflection.
+ *
+ * @param <T> type of the wrapped pooled object
+ *
+ * @since 2.4.3
+ */
+class FastProxyHandler<T> extends BaseProxyHandler<T>
+        implements MethodInterceptor {
+
+    /**
+     * Create a new handler for a generated proxy.
+     *
+     * @param pooledObject  The object to wrap
+     * @param usageTracking The instance, if any (usually the object pool) to
+     *                      be provided with usage tracking information for this
+     *                      wrapped object
+     */
+    FastProxyHandler(final T pooledObject, final UsageTracking<T> usageTracking) {
+        super(pooledObject, usageTracking);
+    }
+
+    @Override
+    public Object intercept(final Object object, final Method method, final Object[] args,
+            final MethodProxy methodProxy) throws Throwable {
+        final T target = useProxiedObject();
+        final CallMetrics callMetrics = getCallMetrics();
+        if (callMetrics == null) {
+            return methodProxy.invoke(target, args);
+        }
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Object result = methodProxy.invoke(target, args);
+            failed = false;
+            return result;
+        } finally {
+            callMetrics.record(method, target, System.nanoTime() - start, failed);
+        }
+    }
+}
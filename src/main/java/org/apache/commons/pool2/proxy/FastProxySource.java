@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.proxy;
+
+import java.util.Arrays;
+
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+
+import org.apache.commons.pool2.UsageTracking;
+
+/**
+ * Provides proxy objects for a set of interfaces using generated classes.
+ * <p>
+ * Like {@link JdkProxySource}, the proxies implement the given interfaces,
+ * but calls are dispatched to the pooled object by generated code rather than
+ * by {@link java.lang.reflect.Method#invoke(Object, Object...)}. The proxy
+ * class is generated once, when the source is created, and is shared by all
+ * sources for the same class loader and interfaces. Proxies are then created
+ * by the generated class itself, without reflection.
+ * <p>
+ * This source requires CGLib at runtime.
+ *
+ * @param <T> type of the pooled object to be proxied
+ *
+ * @since 2.4.3
+ */
+public class FastProxySource<T> implements ProxySource<T> {
+
+    private final ClassLoader classLoader;
+    private final Class<?>[] interfaces;
+    private final Factory prototype;
+
+
+    /**
+     * Create a new proxy source for the given interfaces.
+     *
+     * @param classLoader The class loader with which to create the proxy
+     * @param interfaces  The interfaces to proxy
+     */
+    public FastProxySource(final ClassLoader classLoader, final Class<?>[] interfaces) {
+        this.classLoader = classLoader;
+        // Defensive copy
+        this.interfaces = new Class<?>[interfaces.length];
+        System.arraycopy(interfaces, 0, this.interfaces, 0, interfaces.length);
+
+        final Enhancer enhancer = new Enhancer();
+        enhancer.setClassLoader(classLoader);
+        enhancer.setInterfaces(this.interfaces);
+        // Later proxies are created from this one, which is never handed out
+        enhancer.setCallback(new FastProxyHandler<T>(null, null));
+        prototype = (Factory) enhancer.create();
+    }
+
+
+    @Override
+    public T createProxy(final T pooledObject, final UsageTracking<T> usageTracking) {
+        @SuppressWarnings("unchecked")
+        final
+        T proxy = (T) prototype.newInstance(
+                new FastProxyHandler<T>(pooledObject, usageTracking));
+        return proxy;
+    }
+
+
+    @Override
+    public T resolveProxy(final T proxy) {
+        @SuppressWarnings("unchecked")
+        final
+        FastProxyHandler<T> fastProxyHandler =
+                (FastProxyHandler<T>) ((Factory) proxy).getCallback(0);
+        final T pooledObject = fastProxyHandler.disableProxy();
+        return pooledObject;
+    }
+
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("FastProxySource [classLoader=");
+        builder.append(classLoader);
+        builder.append(", interfaces=");
+        builder.append(Arrays.toString(interfaces));
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.proxy;
+
+import java.io.PrintWriter;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects proxies that become unreachable while the object they wrap is still
+ * borrowed from the underlying pool. Each tracked proxy is weakly referenced
+ * and, once the garbage collector clears the reference, a shared daemon thread
+ * reports the borrow site (if a log writer has been set) and calls
+ * {@link #reclaim(Object, Object)} so the pool can recover the capacity.
+ * <p>
+ * The shared thread is started when the first tracker is enabled and stopped
+ * once no tracker is enabled or still tracking objects borrowed while it was
+ * enabled.
+ * <p>
+ * This class is intended to be thread-safe.
+ *
+ * @param <K> type of the key, unused for pools that are not keyed
+ * @param <T> type of the pooled object
+ *
+ * @since 2.4.3
+ */
+abstract class LeakTracker<K,T> {
+
+    /** Queue shared by all trackers */
+    private static final ReferenceQueue<Object> queue =
+            new ReferenceQueue<Object>();
+
+    /** Thread draining the queue */
+    private static Thread detector; //@GuardedBy("LeakTracker.class")
+
+    /** Number of trackers using the detector */
+    private static int usageCount; //@GuardedBy("LeakTracker.class")
+
+    private final ConcurrentMap<IdentityKey,BorrowReference<K,T>> borrowed =
+            new ConcurrentHashMap<IdentityKey,BorrowReference<K,T>>();
+    private final AtomicLong leakedCount = new AtomicLong(0);
+    private volatile boolean enabled = false;
+    private boolean usingDetector = false; //@GuardedBy("this")
+    private volatile PrintWriter logWriter = null;
+
+
+    /**
+     * Recover the capacity used by a pooled object whose proxy has become
+     * unreachable, normally by invalidating the object.
+     *
+     * @param key           The key the object was borrowed with, or
+     *                      <code>null</code> if the pool is not keyed
+     * @param pooledObject  The leaked object
+     *
+     * @throws Exception if the object cannot be reclaimed
+     */
+    abstract void reclaim(K key, T pooledObject) throws Exception;
+
+
+    /**
+     * Is leak detection enabled?
+     *
+     * @return <code>true</code> if borrowed objects are being tracked
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable leak detection. Objects borrowed while detection was
+     * enabled continue to be tracked until they are returned or reclaimed and
+     * the detector keeps running for them until then.
+     *
+     * @param enabled <code>true</code> to track borrowed objects
+     */
+    synchronized void setEnabled(final boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        if (enabled) {
+            if (!usingDetector) {
+                usingDetector = true;
+                startDetector();
+            }
+        } else {
+            releaseDetector();
+        }
+    }
+
+    /**
+     * Stop using the detector if leak detection is disabled and no objects
+     * are tracked any more.
+     */
+    private synchronized void releaseDetector() {
+        if (usingDetector && !enabled && borrowed.isEmpty()) {
+            usingDetector = false;
+            stopDetector();
+        }
+    }
+
+    /**
+     * Returns the writer the borrow sites of leaked objects are logged to.
+     *
+     * @return the log writer, or <code>null</code> if leaks are not logged
+     */
+    PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    /**
+     * Sets the writer the borrow sites of leaked objects are logged to.
+     * Borrow sites are only recorded while a log writer is set.
+     *
+     * @param logWriter the log writer, or <code>null</code> to not log leaks
+     */
+    void setLogWriter(final PrintWriter logWriter) {
+        this.logWriter = logWriter;
+    }
+
+    /**
+     * Returns the number of leaked objects that have been reclaimed.
+     *
+     * @return the number of leaked objects
+     */
+    long getLeakedCount() {
+        return leakedCount.get();
+    }
+
+    /**
+     * Start tracking a proxy handed to a client, if leak detection is enabled.
+     *
+     * @param key           The key the object was borrowed with, or
+     *                      <code>null</code> if the pool is not keyed
+     * @param pooledObject  The borrowed object
+     * @param proxy         The proxy wrapping the borrowed object
+     */
+    void borrowed(final K key, final T pooledObject, final T proxy) {
+        if (!enabled) {
+            return;
+        }
+        final BorrowSite borrowSite = logWriter == null ? null : new BorrowSite();
+        borrowed.put(new IdentityKey(pooledObject), new BorrowReference<K,T>(
+                this, key, pooledObject, proxy, borrowSite));
+        if (!enabled) {
+            // Disabled concurrently, possibly after the detector was released
+            returned(pooledObject);
+        }
+    }
+
+    /**
+     * Stop tracking an object because its proxy is being returned or
+     * invalidated by the client.
+     *
+     * @param pooledObject  The object
+     */
+    void returned(final T pooledObject) {
+        final BorrowReference<K,T> ref =
+                borrowed.remove(new IdentityKey(pooledObject));
+        if (ref != null) {
+            ref.clear();
+            if (!enabled) {
+                releaseDetector();
+            }
+        }
+    }
+
+    /**
+     * Stop tracking all objects.
+     */
+    void close() {
+        setEnabled(false);
+        for (final BorrowReference<K,T> ref : borrowed.values()) {
+            ref.clear();
+        }
+        borrowed.clear();
+        releaseDetector();
+    }
+
+    /**
+     * Called by the detector thread once a tracked proxy has been cleared.
+     *
+     * @param ref The reference to the cleared proxy
+     */
+    private void leaked(final BorrowReference<K,T> ref) {
+        if (!borrowed.remove(new IdentityKey(ref.pooledObject), ref)) {
+            // Returned while the reference was being enqueued
+            return;
+        }
+        leakedCount.incrementAndGet();
+        final PrintWriter logWriterSave = logWriter;
+        if (logWriterSave != null && ref.borrowSite != null) {
+            ref.borrowSite.printStackTrace(logWriterSave);
+            logWriterSave.flush();
+        }
+        try {
+            reclaim(ref.key, ref.pooledObject);
+        } catch (final Exception e) {
+            // Nothing more can be done, the pool keeps the object as active
+        }
+        if (!enabled) {
+            releaseDetector();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("LeakTracker [enabled=");
+        builder.append(enabled);
+        builder.append(", borrowed=");
+        builder.append(borrowed.size());
+        builder.append(", leakedCount=");
+        builder.append(leakedCount);
+        builder.append("]");
+        return builder.toString();
+    }
+
+
+    private static synchronized void startDetector() {
+        usageCount++;
+        if (detector == null) {
+            detector = new Thread(null, new Detector(),
+                    "commons-pool-leak-detector");
+            detector.setDaemon(true);
+            final Thread t = detector;
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                @Override
+                public Void run() {
+                    t.setContextClassLoader(LeakTracker.class.getClassLoader());
+                    return null;
+                }
+            });
+            detector.start();
+        }
+    }
+
+    private static synchronized void stopDetector() {
+        usageCount--;
+        if (usageCount == 0 && detector != null) {
+            detector.interrupt();
+            detector = null;
+        }
+    }
+
+
+    /**
+     * Drains the shared reference queue until interrupted.
+     */
+    private static class Detector implements Runnable {
+
+        @Override
+        @SuppressWarnings("unchecked") // Only BorrowReferences are queued
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Reference<?> ref;
+                try {
+                    ref = queue.remove();
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                final BorrowReference<Object,Object> borrowRef =
+                        (BorrowReference<Object,Object>) ref;
+                borrowRef.tracker.leaked(borrowRef);
+            }
+        }
+    }
+
+    /**
+     * Weak reference to a proxy along with what is needed to reclaim the
+     * object it wraps.
+     */
+    private static class BorrowReference<K,T> extends WeakReference<Object> {
+
+        private final LeakTracker<K,T> tracker;
+        private final K key;
+        private final T pooledObject;
+        private final BorrowSite borrowSite;
+
+        BorrowReference(final LeakTracker<K,T> tracker, final K key,
+                final T pooledObject, final T proxy,
+                final BorrowSite borrowSite) {
+            super(proxy, queue);
+            this.tracker = tracker;
+            this.key = key;
+            this.pooledObject = pooledObject;
+            this.borrowSite = borrowSite;
+        }
+    }
+
+    /**
+     * Wrapper that compares pooled objects by identity.
+     */
+    private static class IdentityKey {
+
+        private final Object object;
+
+        IdentityKey(final Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof IdentityKey &&
+                    ((IdentityKey) other).object == object;
+        }
+    }
+
+    /**
+     * Records where a leaked object was borrowed.
+     */
+    private static class BorrowSite extends Exception {
+
+        private static final long serialVersionUID = -2716185339937591853L;
+
+        /** Date format */
+        //@GuardedBy("format")
+        private static final SimpleDateFormat format = new SimpleDateFormat
+            ("'Pooled object borrowed' yyyy-MM-dd HH:mm:ss Z " +
+             "'by the following code was never returned to the pool:'");
+
+        private final long borrowedTime;
+
+        BorrowSite() {
+            borrowedTime = System.currentTimeMillis();
+        }
+
+        // Override getMessage to avoid creating objects and formatting
+        // dates unless the log message will actually be used.
+        @Override
+        public String getMessage() {
+            String msg;
+            synchronized (format) {
+                msg = format.format(new Date(borrowedTime));
+            }
+            return msg;
+        }
+    }
+}
@@ -16,8 +16,11 @@
  */
 package org.apache.commons.pool2.proxy;
 
+import java.io.PrintWriter;
 import java.util.NoSuchElementException;
 
+import javax.management.ObjectName;
+
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.UsageTracking;
 
@@ -35,6 +38,15 @@ public class ProxiedObjectPool<T> implements ObjectPool<T> {
 
     private final ObjectPool<T> pool;
     private final ProxySource<T> proxySource;
+    private volatile long usageTrackingInterval = 0;
+    private volatile CallMetrics callMetrics = null;
+    private volatile ProxyUsageTracking<T> proxyUsageTracking = null;
+    private final LeakTracker<Object,T> leakTracker = new LeakTracker<Object,T>() {
+        @Override
+        void reclaim(final Object key, final T pooledObject) throws Exception {
+            pool.invalidateObject(pooledObject);
+        }
+    };
 
 
     /**
@@ -55,12 +67,13 @@ public class ProxiedObjectPool<T> implements ObjectPool<T> {
     @Override
     public T borrowObject() throws Exception, NoSuchElementException,
             IllegalStateException {
-        UsageTracking<T> usageTracking = null;
-        if (pool instanceof UsageTracking) {
+        UsageTracking<T> usageTracking = proxyUsageTracking;
+        if (usageTracking == null && pool instanceof UsageTracking) {
             usageTracking = (UsageTracking<T>) pool;
         }
         final T pooledObject = pool.borrowObject();
         final T proxy = proxySource.createProxy(pooledObject, usageTracking);
+        leakTracker.borrowed(null, pooledObject, proxy);
         return proxy;
     }
 
@@ -68,6 +81,7 @@ public class ProxiedObjectPool<T> implements ObjectPool<T> {
     @Override
     public void returnObject(final T proxy) throws Exception {
         final T pooledObject = proxySource.resolveProxy(proxy);
+        leakTracker.returned(pooledObject);
         pool.returnObject(pooledObject);
     }
 
@@ -75,6 +89,7 @@ public class ProxiedObjectPool<T> implements ObjectPool<T> {
     @Override
     public void invalidateObject(final T proxy) throws Exception {
         final T pooledObject = proxySource.resolveProxy(proxy);
+        leakTracker.returned(pooledObject);
         pool.invalidateObject(pooledObject);
     }
 
@@ -106,10 +121,223 @@ public class ProxiedObjectPool<T> implements ObjectPool<T> {
 
     @Override
     public void close() {
+        leakTracker.close();
+        setCallMetricsEnabled(false);
         pool.close();
     }
 
 
+    /**
+     * Will borrowed objects be reclaimed when the proxy handed to the client
+     * becomes unreachable without having been returned?
+     *
+     * @return <code>true</code> if leak detection is enabled
+     *
+     * @see #setLeakDetection(boolean)
+     *
+     * @since 2.4.3
+     */
+    public boolean getLeakDetection() {
+        return leakTracker.isEnabled();
+    }
+
+    /**
+     * Sets whether borrowed objects are reclaimed when the proxy handed to
+     * the client becomes unreachable without having been returned. Each proxy
+     * is weakly referenced and, once the garbage collector has cleared the
+     * reference, the object it wrapped is invalidated in the underlying pool.
+     * Unlike abandoned object removal this frees the capacity within one
+     * garbage collection cycle and never reclaims an object that is still in
+     * use, however long it has been borrowed for.
+     * <p>
+     * Clients must hold on to the proxy until they return it. Objects
+     * borrowed while leak detection is enabled remain tracked, and are
+     * reclaimed if their proxy is leaked, until they are returned, even if
+     * leak detection is later disabled.
+     *
+     * @param leakDetection <code>true</code> to enable leak detection
+     *
+     * @see #setLeakLogWriter(PrintWriter)
+     *
+     * @since 2.4.3
+     */
+    public void setLeakDetection(final boolean leakDetection) {
+        leakTracker.setEnabled(leakDetection);
+    }
+
+    /**
+     * Returns the writer the borrow sites of leaked objects are logged to.
+     *
+     * @return the log writer, or <code>null</code> if leaks are not logged
+     *
+     * @see #setLeakLogWriter(PrintWriter)
+     *
+     * @since 2.4.3
+     */
+    public PrintWriter getLeakLogWriter() {
+        return leakTracker.getLogWriter();
+    }
+
+    /**
+     * Sets the writer the borrow sites of leaked objects are logged to. The
+     * stack trace of each borrow is only captured while a log writer is set.
+     *
+     * @param leakLogWriter the log writer, or <code>null</code> to not log
+     *                      leaks
+     *
+     * @see #setLeakDetection(boolean)
+     *
+     * @since 2.4.3
+     */
+    public void setLeakLogWriter(final PrintWriter leakLogWriter) {
+        leakTracker.setLogWriter(leakLogWriter);
+    }
+
+    /**
+     * Returns the number of borrowed objects that have been reclaimed because
+     * their proxy became unreachable.
+     *
+     * @return the number of leaked objects
+     *
+     * @since 2.4.3
+     */
+    public long getLeakedCount() {
+        return leakTracker.getLeakedCount();
+    }
+
+    /**
+     * Returns the minimum time between reports of the use of a borrowed object
+     * to the wrapped pool.
+     *
+     * @return the interval in milliseconds, zero if every use is reported
+     *
+     * @see #setUsageTrackingInterval(long)
+     *
+     * @since 2.4.3
+     */
+    public long getUsageTrackingInterval() {
+        return usageTrackingInterval;
+    }
+
+    /**
+     * Sets the minimum time between reports of the use of a borrowed object
+     * to the wrapped pool, when that pool supports {@link UsageTracking}.
+     * By default every method call on a proxy is reported, which can dominate
+     * the cost of calls to objects that are used frequently. With an interval,
+     * the first call after each borrow and any call made after the object
+     * has not been used for longer than the interval are reported. Other calls
+     * are only reported once the interval has passed since the last report.
+     * <p>
+     * An object that is used occasionally is therefore tracked exactly. Only
+     * after a burst of calls closer together than the interval can the
+     * reported use be up to one interval older than the last call, so the
+     * wrapped pool may consider the object abandoned that much earlier than
+     * it otherwise would. Keep the interval well below the abandoned object
+     * timeout.
+     *
+     * @param usageTrackingInterval the interval in milliseconds, zero or
+     *                              negative to report every use
+     *
+     * @since 2.4.3
+     */
+    public synchronized void setUsageTrackingInterval(final long usageTrackingInterval) {
+        if (usageTrackingInterval > 0 && pool instanceof UsageTracking) {
+            this.usageTrackingInterval = usageTrackingInterval;
+        } else {
+            this.usageTrackingInterval = 0;
+        }
+        updateProxyUsageTracking();
+    }
+
+    /**
+     * Are the calls made through the proxies of this pool measured?
+     *
+     * @return <code>true</code> if call metrics are enabled
+     *
+     * @see #setCallMetricsEnabled(boolean)
+     *
+     * @since 2.4.3
+     */
+    public boolean getCallMetricsEnabled() {
+        return callMetrics != null;
+    }
+
+    /**
+     * Sets whether the calls made through the proxies of this pool are
+     * measured. When enabled, the number of calls, their latency histogram
+     * and the number of failed calls are recorded for each method, and failed
+     * calls are also counted for each pooled object. The metrics are
+     * registered with the platform MBean server as
+     * <code>org.apache.commons.pool2:type=ProxiedObjectPool,name=callMetrics</code>,
+     * with a numeric suffix if that name is taken, and are discarded when
+     * disabled or when the pool is closed.
+     * <p>
+     * The setting applies to objects borrowed after it is changed.
+     *
+     * @param callMetricsEnabled <code>true</code> to measure calls
+     *
+     * @since 2.4.3
+     */
+    public synchronized void setCallMetricsEnabled(final boolean callMetricsEnabled) {
+        if (callMetricsEnabled == (callMetrics != null)) {
+            return;
+        }
+        if (callMetricsEnabled) {
+            final CallMetrics metrics = new CallMetrics();
+            metrics.register(
+                    "org.apache.commons.pool2:type=ProxiedObjectPool,name=callMetrics");
+            callMetrics = metrics;
+        } else {
+            callMetrics.unregister();
+            callMetrics = null;
+        }
+        updateProxyUsageTracking();
+    }
+
+    /**
+     * Returns the metrics of the calls made through the proxies of this pool.
+     *
+     * @return the call metrics or <code>null</code> if they are not enabled
+     *
+     * @see #setCallMetricsEnabled(boolean)
+     *
+     * @since 2.4.3
+     */
+    public CallMetricsMXBean getCallMetrics() {
+        return callMetrics;
+    }
+
+    /**
+     * Returns the name under which the call metrics of this pool are
+     * registered with the platform MBean server.
+     *
+     * @return the JMX name or <code>null</code> if call metrics are not
+     *         enabled or could not be registered
+     *
+     * @since 2.4.3
+     */
+    public ObjectName getCallMetricsJmxName() {
+        final CallMetrics metrics = callMetrics;
+        return metrics == null ? null : metrics.getObjectName();
+    }
+
+    /**
+     * Rebuild the usage tracking instance handed to the proxy source to
+     * reflect the current usage tracking interval and call metrics.
+     */
+    @SuppressWarnings("unchecked")
+    private void updateProxyUsageTracking() {
+        if (usageTrackingInterval <= 0 && callMetrics == null) {
+            proxyUsageTracking = null;
+        } else {
+            final UsageTracking<T> poolTracking = pool instanceof UsageTracking ?
+                    (UsageTracking<T>) pool : null;
+            proxyUsageTracking = new ProxyUsageTracking<T>(
+                    poolTracking, usageTrackingInterval, callMetrics);
+        }
+    }
+
+
     /**
      * @since 2.4.3
      */
@@ -120,6 +348,8 @@ public class ProxiedObjectPool<T> implements ObjectPool<T> {
         builder.append(pool);
         builder.append(", proxySource=");
         builder.append(proxySource);
+        builder.append(", leakTracker=");
+        builder.append(leakTracker);
         builder.append("]");
         return builder.toString();
     }
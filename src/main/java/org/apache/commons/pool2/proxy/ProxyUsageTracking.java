@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.proxy;
+
+import org.apache.commons.pool2.UsageTracking;
+
+/**
+ * Usage tracking that the proxied pools hand to their proxy source in place
+ * of the wrapped pool when proxies need more than plain usage tracking. It
+ * carries the options that the proxy handlers apply to each call:
+ * <ul>
+ * <li>the minimum interval between reports of use for a borrowed object. The
+ * handler keeps the time it last reported and skips calls to the underlying
+ * usage tracking instance until the interval has passed; the first use after
+ * each borrow and the first use after the object has not been used for at
+ * least the interval are always reported.</li>
+ * <li>the {@link CallMetrics}, if any, in which to record each call.</li>
+ * </ul>
+ *
+ * @param <T> type of the pooled object
+ *
+ * @since 2.4.3
+ */
+final class ProxyUsageTracking<T> implements UsageTracking<T> {
+
+    private final UsageTracking<T> usageTracking;
+    private final long intervalMillis;
+    private final CallMetrics callMetrics;
+
+    /**
+     * Create a new instance.
+     *
+     * @param usageTracking  The usage tracking instance to report to, if any
+     * @param intervalMillis The minimum time between reports for an object,
+     *                       zero or negative to report every use
+     * @param callMetrics    The metrics in which to record calls, if any
+     */
+    ProxyUsageTracking(final UsageTracking<T> usageTracking,
+            final long intervalMillis, final CallMetrics callMetrics) {
+        this.usageTracking = usageTracking;
+        this.intervalMillis = intervalMillis;
+        this.callMetrics = callMetrics;
+    }
+
+    /**
+     * Does this instance report use to an underlying usage tracking instance?
+     *
+     * @return <code>true</code> if use is reported
+     */
+    boolean isTracking() {
+        return usageTracking != null;
+    }
+
+    /**
+     * Obtain the minimum time between reports of use for an object.
+     *
+     * @return the interval in milliseconds
+     */
+    long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Obtain the metrics in which to record calls.
+     *
+     * @return the call metrics or <code>null</code> if calls are not measured
+     */
+    CallMetrics getCallMetrics() {
+        return callMetrics;
+    }
+
+    @Override
+    public void use(final T pooledObject) {
+        if (usageTracking != null) {
+            usageTracking.use(pooledObject);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("ProxyUsageTracking [usageTracking=");
+        builder.append(usageTracking);
+        builder.append(", intervalMillis=");
+        builder.append(intervalMillis);
+        builder.append(", callMetrics=");
+        builder.append(callMetrics);
+        builder.append("]");
+        return builder.toString();
+    }
+}
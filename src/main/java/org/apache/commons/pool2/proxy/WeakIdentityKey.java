@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.proxy;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Weak reference to an object that compares by identity, for use as a map
+ * key that does not keep the object reachable. A key for an object that has
+ * been garbage collected is only equal to itself, so the entry can still be
+ * removed once the key has been enqueued.
+ *
+ * @since 2.4.3
+ */
+final class WeakIdentityKey extends WeakReference<Object> {
+
+    private final int hash;
+
+    /**
+     * Create a new key for the given object.
+     *
+     * @param object The object
+     * @param queue  The queue the key is enqueued on once the object has been
+     *               garbage collected or <code>null</code> for a key that is
+     *               only used for a lookup
+     */
+    WeakIdentityKey(final Object object, final ReferenceQueue<Object> queue) {
+        super(object, queue);
+        this.hash = System.identityHashCode(object);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof WeakIdentityKey)) {
+            return false;
+        }
+        final Object object = get();
+        return object != null && object == ((WeakIdentityKey) other).get();
+    }
+}
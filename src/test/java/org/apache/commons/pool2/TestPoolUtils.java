@@ -17,7 +17,9 @@
 
 package org.apache.commons.pool2;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -32,8 +34,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TimerTask;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.junit.Assert;
 import junit.framework.AssertionFailedError;
@@ -41,6 +46,7 @@ import junit.framework.AssertionFailedError;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 
 import org.junit.Test;
 
@@ -291,6 +297,70 @@ public class TestPoolUtils {
         }
     }
 
+    @Test
+    public void testCheckMinIdleScheduledExecutor() throws Exception {
+        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(3);
+        try {
+            try {
+                @SuppressWarnings("unchecked")
+                final ObjectPool<Object> pool = createProxy(ObjectPool.class, (List<String>)null);
+                PoolUtils.checkMinIdle(pool, 1, 1, null);
+                fail("PoolUtils.checkMinIdle(ObjectPool,int,long,ScheduledExecutorService) must not accept null executor.");
+            } catch (final IllegalArgumentException iae) {
+                // expected
+            }
+            try {
+                @SuppressWarnings("unchecked")
+                final ObjectPool<Object> pool = createProxy(ObjectPool.class, (List<String>)null);
+                PoolUtils.checkMinIdle(pool, 1, 0, executor);
+                fail("PoolUtils.checkMinIdle(ObjectPool,int,long,ScheduledExecutorService) must not accept a zero period.");
+            } catch (final IllegalArgumentException iae) {
+                // expected
+            }
+
+            final KeyedPooledObjectFactory<String, Object> factory =
+                    new BaseKeyedPooledObjectFactory<String, Object>() {
+                @Override
+                public Object create(final String key) throws Exception {
+                    if ("bad".equals(key)) {
+                        throw new Exception("Cannot create " + key);
+                    }
+                    if ("slow".equals(key)) {
+                        Thread.sleep(2000);
+                    }
+                    return new Object();
+                }
+                @Override
+                public PooledObject<Object> wrap(final Object value) {
+                    return new DefaultPooledObject<Object>(value);
+                }
+            };
+            final GenericKeyedObjectPool<String, Object> pool =
+                    new GenericKeyedObjectPool<String, Object>(factory);
+            final Map<String, MinIdleCheck> checks = PoolUtils.checkMinIdle(
+                    pool, Arrays.asList("slow", "fast", "bad"), 3, 100, executor);
+            Thread.sleep(500);
+
+            // A slow key does not hold up the others, a failing one only stops itself
+            assertEquals(3, pool.getNumIdle("fast"));
+            assertFalse(checks.get("fast").isCancelled());
+            assertTrue(checks.get("fast").getRunCount() > 0);
+            assertTrue(checks.get("fast").getMaxLatenessMillis() >= checks.get("fast").getMeanLatenessMillis());
+            assertTrue(checks.get("bad").isCancelled());
+            assertEquals(1, checks.get("bad").getRunCount());
+            assertEquals(0, pool.getNumIdle("slow"));
+
+            for (final MinIdleCheck check : checks.values()) {
+                check.cancel();
+                assertTrue(check.isCancelled());
+            }
+            assertFalse(checks.get("fast").cancel());
+            pool.close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testPrefillObjectPool() throws Exception {
         try {
@@ -420,6 +490,66 @@ public class TestPoolUtils {
         // TODO: Anyone feel motivated to construct a test that verifies proper synchronization?
     }
 
+    @Test(timeout=60000)
+    public void testSynchronizedPoolWaitsWithoutLock() throws Exception {
+        // A pool that is not thread-safe and fails fast when exhausted
+        final ObjectPool<Object> unsafePool = new BaseObjectPool<Object>() {
+            private Object idle = new Object();
+            @Override
+            public Object borrowObject() {
+                if (idle == null) {
+                    throw new NoSuchElementException("Pool exhausted");
+                }
+                final Object obj = idle;
+                idle = null;
+                return obj;
+            }
+            @Override
+            public void returnObject(final Object obj) {
+                idle = obj;
+            }
+            @Override
+            public void invalidateObject(final Object obj) {
+                idle = new Object();
+            }
+        };
+
+        final ObjectPool<Object> failFast = PoolUtils.synchronizedPool(unsafePool, 0);
+        final Object obj = failFast.borrowObject();
+        try {
+            failFast.borrowObject();
+            fail("A zero wait must not wait for an object.");
+        } catch (final NoSuchElementException nsee) {
+            // expected
+        }
+        final ObjectPool<Object> timed = PoolUtils.synchronizedPool(unsafePool, 100);
+        try {
+            timed.borrowObject();
+            fail("Borrowing from an exhausted pool must time out.");
+        } catch (final NoSuchElementException nsee) {
+            // expected
+        }
+
+        // A waiting borrower does not stop the object being returned
+        final ObjectPool<Object> waiting = PoolUtils.synchronizedPool(unsafePool, -1);
+        final Object[] borrowed = new Object[1];
+        final Thread borrower = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    borrowed[0] = waiting.borrowObject();
+                } catch (final Exception e) {
+                    // Checked below
+                }
+            }
+        };
+        borrower.start();
+        Thread.sleep(100);
+        waiting.returnObject(obj);
+        borrower.join();
+        assertEquals(obj, borrowed[0]);
+    }
+
     @Test
     public void testSynchronizedPoolableFactoryPoolableObjectFactory() throws Exception {
         try {
@@ -575,6 +705,126 @@ public class TestPoolUtils {
         assertEquals(expectedToString, pool.toString());
     }
 
+    @Test
+    public void testErodingPoolConcurrentReturns() throws Exception {
+        final PooledObjectFactory<Object> factory =
+                new BasePooledObjectFactory<Object>() {
+            @Override
+            public Object create() {
+                return new Object();
+            }
+            @Override
+            public PooledObject<Object> wrap(final Object value) {
+                return new DefaultPooledObject<Object>(value);
+            }
+        };
+        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setJmxEnabled(false);
+        final GenericObjectPool<Object> internalPool =
+                new GenericObjectPool<Object>(factory, config);
+        for (int i = 0; i < 4; i++) {
+            internalPool.addObject();
+        }
+        // If the logic behind PoolUtils.erodingPool changes then this will need to be tweaked.
+        final float factor = 0.001f; // about ~1 second until first discard
+        final ObjectPool<Object> pool = PoolUtils.erodingPool(internalPool, factor);
+
+        final int threads = 4;
+        final Object[] borrowed = new Object[threads];
+        for (int i = 0; i < threads; i++) {
+            borrowed[i] = pool.borrowObject();
+        }
+        internalPool.addObject(); // so the first return finds an idle object
+        Thread.sleep(1500);
+
+        // Only one of the returns racing for the due erosion event may erode
+        final Thread[] returners = new Thread[threads];
+        final Object start = new Object();
+        final boolean[] go = new boolean[1];
+        for (int i = 0; i < threads; i++) {
+            final Object obj = borrowed[i];
+            returners[i] = new Thread() {
+                @Override
+                public void run() {
+                    synchronized (start) {
+                        while (!go[0]) {
+                            try {
+                                start.wait();
+                            } catch (final InterruptedException e) {
+                                return;
+                            }
+                        }
+                    }
+                    try {
+                        pool.returnObject(obj);
+                    } catch (final Exception e) {
+                        // ignore
+                    }
+                }
+            };
+            returners[i].start();
+        }
+        synchronized (start) {
+            go[0] = true;
+            start.notifyAll();
+        }
+        for (final Thread returner : returners) {
+            returner.join();
+        }
+        assertEquals(1, internalPool.getDestroyedCount());
+        assertEquals(threads, internalPool.getNumIdle());
+        pool.close();
+    }
+
+    @Test
+    public void testErodingPoolRecoversFromFailure() throws Exception {
+        final PooledObjectFactory<Object> factory =
+                new BasePooledObjectFactory<Object>() {
+            @Override
+            public Object create() {
+                return new Object();
+            }
+            @Override
+            public PooledObject<Object> wrap(final Object value) {
+                return new DefaultPooledObject<Object>(value);
+            }
+        };
+        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setJmxEnabled(false);
+        final boolean[] fail = new boolean[1];
+        final GenericObjectPool<Object> internalPool =
+                new GenericObjectPool<Object>(factory, config) {
+            @Override
+            public int getNumIdle() {
+                if (fail[0]) {
+                    throw new IllegalStateException();
+                }
+                return super.getNumIdle();
+            }
+        };
+        final float factor = 0.0001f; // about ~90 ms until first discard
+        final ObjectPool<Object> pool = PoolUtils.erodingPool(internalPool, factor);
+        final Object first = pool.borrowObject();
+        final Object second = pool.borrowObject();
+        internalPool.addObject();
+        Thread.sleep(200);
+
+        fail[0] = true;
+        try {
+            pool.returnObject(first);
+            fail("Expected IllegalStateException");
+        } catch (final IllegalStateException ise) {
+            // expected
+        }
+        fail[0] = false;
+
+        // The failed erosion event does not stop later ones
+        Thread.sleep(200);
+        pool.returnObject(second);
+        assertEquals(1, internalPool.getDestroyedCount());
+        pool.close();
+    }
+
     @Test
     public void testErodingPoolKeyedObjectPool() throws Exception {
         try {
@@ -794,6 +1044,164 @@ public class TestPoolUtils {
     /**
      * Tests the {@link PoolUtils} timer holder.
      */
+    @Test
+    public void testShardedPool() throws Exception {
+        final PooledObjectFactory<Object> factory =
+                new BasePooledObjectFactory<Object>() {
+            @Override
+            public Object create() {
+                return new Object();
+            }
+            @Override
+            public PooledObject<Object> wrap(final Object value) {
+                return new DefaultPooledObject<Object>(value);
+            }
+        };
+        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setMaxTotal(5);
+        config.setMaxWaitMillis(100);
+        config.setJmxEnabled(false);
+
+        try {
+            PoolUtils.shardedPool(factory, config, 6);
+            fail("PoolUtils.shardedPool must not allow more shards than objects.");
+        } catch (final IllegalArgumentException iae) {
+            // expected
+        }
+
+        final ObjectPool<Object> pool = PoolUtils.shardedPool(factory, config, 2);
+        pool.addObject();
+        pool.addObject();
+        assertEquals(2, pool.getNumIdle());
+
+        // A single thread can use the capacity of every shard
+        final List<Object> borrowed = new ArrayList<Object>();
+        for (int i = 0; i < 5; i++) {
+            borrowed.add(pool.borrowObject());
+        }
+        assertEquals(5, pool.getNumActive());
+        assertEquals(0, pool.getNumIdle());
+        try {
+            pool.borrowObject();
+            fail("Sharded pool must respect maxTotal.");
+        } catch (final NoSuchElementException nsee) {
+            // expected
+        }
+
+        try {
+            pool.returnObject(new Object());
+            fail("Sharded pool must reject objects it did not lend.");
+        } catch (final IllegalStateException ise) {
+            // expected
+        }
+
+        pool.invalidateObject(borrowed.remove(0));
+        for (final Object obj : borrowed) {
+            pool.returnObject(obj);
+        }
+        assertEquals(0, pool.getNumActive());
+        assertEquals(4, pool.getNumIdle());
+        pool.close();
+    }
+
+    @Test(timeout=60000)
+    public void testShardedPoolWaitsOnEveryShard() throws Exception {
+        final PooledObjectFactory<Object> factory =
+                new BasePooledObjectFactory<Object>() {
+            @Override
+            public Object create() {
+                return new Object();
+            }
+            @Override
+            public PooledObject<Object> wrap(final Object value) {
+                return new DefaultPooledObject<Object>(value);
+            }
+        };
+        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setMaxTotal(2);
+        config.setMaxIdle(1);
+        config.setMaxWaitMillis(10000);
+        config.setJmxEnabled(false);
+        final ObjectPool<Object> pool = PoolUtils.shardedPool(factory, config, 2);
+
+        final Object first = pool.borrowObject();
+        final Object second = pool.borrowObject();
+        final List<Object> result = Collections.synchronizedList(new ArrayList<Object>());
+        final Thread[] waiters = new Thread[2];
+        for (int i = 0; i < waiters.length; i++) {
+            waiters[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        result.add(pool.borrowObject());
+                    } catch (final Exception e) {
+                        // Not expected; detected by the assertion below
+                    }
+                }
+            };
+            waiters[i].start();
+        }
+        Thread.sleep(200);
+        // Each waiter gets an object, whichever shard it is returned to
+        pool.returnObject(first);
+        pool.invalidateObject(second);
+        for (final Thread waiter : waiters) {
+            waiter.join(5000);
+        }
+        assertEquals(2, result.size());
+        pool.close();
+    }
+
+    @Test(timeout=60000)
+    public void testShardedPoolSkipsFailingShards() throws Exception {
+        final boolean[] failCreate = new boolean[1];
+        final PooledObjectFactory<Object> factory =
+                new BasePooledObjectFactory<Object>() {
+            @Override
+            public Object create() {
+                if (failCreate[0]) {
+                    throw new IllegalStateException("makeObject failed");
+                }
+                return new Object();
+            }
+            @Override
+            public PooledObject<Object> wrap(final Object value) {
+                return new DefaultPooledObject<Object>(value);
+            }
+        };
+        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setMaxTotal(10);
+        config.setMaxIdle(8);
+        config.setJmxEnabled(false);
+        // More shards than maxIdle
+        final ObjectPool<Object> pool = PoolUtils.shardedPool(factory, config, 10);
+        final List<Object> borrowed = new ArrayList<Object>();
+        for (int i = 0; i < 10; i++) {
+            borrowed.add(pool.borrowObject());
+        }
+        for (final Object obj : borrowed) {
+            pool.returnObject(obj);
+        }
+        // Every shard keeps at least one idle object
+        assertEquals(10, pool.getNumIdle());
+
+        pool.clear();
+        pool.addObject();
+        failCreate[0] = true;
+        // Whichever shard is tried first, the idle object is found
+        final Object obj = pool.borrowObject();
+        assertNotNull(obj);
+        pool.returnObject(obj);
+        pool.clear();
+        try {
+            pool.borrowObject();
+            fail("Expected the factory failure");
+        } catch (final IllegalStateException ise) {
+            assertEquals("makeObject failed", ise.getMessage());
+        }
+        pool.close();
+    }
+
     @Test
     public void testTimerHolder() {
         final PoolUtils.TimerHolder h = new PoolUtils.TimerHolder();
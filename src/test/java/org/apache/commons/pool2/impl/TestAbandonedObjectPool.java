@@ -285,6 +285,36 @@ public class TestAbandonedObjectPool {
         Assert.assertTrue(baos.toString().indexOf("Pooled object") >= 0);
     }
 
+    /**
+     * Objects that are still being used are rescheduled rather than removed
+     * when their original deadline passes.
+     */
+    @Test
+    public void testUseDefersAbandonment() throws Exception {
+        abandonedConfig.setRemoveAbandonedOnBorrow(false);
+        abandonedConfig.setRemoveAbandonedOnMaintenance(true);
+        abandonedConfig.setUseUsageTracking(true);
+        abandonedConfig.setRemoveAbandonedTimeout(1);
+        pool.setAbandonedConfig(abandonedConfig);
+        final PooledTestObject used = pool.borrowObject();
+        final PooledTestObject unused = pool.borrowObject();
+
+        final long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < 1500) {
+            pool.use(used);
+            Thread.sleep(50);
+        }
+        pool.evict();
+        Assert.assertTrue(unused.isDestroyed());
+        Assert.assertFalse(used.isDestroyed());
+        Assert.assertEquals(1, pool.getNumActive());
+
+        Thread.sleep(1500);
+        pool.evict();
+        Assert.assertTrue(used.isDestroyed());
+        Assert.assertEquals(0, pool.getNumActive());
+    }
+
     class ConcurrentBorrower extends Thread {
         private final ArrayList<PooledTestObject> _borrowed;
 
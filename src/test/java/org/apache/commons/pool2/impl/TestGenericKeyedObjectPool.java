@@ -29,7 +29,9 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
@@ -37,11 +39,14 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -57,8 +62,10 @@ import org.apache.commons.pool2.VisitTracker;
 import org.apache.commons.pool2.VisitTrackerFactory;
 import org.apache.commons.pool2.Waiter;
 import org.apache.commons.pool2.WaiterFactory;
+import org.apache.commons.pool2.impl.TestGenericObjectPool.RecordingEventListener;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -247,6 +254,111 @@ public class TestGenericKeyedObjectPool extends TestKeyedObjectPool {
         }
     }
 
+    @Test(timeout=60000)
+    public void testPerKeyConfigResolver() throws Exception {
+        pool.setMaxTotalPerKey(2);
+        pool.setMaxIdlePerKey(2);
+        pool.setBlockWhenExhausted(false);
+        pool.setPerKeyConfigResolver(new PerKeyConfigResolver<String>() {
+            @Override
+            public PerKeyConfig resolve(final String key) {
+                if ("hot".equals(key)) {
+                    return new PerKeyConfig(4, 3, 2);
+                }
+                return null;
+            }
+        });
+
+        assertEquals(4, pool.getMaxTotalPerKey("hot"));
+        assertEquals(3, pool.getMaxIdlePerKey("hot"));
+        assertEquals(2, pool.getMinIdlePerKey("hot"));
+        assertEquals(2, pool.getMaxTotalPerKey("cold"));
+
+        // The overridden limit applies to the hot key only
+        final String[] hot = new String[4];
+        for (int i = 0; i < 4; i++) {
+            hot[i] = pool.borrowObject("hot");
+        }
+        try {
+            pool.borrowObject("hot");
+            fail("Expected NoSuchElementException");
+        } catch(final NoSuchElementException e) {
+            // expected
+        }
+        pool.borrowObject("cold");
+        pool.borrowObject("cold");
+        try {
+            pool.borrowObject("cold");
+            fail("Expected NoSuchElementException");
+        } catch(final NoSuchElementException e) {
+            // expected
+        }
+
+        // maxIdle for the hot key is 3
+        for (int i = 0; i < 4; i++) {
+            pool.returnObject("hot", hot[i]);
+        }
+        assertEquals(3, pool.getNumIdle("hot"));
+
+        // minIdle for the hot key is 2, none for other keys
+        pool.clear("hot");
+        pool.preparePool("hot");
+        pool.preparePool("other");
+        assertEquals(2, pool.getNumIdle("hot"));
+        assertEquals(0, pool.getNumIdle("other"));
+    }
+
+    @Test(timeout=60000)
+    public void testWeightedFairSharing() throws Exception {
+        pool.setMaxTotalPerKey(-1);
+        pool.setMaxIdlePerKey(-1);
+        pool.setMaxTotal(6);
+        pool.setBlockWhenExhausted(false);
+        pool.setWeightedFairSharing(true);
+        pool.setPerKeyConfigResolver(new PerKeyConfigResolver<String>() {
+            @Override
+            public PerKeyConfig resolve(final String key) {
+                if ("heavy".equals(key)) {
+                    return new PerKeyConfig(-1, -1, 0, 2, 0);
+                }
+                if ("reserved".equals(key)) {
+                    return new PerKeyConfig(-1, -1, 0, 1, 1);
+                }
+                return null;
+            }
+        });
+
+        // A single key may use all the capacity while nobody else needs it
+        final String[] active = new String[6];
+        for (int i = 0; i < 6; i++) {
+            active[i] = pool.borrowObject("light");
+        }
+        for (int i = 0; i < 6; i++) {
+            pool.returnObject("light", active[i]);
+        }
+        assertEquals(6, pool.getNumIdle("light"));
+
+        // heavy has twice the weight of light so it may take 4 of the 6
+        for (int i = 0; i < 4; i++) {
+            pool.borrowObject("heavy");
+        }
+        assertEquals(2, pool.getNumIdle("light"));
+        try {
+            pool.borrowObject("heavy");
+            fail("Expected NoSuchElementException");
+        } catch(final NoSuchElementException e) {
+            // expected
+        }
+        assertEquals(2, pool.getNumIdle("light"));
+
+        // reserved is guaranteed one instance even though it is over its
+        // weighted share once it has it
+        pool.borrowObject("reserved");
+        assertEquals(1, pool.getNumIdle("light"));
+        assertEquals(1, pool.getNumActive("reserved"));
+        assertEquals(6, pool.getNumActive() + pool.getNumIdle());
+    }
+
     @Test(timeout=60000)
     public void testMaxTotalPerKeyZero() throws Exception {
         pool.setMaxTotalPerKey(0);
@@ -712,6 +824,435 @@ public class TestGenericKeyedObjectPool extends TestKeyedObjectPool {
         assertTrue("Should be 5 idle, found " + pool.getNumIdle(),pool.getNumIdle() == 5);
     }
 
+    @Test(timeout=60000)
+    public void testEnsureMinIdleWithExecutor() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            pool.setMaxTotalPerKey(5);
+            pool.setMinIdlePerKey(3);
+            pool.setMinIdleExecutor(executor);
+            final String[] keys = new String[] {"a", "b", "c", "d"};
+            for (final String key : keys) {
+                pool.returnObject(key, pool.borrowObject(key));
+                assertEquals(1, pool.getNumIdle(key));
+            }
+
+            pool.ensureMinIdle();
+            for (final String key : keys) {
+                assertEquals(3, pool.getNumIdle(key));
+            }
+
+            // Only the key that lost idle instances needs replenishing
+            final String obj = pool.borrowObject("b");
+            assertEquals(2, pool.getNumIdle("b"));
+            pool.ensureMinIdle();
+            assertEquals(3, pool.getNumIdle("b"));
+            assertEquals(1, pool.getNumActive("b"));
+            pool.returnObject("b", obj);
+            assertEquals(4, pool.getNumIdle("b"));
+
+            // Keys that cannot reach the minimum are retried on the next run
+            pool.invalidateObject("c", pool.borrowObject("c"));
+            pool.invalidateObject("c", pool.borrowObject("c"));
+            pool.setMaxTotal(12);
+            pool.ensureMinIdle();
+            assertEquals(2, pool.getNumIdle("c"));
+            pool.setMaxTotal(-1);
+            pool.ensureMinIdle();
+            assertEquals(3, pool.getNumIdle("c"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testShardedEviction() throws Exception {
+        pool.setMaxIdlePerKey(-1);
+        pool.setMinEvictableIdleTimeMillis(50L);
+        pool.setEvictionShardCount(3);
+        assertEquals(3, pool.getEvictionShardCount());
+
+        final String[] keys = {"a", "b", "c", "d", "e", "f"};
+        for (final String key : keys) {
+            pool.addObject(key);
+            pool.addObject(key);
+        }
+        assertEquals(12, pool.getNumIdle());
+        Thread.sleep(100L);
+
+        // One shard per run, so every key is examined within three runs
+        pool.evict();
+        pool.evict();
+        assertEquals(0, pool.getEvictionCycleCount());
+        pool.evict();
+        assertEquals(1, pool.getEvictionCycleCount());
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(0, pool.getEvictionShardCursor());
+
+        // A time budget lets a single run examine every shard
+        for (final String key : keys) {
+            pool.addObject(key);
+        }
+        Thread.sleep(100L);
+        pool.setEvictionTimeBudgetMillis(60000L);
+        pool.evict();
+        assertEquals(2, pool.getEvictionCycleCount());
+        assertEquals(0, pool.getNumIdle());
+
+        // Keys registered after sharding are visited too, and resharding
+        // keeps existing keys
+        pool.setEvictionTimeBudgetMillis(-1L);
+        pool.addObject("g");
+        pool.setEvictionShardCount(1);
+        Thread.sleep(100L);
+        pool.evict();
+        assertEquals(0, pool.getNumIdle());
+
+        pool.setEvictionShardCount(0);
+        assertEquals(0, pool.getEvictionShardCount());
+    }
+
+    @Test(timeout=60000)
+    public void testKeyRetention() throws Exception {
+        pool.setMaxIdlePerKey(0);
+        pool.setKeyRetentionTimeMillis(100L);
+        // Retained keys are only removed by the evictor
+        pool.setTimeBetweenEvictionRunsMillis(Long.MAX_VALUE);
+
+        final String obj = pool.borrowObject("a");
+        pool.returnObject("a", obj);
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(0, pool.getNumActive());
+        assertTrue(pool.getNumActivePerKey().containsKey("a"));
+
+        // Not removed until the retention time has passed
+        pool.evict();
+        assertTrue(pool.getNumActivePerKey().containsKey("a"));
+        Thread.sleep(150L);
+        pool.evict();
+        assertFalse(pool.getNumActivePerKey().containsKey("a"));
+
+        // Keys in use are never removed
+        final String obj2 = pool.borrowObject("b");
+        Thread.sleep(150L);
+        pool.evict();
+        assertTrue(pool.getNumActivePerKey().containsKey("b"));
+        pool.returnObject("b", obj2);
+        assertTrue(pool.getNumActivePerKey().containsKey("b"));
+
+        // Stopping the evictor removes the retained keys
+        pool.setTimeBetweenEvictionRunsMillis(-1L);
+        assertFalse(pool.getNumActivePerKey().containsKey("b"));
+        pool.returnObject("d", pool.borrowObject("d"));
+        assertFalse(pool.getNumActivePerKey().containsKey("d"));
+
+        // Without retention keys are removed immediately
+        pool.setKeyRetentionTimeMillis(0L);
+        pool.returnObject("c", pool.borrowObject("c"));
+        assertFalse(pool.getNumActivePerKey().containsKey("c"));
+    }
+
+    @Test(timeout=60000)
+    public void testFallbackKeyResolver() throws Exception {
+        pool.setFallbackKeyResolver(new FallbackKeyResolver<String>() {
+            @Override
+            public List<String> getFallbackKeys(final String key) {
+                return "a".equals(key) ? Arrays.asList("x", "a", "b") : null;
+            }
+        });
+        pool.addObject("b");
+
+        // Idle instance of the fallback key is used in preference to creating
+        final String obj = pool.borrowObject("a");
+        assertEquals("b0", obj);
+        assertEquals(1, pool.getFallbackBorrowCount());
+        assertEquals(0, pool.getNumActive("a"));
+        assertEquals(1, pool.getNumActive("b"));
+
+        // Returned to the sub-pool it belongs to
+        pool.returnObject("a", obj);
+        assertEquals(0, pool.getNumActive("b"));
+        assertEquals(1, pool.getNumIdle("b"));
+        assertEquals(0, pool.getNumIdle("a"));
+
+        // Requested key is preferred when it has idle instances
+        pool.addObject("a");
+        assertEquals("a1", pool.borrowObject("a"));
+        assertEquals(1, pool.getFallbackBorrowCount());
+
+        // Invalidation via the requested key
+        final String obj2 = pool.borrowObject("a");
+        assertEquals("b0", obj2);
+        pool.invalidateObject("a", obj2);
+        assertEquals(0, pool.getNumActive("b"));
+        assertEquals(0, pool.getNumIdle("b"));
+
+        // Nothing idle anywhere so a new instance is created for the key
+        assertEquals("a2", pool.borrowObject("a"));
+        assertEquals(2, pool.getFallbackBorrowCount());
+    }
+
+    @Test(timeout=60000)
+    public void testBorrowObjects() throws Exception {
+        pool.setMaxTotalPerKey(1);
+
+        final List<String> objects = pool.borrowObjects(Arrays.asList("a", "b"), -1);
+        assertEquals(Arrays.asList("a0", "b1"), objects);
+        pool.returnObject("a", objects.get(0));
+
+        // All or nothing - "a" is not held after failing to get "b"
+        try {
+            pool.borrowObjects(Arrays.asList("a", "b"), 50);
+            fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException e) {
+            // expected
+        }
+        assertEquals(0, pool.getNumActive("a"));
+        assertEquals(1, pool.getNumIdle("a"));
+
+        // Waits across keys until the objects become available
+        final String b = objects.get(1);
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (final InterruptedException e) {
+                    // ignore
+                }
+                pool.returnObject("b", b);
+            }
+        };
+        t.start();
+        final List<String> objects2 = pool.borrowObjects(Arrays.asList("a", "b"), 5000);
+        assertEquals(objects, objects2);
+        t.join();
+        assertEquals(2, pool.getNumActive());
+    }
+
+    @Test(timeout=60000)
+    public void testPreparePoolInParallel() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            factory.setMakeLatency(200);
+            pool.setMinIdlePerKey(4);
+            pool.addObject("two");
+            final long start = System.currentTimeMillis();
+            final Future<Void> ready = pool.preparePool(
+                    Arrays.asList("one", "two"), executor, 4, 0.5);
+            ready.get();
+            // Four objects in parallel rather than one after another
+            assertTrue(System.currentTimeMillis() - start < 800);
+            assertEquals(7, pool.getWarmUpTarget());
+            assertTrue(pool.getWarmUpCreatedCount() >= 4);
+            // Keys are warmed up together
+            assertTrue(pool.getNumIdle("one") >= 2);
+            while (pool.getWarmUpCreatedCount() < 7) {
+                Thread.sleep(50);
+            }
+            assertEquals(4, pool.getNumIdle("one"));
+            assertEquals(4, pool.getNumIdle("two"));
+
+            factory.exceptionOnCreate = true;
+            try {
+                pool.preparePool(Arrays.asList("three"), executor, 2, 1).get();
+                fail("Expected the warm-up to fail");
+            } catch (final ExecutionException ee) {
+                // expected
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testEventListener() throws Exception {
+        final RecordingEventListener listener = new RecordingEventListener();
+        pool.setEventListener(listener);
+
+        pool.returnObject("one", pool.borrowObject("one"));
+        pool.returnObject("one", pool.borrowObject("one"));
+        assertEquals(Arrays.asList("create:one", "borrow:one:true",
+                "return:one", "borrow:one:false", "return:one"),
+                listener.getEvents());
+        assertEquals(pool.getJmxName(), listener.getLastPool());
+
+        pool.setTestOnReturn(true);
+        factory.setValidationEnabled(true);
+        final String obj = pool.borrowObject("two");
+        factory.setValid(false);
+        pool.returnObject("two", obj);
+        assertEquals(Arrays.asList("create:two", "borrow:two:true",
+                "invalid:two", "destroy:two", "return:two"),
+                listener.getEvents());
+        factory.setValid(true);
+        factory.setValidationEnabled(false);
+        pool.setTestOnReturn(false);
+
+        pool.addObject("two");
+        pool.setMinEvictableIdleTimeMillis(1);
+        pool.setNumTestsPerEvictionRun(3);
+        Thread.sleep(20);
+        pool.evict();
+        final List<String> events = listener.getEvents();
+        assertEquals(4, events.size());
+        assertTrue(events.containsAll(Arrays.asList("create:two",
+                "destroy:one", "destroy:two")));
+        assertEquals("evict:2:2", events.get(3));
+
+        // Every run is reported, even when there is nothing to examine
+        pool.evict();
+        assertEquals(Arrays.asList("evict:0:0"), listener.getEvents());
+    }
+
+    @Test(timeout=60000)
+    public void testMemoryPressure() throws Exception {
+        pool.setMaxIdlePerKey(8);
+        for (int i = 0; i < 5; i++) {
+            pool.addObject("one");
+            pool.addObject("two");
+        }
+        pool.setMemoryPressureMaxIdle(1);
+        // Make sure the tenured heap is not empty after the last collection
+        System.gc();
+        pool.setMemoryPressureThreshold(Double.MIN_VALUE);
+        Assume.assumeTrue(pool.isUnderMemoryPressure());
+        assertEquals(1, pool.getNumIdle("one"));
+        assertEquals(1, pool.getNumIdle("two"));
+        assertEquals(1, pool.getMaxIdlePerKey("one"));
+
+        final String a = pool.borrowObject("one");
+        final String b = pool.borrowObject("one");
+        pool.returnObject("one", a);
+        pool.returnObject("one", b);
+        assertEquals(1, pool.getNumIdle("one"));
+
+        pool.setMemoryPressureThreshold(-1);
+        assertEquals(8, pool.getMaxIdlePerKey("one"));
+        final String c = pool.borrowObject("one");
+        final String d = pool.borrowObject("one");
+        pool.returnObject("one", c);
+        pool.returnObject("one", d);
+        assertEquals(2, pool.getNumIdle("one"));
+    }
+
+    @Test(timeout=60000)
+    public void testHotKeys() throws Exception {
+        pool.setMaxIdlePerKey(1);
+        pool.setHotKeyCount(1);
+        pool.setMinIdlePerHotKey(3);
+        pool.setMaxIdlePerHotKey(4);
+
+        for (int i = 0; i < 10; i++) {
+            pool.returnObject("hot", pool.borrowObject("hot"));
+        }
+        pool.returnObject("cold", pool.borrowObject("cold"));
+        assertTrue(pool.getHotKeys().isEmpty());
+
+        pool.evict();
+        assertEquals(Arrays.asList("hot"), pool.getHotKeys());
+        assertEquals(Arrays.asList("hot"), pool.getHotKeyNames());
+        assertEquals(3, pool.getMinIdlePerKey("hot"));
+        assertEquals(4, pool.getMaxIdlePerKey("hot"));
+        assertEquals(0, pool.getMinIdlePerKey("cold"));
+        assertEquals(1, pool.getMaxIdlePerKey("cold"));
+
+        // Hot key is replenished to its raised minimum
+        pool.ensureMinIdle();
+        assertEquals(3, pool.getNumIdle("hot"));
+        assertEquals(1, pool.getNumIdle("cold"));
+
+        // Popularity shifts, earlier borrows decay
+        for (int i = 0; i < 20; i++) {
+            pool.returnObject("cold", pool.borrowObject("cold"));
+        }
+        pool.evict();
+        assertEquals(Arrays.asList("cold"), pool.getHotKeys());
+        assertEquals(0, pool.getMinIdlePerKey("hot"));
+        assertEquals(1, pool.getMaxIdlePerKey("hot"));
+        assertEquals(1, pool.getNumIdle("hot"));
+        assertEquals(3, pool.getMinIdlePerKey("cold"));
+
+        pool.setHotKeyCount(0);
+        pool.evict();
+        assertTrue(pool.getHotKeys().isEmpty());
+        assertEquals(0, pool.getMinIdlePerKey("cold"));
+    }
+
+    @Test(timeout=60000)
+    public void testColdKeys() throws Exception {
+        pool.setMaxIdlePerKey(4);
+        pool.setMaxIdlePerColdKey(1);
+        assertEquals(1, pool.getMaxIdlePerColdKey());
+        for (int i = 0; i < 3; i++) {
+            pool.addObject("cold");
+            pool.addObject("warm");
+        }
+        for (int i = 0; i < 3; i++) {
+            pool.returnObject("warm", pool.borrowObject("warm"));
+        }
+
+        // Keys that have not been borrowed are shrunk
+        pool.evict();
+        assertEquals(1, pool.getNumIdle("cold"));
+        assertEquals(3, pool.getNumIdle("warm"));
+
+        // Borrows decay until the key is cold
+        pool.evict();
+        assertEquals(3, pool.getNumIdle("warm"));
+        pool.evict();
+        assertEquals(1, pool.getNumIdle("warm"));
+
+        // Never shrunk below the minimum
+        pool.setMinIdlePerKey(2);
+        pool.addObject("cold");
+        pool.addObject("cold");
+        pool.evict();
+        assertEquals(2, pool.getNumIdle("cold"));
+
+        pool.setMaxIdlePerColdKey(-1);
+        pool.addObject("cold");
+        pool.evict();
+        assertEquals(3, pool.getNumIdle("cold"));
+    }
+
+    @Test(timeout=60000)
+    public void testEnsureMinIdleSkipsKeysWithEnoughIdle() throws Exception {
+        final AtomicInteger examined = new AtomicInteger(0);
+        final ExecutorService executor = new ThreadPoolExecutor(1, 1, 0,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            protected void beforeExecute(final Thread t, final Runnable r) {
+                examined.incrementAndGet();
+            }
+        };
+        try {
+            pool.setMinIdlePerKey(2);
+            pool.setMinIdleExecutor(executor);
+            for (int i = 0; i < 3; i++) {
+                pool.addObject("a");
+            }
+            pool.ensureMinIdle();
+            assertEquals(1, examined.getAndSet(0));
+
+            // Still at the minimum while borrowed
+            pool.returnObject("a", pool.borrowObject("a"));
+            pool.ensureMinIdle();
+            assertEquals(0, examined.get());
+
+            // Below the minimum
+            final String obj1 = pool.borrowObject("a");
+            final String obj2 = pool.borrowObject("a");
+            pool.ensureMinIdle();
+            assertEquals(1, examined.get());
+            assertEquals(2, pool.getNumIdle("a"));
+            pool.returnObject("a", obj1);
+            pool.returnObject("a", obj2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test(timeout=60000)
     public void testFIFO() throws Exception {
         pool.setLifo(false);
@@ -21,12 +21,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.lang.management.ManagementFactory;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -34,6 +36,10 @@ import java.util.Random;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -53,6 +59,7 @@ import org.apache.commons.pool2.Waiter;
 import org.apache.commons.pool2.WaiterFactory;
 import org.junit.After;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -1709,6 +1716,70 @@ public class TestGenericObjectPool extends TestBaseObjectPool {
         assertEquals("timeBetweenEvictionRunsMillis",expected.getTimeBetweenEvictionRunsMillis(),actual.getTimeBetweenEvictionRunsMillis());
     }
 
+    /**
+     * Records pool events as strings so tests can compare sequences of events.
+     */
+    static class RecordingEventListener extends BasePoolEventListener {
+        private final List<String> events = new ArrayList<String>();
+        private volatile ObjectName lastPool;
+
+        @Override
+        public synchronized void onBorrow(final ObjectName pool, final Object key,
+                final long waitTimeMillis, final boolean created) {
+            record(pool, "borrow:" + key + ":" + created);
+        }
+
+        @Override
+        public synchronized void onReturn(final ObjectName pool, final Object key,
+                final long activeTimeMillis) {
+            record(pool, "return:" + key);
+        }
+
+        @Override
+        public synchronized void onCreate(final ObjectName pool, final Object key,
+                final long createTimeNanos) {
+            record(pool, "create:" + key);
+        }
+
+        @Override
+        public synchronized void onDestroy(final ObjectName pool, final Object key) {
+            record(pool, "destroy:" + key);
+        }
+
+        @Override
+        public synchronized void onValidationFailure(final ObjectName pool,
+                final Object key) {
+            record(pool, "invalid:" + key);
+        }
+
+        @Override
+        public synchronized void onEvictionRun(final ObjectName pool,
+                final long runTimeNanos, final int examined, final int evicted) {
+            record(pool, "evict:" + examined + ":" + evicted);
+        }
+
+        @Override
+        public synchronized void onAbandoned(final ObjectName pool,
+                final Object key, final long activeTimeMillis) {
+            record(pool, "abandoned:" + key);
+        }
+
+        private void record(final ObjectName pool, final String event) {
+            lastPool = pool;
+            events.add(event);
+        }
+
+        synchronized List<String> getEvents() {
+            final List<String> result = new ArrayList<String>(events);
+            events.clear();
+            return result;
+        }
+
+        ObjectName getLastPool() {
+            return lastPool;
+        }
+    }
+
     public static class SimpleFactory implements PooledObjectFactory<String> {
         public SimpleFactory() {
             this(true);
@@ -2501,6 +2572,209 @@ public class TestGenericObjectPool extends TestBaseObjectPool {
         Assert.assertEquals(0, pool.getNumIdle());
     }
 
+    @Test(timeout=60000)
+    public void testPreparePoolInParallel() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            factory.setMakeLatency(200);
+            pool.setMaxTotal(10);
+            pool.setMaxIdle(10);
+            pool.setMinIdle(10);
+            final long start = System.currentTimeMillis();
+            final Future<Void> ready = pool.preparePool(executor, 5, 0.5);
+            ready.get();
+            // Five objects in parallel rather than one after another
+            assertTrue(System.currentTimeMillis() - start < 1000);
+            assertEquals(10, pool.getWarmUpTarget());
+            assertTrue(pool.getWarmUpCreatedCount() >= 5);
+            while (pool.getWarmUpCreatedCount() < 10) {
+                Thread.sleep(50);
+            }
+            assertEquals(10, pool.getNumIdle());
+
+            // Already at minIdle
+            assertTrue(pool.preparePool(executor, 5, 1).isDone());
+            assertEquals(0, pool.getWarmUpTarget());
+
+            // A factory failure completes the warm-up
+            pool.clear();
+            factory.setMaxTotal(3);
+            try {
+                pool.preparePool(executor, 2, 1).get();
+                fail("Expected the warm-up to fail");
+            } catch (final ExecutionException ee) {
+                assertTrue(ee.getCause() instanceof IllegalStateException);
+            }
+
+            try {
+                pool.preparePool(executor, 0, 1);
+                fail("Expected IllegalArgumentException");
+            } catch (final IllegalArgumentException iae) {
+                // expected
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testEventListener() throws Exception {
+        final RecordingEventListener listener = new RecordingEventListener();
+        pool.setEventListener(listener);
+        assertSame(listener, pool.getEventListener());
+
+        pool.returnObject(pool.borrowObject());
+        pool.returnObject(pool.borrowObject());
+        assertEquals(Arrays.asList("create:null", "borrow:null:true",
+                "return:null", "borrow:null:false", "return:null"),
+                listener.getEvents());
+        assertEquals(pool.getJmxName(), listener.getLastPool());
+
+        pool.setTestOnBorrow(true);
+        factory.setValid(false);
+        try {
+            pool.borrowObject();
+            fail("Expected NoSuchElementException");
+        } catch (final NoSuchElementException nsee) {
+            // expected
+        }
+        assertEquals(Arrays.asList("invalid:null", "destroy:null",
+                "create:null", "invalid:null", "destroy:null"),
+                listener.getEvents());
+        factory.setValid(true);
+        pool.setTestOnBorrow(false);
+
+        pool.addObject();
+        pool.addObject();
+        pool.setMinEvictableIdleTimeMillis(1);
+        pool.setNumTestsPerEvictionRun(3);
+        Thread.sleep(20);
+        pool.evict();
+        assertEquals(Arrays.asList("create:null", "create:null",
+                "destroy:null", "destroy:null", "evict:2:2"),
+                listener.getEvents());
+
+        // The run is reported when destroying an object fails
+        pool.addObject();
+        Thread.sleep(20);
+        factory.setThrowExceptionOnDestroy(true);
+        try {
+            pool.evict();
+            fail("Expected Exception");
+        } catch (final Exception e) {
+            // expected
+        }
+        factory.setThrowExceptionOnDestroy(false);
+        final List<String> events = listener.getEvents();
+        assertEquals("evict:1:0", events.get(events.size() - 1));
+
+        final AbandonedConfig abandonedConfig = new AbandonedConfig();
+        abandonedConfig.setRemoveAbandonedOnMaintenance(true);
+        abandonedConfig.setRemoveAbandonedTimeout(1);
+        pool.setAbandonedConfig(abandonedConfig);
+        pool.borrowObject();
+        Thread.sleep(2000);
+        pool.evict();
+        // Every run is reported, even when there is nothing to examine
+        assertEquals(Arrays.asList("create:null", "borrow:null:true",
+                "evict:0:0", "abandoned:null", "destroy:null"),
+                listener.getEvents());
+
+        // A failing listener must not break the pool
+        final List<Exception> swallowed = new ArrayList<Exception>();
+        pool.setSwallowedExceptionListener(new SwallowedExceptionListener() {
+            @Override
+            public void onSwallowException(final Exception e) {
+                swallowed.add(e);
+            }
+        });
+        pool.setEventListener(new BasePoolEventListener() {
+            @Override
+            public void onBorrow(final ObjectName pool, final Object key,
+                    final long waitTimeMillis, final boolean created) {
+                throw new IllegalStateException();
+            }
+        });
+        pool.returnObject(pool.borrowObject());
+        assertEquals(1, swallowed.size());
+        assertTrue(swallowed.get(0) instanceof IllegalStateException);
+    }
+
+    @Test(timeout=60000)
+    public void testMemoryPressure() throws Exception {
+        pool.setMaxIdle(8);
+        pool.setMinIdle(4);
+        for (int i = 0; i < 6; i++) {
+            pool.addObject();
+        }
+        pool.setMemoryPressureMaxIdle(2);
+        // Make sure the tenured heap is not empty after the last collection
+        System.gc();
+        pool.setMemoryPressureThreshold(Double.MIN_VALUE);
+        Assume.assumeTrue(pool.isUnderMemoryPressure());
+        assertEquals(1, pool.getMemoryPressureCount());
+        assertEquals(2, pool.getNumIdle());
+
+        // Idle objects are held to the lower limit
+        final List<String> borrowed = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            borrowed.add(pool.borrowObject());
+        }
+        for (final String obj : borrowed) {
+            pool.returnObject(obj);
+        }
+        assertEquals(2, pool.getNumIdle());
+        pool.ensureMinIdle();
+        assertEquals(2, pool.getNumIdle());
+
+        // Pressure subsides when the usage is checked against a higher
+        // threshold
+        pool.setMemoryPressureThreshold(1.5);
+        assertFalse(pool.isUnderMemoryPressure());
+        for (int i = 0; i < 4; i++) {
+            pool.addObject();
+        }
+        // A garbage collection notification only flags the pressure
+        pool.updateMemoryPressure(2);
+        assertTrue(pool.isUnderMemoryPressure());
+        assertEquals(2, pool.getMemoryPressureCount());
+        assertEquals(6, pool.getNumIdle());
+        // and the evictor clears it again
+        pool.setTimeBetweenEvictionRunsMillis(50);
+        while (pool.isUnderMemoryPressure()) {
+            Thread.sleep(10);
+        }
+        pool.setTimeBetweenEvictionRunsMillis(-1);
+        assertEquals(6, pool.getNumIdle());
+
+        // Normal limits once pressure is no longer monitored
+        pool.setMemoryPressureThreshold(-1);
+        assertFalse(pool.isUnderMemoryPressure());
+        borrowed.clear();
+        for (int i = 0; i < 6; i++) {
+            borrowed.add(pool.borrowObject());
+        }
+        for (final String obj : borrowed) {
+            pool.returnObject(obj);
+        }
+        assertEquals(6, pool.getNumIdle());
+    }
+
+    @Test
+    public void testMemoryPressureConfig() throws Exception {
+        final GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        assertEquals(BaseObjectPoolConfig.DEFAULT_MEMORY_PRESSURE_THRESHOLD,
+                pool.getMemoryPressureThreshold(), 0);
+        assertEquals(BaseObjectPoolConfig.DEFAULT_MEMORY_PRESSURE_MAX_IDLE,
+                pool.getMemoryPressureMaxIdle());
+        assertFalse(pool.isUnderMemoryPressure());
+        config.setMemoryPressureThreshold(0.9);
+        config.setMemoryPressureMaxIdle(3);
+        pool.setConfig(config);
+        assertEquals(0.9, pool.getMemoryPressureThreshold(), 0);
+        assertEquals(3, pool.getMemoryPressureMaxIdle());
+    }
+
     private static final class DummyFactory
             extends BasePooledObjectFactory<Object> {
         @Override
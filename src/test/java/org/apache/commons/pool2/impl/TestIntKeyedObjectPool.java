@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.commons.pool2.impl.TestGenericKeyedObjectPool.SimpleFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IntKeyedObjectPool}.
+ */
+public class TestIntKeyedObjectPool {
+
+    private IntKeyedObjectPool<String> pool = null;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new IntKeyedObjectPool<String>(new SimpleFactory<Integer>());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+        pool = null;
+    }
+
+    @Test(timeout=60000)
+    public void testCanonicalKeys() throws Exception {
+        final int key = 100000;
+        final Integer boxed = pool.getKey(key);
+        assertEquals(Integer.valueOf(key), boxed);
+        assertNotSame(Integer.valueOf(key), boxed);
+        assertSame(boxed, pool.getKey(key));
+        // Enough keys to force the cache to grow
+        for (int i = 0; i < 1000; i++) {
+            assertSame(pool.getKey(key + i), pool.getKey(key + i));
+        }
+        assertSame(boxed, pool.getKey(key));
+        assertEquals(-1, pool.getKey(-1).intValue());
+    }
+
+    @Test(timeout=60000)
+    public void testPrimitiveKeyMethods() throws Exception {
+        final int key = 100000;
+        pool.addObject(key);
+        assertEquals(1, pool.getNumIdle(key));
+        assertEquals(1, pool.getNumIdle(Integer.valueOf(key)));
+
+        final String obj = pool.borrowObject(key);
+        assertEquals(1, pool.getNumActive(key));
+        assertEquals(0, pool.getNumIdle(key));
+        pool.returnObject(key, obj);
+        assertEquals(0, pool.getNumActive(key));
+        assertEquals(1, pool.getNumIdle(key));
+
+        // Interoperates with the boxed key methods
+        final String obj2 = pool.borrowObject(Integer.valueOf(key), 100L);
+        assertEquals(obj, obj2);
+        pool.invalidateObject(key, obj2);
+        assertEquals(0, pool.getNumActive(key));
+
+        pool.returnObject(key, pool.borrowObject(key, 100L));
+        assertEquals(1, pool.getNumIdle(key));
+        pool.clear(key);
+        assertEquals(0, pool.getNumIdle(key));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.commons.pool2.impl.TestGenericKeyedObjectPool.SimpleFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LongKeyedObjectPool}.
+ */
+public class TestLongKeyedObjectPool {
+
+    private LongKeyedObjectPool<String> pool = null;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new LongKeyedObjectPool<String>(new SimpleFactory<Long>());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+        pool = null;
+    }
+
+    @Test(timeout=60000)
+    public void testCanonicalKeys() throws Exception {
+        final long key = 10000000000L;
+        final Long boxed = pool.getKey(key);
+        assertEquals(Long.valueOf(key), boxed);
+        assertNotSame(Long.valueOf(key), boxed);
+        assertSame(boxed, pool.getKey(key));
+        // Enough keys to force the cache to grow
+        for (long i = 0; i < 1000; i++) {
+            assertSame(pool.getKey(key + i), pool.getKey(key + i));
+        }
+        assertSame(boxed, pool.getKey(key));
+        assertEquals(-1L, pool.getKey(-1L).longValue());
+    }
+
+    @Test(timeout=60000)
+    public void testFullCache() throws Exception {
+        final BoxedKeyCache<Long> cache = new BoxedKeyCache<Long>() {
+            @Override
+            Long box(final long key) {
+                return Long.valueOf(key);
+            }
+        };
+        final long key = 10000000000L;
+        for (long i = 0; i < BoxedKeyCache.MAX_SIZE; i++) {
+            cache.get(key + i);
+        }
+        assertEquals(BoxedKeyCache.MAX_SIZE, cache.size());
+        // Cached keys are still canonical, further keys are boxed each time
+        assertSame(cache.get(key), cache.get(key));
+        final long uncached = key + BoxedKeyCache.MAX_SIZE;
+        assertEquals(uncached, cache.get(uncached).longValue());
+        assertNotSame(cache.get(uncached), cache.get(uncached));
+        assertEquals(BoxedKeyCache.MAX_SIZE, cache.size());
+    }
+
+    @Test(timeout=60000)
+    public void testPrimitiveKeyMethods() throws Exception {
+        final long key = 10000000000L;
+        pool.addObject(key);
+        assertEquals(1, pool.getNumIdle(key));
+        assertEquals(1, pool.getNumIdle(Long.valueOf(key)));
+
+        final String obj = pool.borrowObject(key);
+        assertEquals(1, pool.getNumActive(key));
+        assertEquals(0, pool.getNumIdle(key));
+        pool.returnObject(key, obj);
+        assertEquals(0, pool.getNumActive(key));
+        assertEquals(1, pool.getNumIdle(key));
+
+        // Interoperates with the boxed key methods
+        final String obj2 = pool.borrowObject(Long.valueOf(key), 100L);
+        assertEquals(obj, obj2);
+        pool.invalidateObject(key, obj2);
+        assertEquals(0, pool.getNumActive(key));
+
+        pool.returnObject(key, pool.borrowObject(key, 100L));
+        assertEquals(1, pool.getNumIdle(key));
+        pool.clear(key);
+        assertEquals(0, pool.getNumIdle(key));
+    }
+}
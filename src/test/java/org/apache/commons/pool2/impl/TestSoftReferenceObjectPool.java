@@ -16,11 +16,17 @@
  */
 package org.apache.commons.pool2.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+
 import org.apache.commons.pool2.BasePooledObjectFactory;
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.TestBaseObjectPool;
+import org.junit.Test;
 
 /**
  * @version $Revision$
@@ -52,6 +58,127 @@ public class TestSoftReferenceObjectPool extends TestBaseObjectPool {
         return false;
     }
 
+    /**
+     * A slow factory call in one thread must not block other threads using
+     * the pool.
+     */
+    @Test(timeout=60000)
+    public void testFactoryCallsDoNotBlockPool() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final BlockingFactory factory = new BlockingFactory(entered, release);
+        final SoftReferenceObjectPool<String> pool =
+                new SoftReferenceObjectPool<String>(factory);
+
+        final String obj = pool.borrowObject();
+        factory.block = true;
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    pool.borrowObject();
+                } catch (final Exception e) {
+                    // ignore
+                }
+            }
+        };
+        t.start();
+        entered.await();
+
+        // Thread t is inside makeObject()
+        assertEquals(1, pool.getNumActive());
+        pool.returnObject(obj);
+        assertEquals(0, pool.getNumActive());
+        assertEquals(1, pool.getNumIdle());
+
+        release.countDown();
+        t.join();
+        assertEquals(1, pool.getNumActive());
+        pool.close();
+    }
+
+    /**
+     * Objects are found by identity, so returning an equal but different
+     * object fails rather than corrupting the pool.
+     */
+    @Test(timeout=60000)
+    public void testReferencesFoundByIdentity() throws Exception {
+        final SoftReferenceObjectPool<String> pool =
+                new SoftReferenceObjectPool<String>(new SimpleFactory());
+        final String obj = pool.borrowObject();
+        try {
+            pool.returnObject(new String(obj));
+            fail("Expected IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, pool.getNumActive());
+        pool.returnObject(obj);
+        assertEquals(0, pool.getNumActive());
+        assertEquals(1, pool.getNumIdle());
+        try {
+            pool.returnObject(obj);
+            fail("Expected IllegalStateException");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        pool.invalidateObject(pool.borrowObject());
+        assertEquals(0, pool.getNumActive());
+        assertEquals(0, pool.getNumIdle());
+        pool.close();
+    }
+
+    @Test(timeout=60000)
+    public void testBackgroundPruning() throws Exception {
+        final SoftReferenceObjectPool<String> pool =
+                new SoftReferenceObjectPool<String>(new SimpleFactory());
+        assertEquals(-1, pool.getPruningPeriodMillis());
+        assertEquals(-1, pool.getMaxInlinePrune());
+        pool.setMaxInlinePrune(0);
+        pool.setPruningPeriodMillis(10);
+        assertEquals(0, pool.getMaxInlinePrune());
+        assertEquals(10, pool.getPruningPeriodMillis());
+        for (int i = 0; i < 5; i++) {
+            pool.addObject();
+        }
+        Thread.sleep(50);
+        assertEquals(5, pool.getNumIdle());
+        assertEquals(0, pool.getClearedCount());
+        assertEquals(0, pool.getLastPruneNanos());
+        assertEquals(0, pool.getMaxPruneNanos());
+        pool.setPruningPeriodMillis(-1);
+        assertEquals(-1, pool.getPruningPeriodMillis());
+        pool.setPruningPeriodMillis(10);
+        pool.close();
+        assertEquals(-1, pool.getPruningPeriodMillis());
+        pool.setPruningPeriodMillis(10);
+        assertEquals(10, pool.getPruningPeriodMillis());
+        assertEquals(0, pool.getNumIdle());
+    }
+
+    private static class BlockingFactory extends BasePooledObjectFactory<String> {
+        private final CountDownLatch entered;
+        private final CountDownLatch release;
+        volatile boolean block = false;
+        private int counter = 0;
+
+        BlockingFactory(final CountDownLatch entered, final CountDownLatch release) {
+            this.entered = entered;
+            this.release = release;
+        }
+        @Override
+        public String create() throws Exception {
+            if (block) {
+                entered.countDown();
+                release.await();
+            }
+            return String.valueOf(counter++);
+        }
+        @Override
+        public PooledObject<String> wrap(final String value) {
+            return new DefaultPooledObject<String>(value);
+        }
+    }
 
     private static class SimpleFactory extends BasePooledObjectFactory<String>  {
         int counter = 0;
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.pool2.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.IntKeyedObjectPool;
+import org.apache.commons.pool2.impl.LongKeyedObjectPool;
+
+/**
+ * Compares the borrow / return throughput of {@link GenericKeyedObjectPool}
+ * with boxed keys against {@link IntKeyedObjectPool} and
+ * {@link LongKeyedObjectPool} with primitive keys. Keys are chosen outside
+ * the range of the JDK's box caches so each generic call allocates a key.
+ */
+public class PrimitiveKeyedPerformanceTest {
+
+    private static final int KEY_BASE = 1000000;
+
+    private static class KeyedFactory<K> extends BaseKeyedPooledObjectFactory<K,Object> {
+        @Override
+        public Object create(final K key) {
+            return new Object();
+        }
+        @Override
+        public PooledObject<Object> wrap(final Object value) {
+            return new DefaultPooledObject<Object>(value);
+        }
+    }
+
+    private interface Op {
+        void borrowReturn(int key) throws Exception;
+    }
+
+    private static long run(final String name, final Op op, final int nrThreads,
+            final int nrKeys, final int iterations) throws Exception {
+        final ExecutorService threadPool = Executors.newFixedThreadPool(nrThreads);
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int t = 0; t < nrThreads; t++) {
+            final int offset = t;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = 0; i < iterations; i++) {
+                        op.borrowReturn(KEY_BASE + (i + offset) % nrKeys);
+                    }
+                    return null;
+                }
+            });
+        }
+        final long start = System.nanoTime();
+        for (final Future<Void> future : threadPool.invokeAll(tasks)) {
+            future.get();
+        }
+        final long elapsed = System.nanoTime() - start;
+        threadPool.shutdown();
+        System.out.println(name + "\tthreads: " + nrThreads + "\tkeys: " +
+                nrKeys + "\tns/op: " +
+                elapsed / ((long) nrThreads * iterations));
+        return elapsed;
+    }
+
+    private static void runAll(final int nrThreads, final int nrKeys,
+            final int iterations) throws Exception {
+        final GenericKeyedObjectPool<Integer,Object> generic =
+                new GenericKeyedObjectPool<Integer,Object>(new KeyedFactory<Integer>());
+        final IntKeyedObjectPool<Object> intPool =
+                new IntKeyedObjectPool<Object>(new KeyedFactory<Integer>());
+        final LongKeyedObjectPool<Object> longPool =
+                new LongKeyedObjectPool<Object>(new KeyedFactory<Long>());
+        generic.setMaxTotalPerKey(-1);
+        intPool.setMaxTotalPerKey(-1);
+        longPool.setMaxTotalPerKey(-1);
+
+        run("generic", new Op() {
+            @Override
+            public void borrowReturn(final int key) throws Exception {
+                final Object o = generic.borrowObject(Integer.valueOf(key));
+                generic.returnObject(Integer.valueOf(key), o);
+            }
+        }, nrThreads, nrKeys, iterations);
+        run("int", new Op() {
+            @Override
+            public void borrowReturn(final int key) throws Exception {
+                intPool.returnObject(key, intPool.borrowObject(key));
+            }
+        }, nrThreads, nrKeys, iterations);
+        run("long", new Op() {
+            @Override
+            public void borrowReturn(final int key) throws Exception {
+                longPool.returnObject(key, longPool.borrowObject((long) key));
+            }
+        }, nrThreads, nrKeys, iterations);
+
+        generic.close();
+        intPool.close();
+        longPool.close();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        System.out.println("Warm up");
+        runAll(4, 100, 50000);
+
+        System.out.println("Increase threads");
+        runAll(1, 100, 200000);
+        runAll(4, 100, 50000);
+        runAll(16, 100, 12500);
+
+        System.out.println("Increase keys");
+        runAll(4, 1000, 50000);
+        runAll(4, 10000, 50000);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.pool2.performance;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.proxy.CglibProxySource;
+import org.apache.commons.pool2.proxy.FastProxySource;
+import org.apache.commons.pool2.proxy.JdkProxySource;
+import org.apache.commons.pool2.proxy.ProxiedObjectPool;
+
+/**
+ * Compares the cost of a method call on a pooled object obtained from a
+ * {@link ProxiedObjectPool} using {@link JdkProxySource},
+ * {@link CglibProxySource} and {@link FastProxySource} with the cost of the
+ * same call on the unproxied object.
+ */
+public class ProxyPerformanceTest {
+
+    public interface Counter {
+        long increment(long by);
+    }
+
+    public static class SimpleCounter implements Counter {
+        private long count = 0;
+        @Override
+        public long increment(final long by) {
+            count += by;
+            return count;
+        }
+    }
+
+    private static class CounterFactory extends BasePooledObjectFactory<Counter> {
+        @Override
+        public Counter create() {
+            return new SimpleCounter();
+        }
+        @Override
+        public PooledObject<Counter> wrap(final Counter value) {
+            return new DefaultPooledObject<Counter>(value);
+        }
+    }
+
+    private static long run(final String name, final ObjectPool<Counter> pool,
+            final int iterations) throws Exception {
+        final Counter counter = pool.borrowObject();
+        long result = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            result += counter.increment(i);
+        }
+        final long elapsed = System.nanoTime() - start;
+        pool.returnObject(counter);
+        System.out.println(name + "\tns/call: " +
+                (double) elapsed / iterations + "\t(" + result + ")");
+        return elapsed;
+    }
+
+    private static void runAll(final int iterations) throws Exception {
+        final ClassLoader classLoader = ProxyPerformanceTest.class.getClassLoader();
+        final Class<?>[] interfaces = new Class<?>[] { Counter.class };
+
+        final GenericObjectPool<Counter> plain =
+                new GenericObjectPool<Counter>(new CounterFactory());
+        run("direct", plain, iterations);
+
+        final GenericObjectPool<Counter> jdkInner =
+                new GenericObjectPool<Counter>(new CounterFactory());
+        run("jdk", new ProxiedObjectPool<Counter>(jdkInner,
+                new JdkProxySource<Counter>(classLoader, interfaces)), iterations);
+
+        final GenericObjectPool<Counter> cglibInner =
+                new GenericObjectPool<Counter>(new CounterFactory());
+        run("cglib", new ProxiedObjectPool<Counter>(cglibInner,
+                new CglibProxySource<Counter>(SimpleCounter.class)), iterations);
+
+        final GenericObjectPool<Counter> fastInner =
+                new GenericObjectPool<Counter>(new CounterFactory());
+        run("fast", new ProxiedObjectPool<Counter>(fastInner,
+                new FastProxySource<Counter>(classLoader, interfaces)), iterations);
+
+        plain.close();
+        jdkInner.close();
+        cglibInner.close();
+        fastInner.close();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        System.out.println("Warm up");
+        runAll(1000000);
+
+        System.out.println("Measure");
+        runAll(10000000);
+    }
+}
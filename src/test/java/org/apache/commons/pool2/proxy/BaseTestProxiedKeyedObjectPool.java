@@ -102,6 +102,30 @@ public abstract class BaseTestProxiedKeyedObjectPool {
     }
 
 
+    @Test(timeout=60000)
+    public void testLeakDetection() throws Exception {
+        final ProxiedKeyedObjectPool<String,TestObject> proxiedPool =
+                (ProxiedKeyedObjectPool<String,TestObject>) pool;
+        proxiedPool.setLeakDetection(true);
+
+        final TestObject kept = pool.borrowObject(KEY1);
+        // Drop the only reference to the second proxy
+        pool.borrowObject(KEY1);
+        assertEquals(2, pool.getNumActive(KEY1));
+
+        while (proxiedPool.getLeakedCount() == 0) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(1, proxiedPool.getLeakedCount());
+        assertEquals(1, pool.getNumActive(KEY1));
+
+        pool.returnObject(KEY1, kept);
+        assertEquals(0, pool.getNumActive(KEY1));
+        pool.close();
+    }
+
+
     @Test
     public void testPassThroughMethods01() throws Exception {
         assertEquals(0, pool.getNumActive());
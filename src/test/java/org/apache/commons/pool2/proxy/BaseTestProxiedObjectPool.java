@@ -17,11 +17,19 @@
 package org.apache.commons.pool2.proxy;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.pool2.BasePooledObjectFactory;
 import org.apache.commons.pool2.ObjectPool;
@@ -38,6 +46,7 @@ import org.junit.Test;
 public abstract class BaseTestProxiedObjectPool {
 
     private static final String DATA1 = "data1";
+    private static final String TEST_OBJECT = TestObject.class.getName();
     private static final int ABANDONED_TIMEOUT_SECS = 3;
 
     private ObjectPool<TestObject> pool = null;
@@ -137,6 +146,151 @@ public abstract class BaseTestProxiedObjectPool {
     }
 
 
+    @Test
+    public void testUsageTrackingInterval() throws Exception {
+        final AtomicInteger uses = new AtomicInteger(0);
+        final GenericObjectPool<TestObject> innerPool =
+                new GenericObjectPool<TestObject>(new TestObjectFactory()) {
+            @Override
+            public void use(final TestObject pooledObject) {
+                uses.incrementAndGet();
+                super.use(pooledObject);
+            }
+        };
+        final ProxiedObjectPool<TestObject> proxiedPool =
+                new ProxiedObjectPool<TestObject>(innerPool, getproxySource());
+        assertEquals(0, proxiedPool.getUsageTrackingInterval());
+        proxiedPool.setUsageTrackingInterval(60000);
+        assertEquals(60000, proxiedPool.getUsageTrackingInterval());
+
+        TestObject obj = proxiedPool.borrowObject();
+        for (int i = 0; i < 10; i++) {
+            obj.setData(DATA1);
+        }
+        assertEquals(1, uses.get());
+        proxiedPool.returnObject(obj);
+
+        // The first use after every borrow is reported
+        obj = proxiedPool.borrowObject();
+        obj.getData();
+        assertEquals(2, uses.get());
+        proxiedPool.returnObject(obj);
+
+        // As is the first use after a gap of at least one interval
+        proxiedPool.setUsageTrackingInterval(100);
+        obj = proxiedPool.borrowObject();
+        obj.getData();
+        obj.getData();
+        assertEquals(3, uses.get());
+        Thread.sleep(150);
+        obj.getData();
+        assertEquals(4, uses.get());
+        proxiedPool.returnObject(obj);
+
+        proxiedPool.setUsageTrackingInterval(0);
+        obj = proxiedPool.borrowObject();
+        obj.getData();
+        obj.getData();
+        assertEquals(6, uses.get());
+        proxiedPool.returnObject(obj);
+        proxiedPool.close();
+    }
+
+
+    @Test
+    public void testCallMetrics() throws Exception {
+        final ProxiedObjectPool<TestObject> proxiedPool =
+                (ProxiedObjectPool<TestObject>) pool;
+        assertNull(proxiedPool.getCallMetrics());
+        proxiedPool.setCallMetricsEnabled(true);
+        final CallMetricsMXBean metrics = proxiedPool.getCallMetrics();
+        assertNotNull(metrics);
+        final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = proxiedPool.getCallMetricsJmxName();
+        assertTrue(mbs.isRegistered(name));
+
+        final TestObject obj = pool.borrowObject();
+        obj.setData(DATA1);
+        obj.setData(DATA1);
+        assertEquals(DATA1, obj.getData());
+        pool.returnObject(obj);
+
+        assertEquals(Long.valueOf(2),
+                metrics.getCallCounts().get(TEST_OBJECT + ".setData(java.lang.String)"));
+        assertEquals(Long.valueOf(1),
+                metrics.getCallCounts().get(TEST_OBJECT + ".getData()"));
+        assertEquals(Long.valueOf(0),
+                metrics.getErrorCounts().get(TEST_OBJECT + ".getData()"));
+        assertTrue(metrics.getLatencyPercentileNanos(TEST_OBJECT + ".getData()", 99) > 0);
+        assertEquals(-1, metrics.getLatencyPercentileNanos(TEST_OBJECT + ".unknown()", 99));
+        // The metrics are readable through JMX
+        assertNotNull(mbs.getAttribute(name, "CallCounts"));
+        assertNotNull(mbs.getAttribute(name, "LatencyHistograms"));
+
+        proxiedPool.setCallMetricsEnabled(false);
+        assertNull(proxiedPool.getCallMetrics());
+        assertFalse(mbs.isRegistered(name));
+    }
+
+
+    @Test
+    public void testCallMetricsErrorsByObject() throws Exception {
+        final CallMetrics metrics = new CallMetrics();
+        final Method method = TestObject.class.getMethod("getData");
+        Object obj = new TestObjectImpl();
+        metrics.record(method, obj, 1, true);
+        metrics.record(method, obj, 1, true);
+        metrics.record(method, new TestObjectImpl(), 1, true);
+        assertEquals(2, metrics.getErrorCountsByObject().size());
+        assertTrue(metrics.getErrorCountsByObject().containsValue(Long.valueOf(2)));
+
+        // Entries are removed once the objects have been collected
+        obj = null;
+        for (int i = 0; i < 50 && !metrics.getErrorCountsByObject().isEmpty(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(metrics.getErrorCountsByObject().isEmpty());
+    }
+
+
+    @Test(timeout=60000)
+    public void testLeakDetection() throws Exception {
+        final ProxiedObjectPool<TestObject> proxiedPool =
+                (ProxiedObjectPool<TestObject>) pool;
+        proxiedPool.setLeakDetection(true);
+        proxiedPool.setLeakLogWriter(new PrintWriter(log));
+
+        // Drop the only reference to the first proxy the source creates
+        pool.borrowObject();
+        final TestObject kept = pool.borrowObject();
+        assertEquals(2, pool.getNumActive());
+
+        while (proxiedPool.getLeakedCount() == 0) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(1, proxiedPool.getLeakedCount());
+        assertEquals(1, pool.getNumActive());
+        assertTrue(log.getBuffer().toString().contains("Pooled object borrowed"));
+
+        // Returned objects are no longer tracked
+        pool.returnObject(kept);
+        assertEquals(0, pool.getNumActive());
+
+        // Objects borrowed while enabled are reclaimed after disabling
+        pool.borrowObject();
+        proxiedPool.setLeakDetection(false);
+        while (proxiedPool.getLeakedCount() == 1) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(2, proxiedPool.getLeakedCount());
+        assertEquals(0, pool.getNumActive());
+        pool.close();
+    }
+
+
     @Test
     public void testPassThroughMethods01() throws Exception {
         assertEquals(0, pool.getNumActive());
@@ -16,6 +16,19 @@
  */
 package org.apache.commons.pool2.proxy;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.AbandonedConfig;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.Test;
+
 public class TestProxiedObjectPoolWithCglibProxy extends
         BaseTestProxiedObjectPool {
 
@@ -23,4 +36,107 @@ public class TestProxiedObjectPoolWithCglibProxy extends
     protected ProxySource<TestObject> getproxySource() {
         return new CglibProxySource<TestObject>(TestObject.class);
     }
+
+    @Test
+    public void testReuseProxies() throws Exception {
+        final CglibProxySource<TestObject> proxySource =
+                new CglibProxySource<TestObject>(TestObject.class);
+        proxySource.setReuseProxies(true);
+        final GenericObjectPool<TestObject> innerPool = newInnerPool();
+        final ObjectPool<TestObject> pool =
+                new ProxiedObjectPool<TestObject>(innerPool, proxySource);
+
+        final TestObject first = pool.borrowObject();
+        final TestObject second = pool.borrowObject();
+        assertNotSame(first, second);
+        first.setData("first");
+        pool.returnObject(first);
+        try {
+            first.getData();
+            fail("A returned proxy must be disabled while its object is idle");
+        } catch (final IllegalStateException ise) {
+            // expected
+        }
+
+        // The idle object is borrowed again with the same, re-enabled proxy
+        final TestObject again = pool.borrowObject();
+        assertSame(first, again);
+        assertEquals("first", again.getData());
+
+        pool.returnObject(again);
+        pool.returnObject(second);
+        pool.close();
+    }
+
+    @Test(timeout=60000)
+    public void testReuseProxiesAbandoned() throws Exception {
+        final CglibProxySource<TestObject> proxySource =
+                new CglibProxySource<TestObject>(TestObject.class);
+        proxySource.setReuseProxies(true);
+        final GenericObjectPool<TestObject> innerPool = newInnerPool();
+        final AbandonedConfig abandonedConfig = new AbandonedConfig();
+        abandonedConfig.setRemoveAbandonedOnMaintenance(true);
+        abandonedConfig.setRemoveAbandonedTimeout(1);
+        innerPool.setAbandonedConfig(abandonedConfig);
+        final ObjectPool<TestObject> pool =
+                new ProxiedObjectPool<TestObject>(innerPool, proxySource);
+
+        // Borrow and never return, then let the inner pool destroy it
+        pool.borrowObject();
+        assertEquals(1, proxySource.getCachedProxyCount());
+        Thread.sleep(1500);
+        innerPool.evict();
+        assertEquals(0, innerPool.getNumActive());
+
+        // The cache does not keep the destroyed object reachable
+        while (proxySource.getCachedProxyCount() > 0) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        pool.close();
+    }
+
+    @Test(timeout=60000)
+    public void testReuseProxiesLeakDetection() throws Exception {
+        final CglibProxySource<TestObject> proxySource =
+                new CglibProxySource<TestObject>(TestObject.class);
+        proxySource.setReuseProxies(true);
+        final ProxiedObjectPool<TestObject> pool =
+                new ProxiedObjectPool<TestObject>(newInnerPool(), proxySource);
+        pool.setLeakDetection(true);
+
+        // A reused proxy that is never returned is still reported
+        pool.returnObject(pool.borrowObject());
+        pool.borrowObject();
+        while (pool.getLeakedCount() == 0) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(0, pool.getNumActive());
+        pool.setLeakDetection(false);
+        pool.close();
+    }
+
+    private static GenericObjectPool<TestObject> newInnerPool() {
+        return new GenericObjectPool<TestObject>(new BasePooledObjectFactory<TestObject>() {
+            @Override
+            public TestObject create() {
+                return new TestObject() {
+                    private String data;
+                    @Override
+                    public String getData() {
+                        return data;
+                    }
+                    @Override
+                    public void setData(final String data) {
+                        this.data = data;
+                    }
+                };
+            }
+            @Override
+            public PooledObject<TestObject> wrap(final TestObject value) {
+                return new DefaultPooledObject<TestObject>(value);
+            }
+        });
+    }
 }